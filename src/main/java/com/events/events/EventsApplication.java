@@ -1,11 +1,13 @@
 package com.events.events;
 
+import com.events.events.config.security.BoundedPasswordEncoder;
+import com.events.events.config.security.CalibratedBCryptPasswordEncoder;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
 import org.springframework.scheduling.annotation.EnableScheduling;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 
 @SpringBootApplication
 //@EnableJpaAuditing
@@ -17,7 +19,17 @@ public class EventsApplication {
     }
 
     @Bean
-    public BCryptPasswordEncoder bCryptPasswordEncoder(){
-        return new BCryptPasswordEncoder();
+    public BoundedPasswordEncoder passwordEncoder(
+            @Value("${events.security.hashing.threads:0}") int threads,
+            @Value("${events.security.hashing.queue-capacity:64}") int queueCapacity,
+            @Value("${events.security.hashing.retry-after-seconds:2}") long retryAfterSeconds,
+            @Value("${events.security.hashing.target-millis:250}") long targetMillis,
+            @Value("${events.security.hashing.min-strength:10}") int minStrength,
+            @Value("${events.security.hashing.max-strength:16}") int maxStrength){
+        if(threads <= 0){
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        CalibratedBCryptPasswordEncoder bCryptPasswordEncoder = CalibratedBCryptPasswordEncoder.calibrate(targetMillis, minStrength, maxStrength);
+        return new BoundedPasswordEncoder(bCryptPasswordEncoder, threads, queueCapacity, retryAfterSeconds);
     }
 }
@@ -2,6 +2,7 @@ package com.events.events.config.database;
 
 import com.amazonaws.auth.AWSStaticCredentialsProvider;
 import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.client.builder.AwsClientBuilder;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
@@ -21,13 +22,22 @@ public class AWSS3Configuration {
     @Value("${aws.s3.region}")
     private String region;
 
+    // set to point the client at an S3 compatible server instead of AWS, like one running locally for tests
+    @Value("${aws.s3.endpoint:}")
+    private String endpoint;
+
     @Bean
     public AmazonS3 amazonS3Client(){
         final BasicAWSCredentials basicAWSCredentials = new BasicAWSCredentials(accessKeyId, secretAccessKey);
-        return AmazonS3ClientBuilder
+        final AmazonS3ClientBuilder builder = AmazonS3ClientBuilder
                 .standard()
-                .withRegion(Regions.fromName(region))
-                .withCredentials(new AWSStaticCredentialsProvider(basicAWSCredentials))
-                .build();
+                .withCredentials(new AWSStaticCredentialsProvider(basicAWSCredentials));
+        if(endpoint.isEmpty()){
+            builder.withRegion(Regions.fromName(region));
+        }else{
+            builder.withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(endpoint, region))
+                    .withPathStyleAccessEnabled(true);
+        }
+        return builder.build();
     }
 }
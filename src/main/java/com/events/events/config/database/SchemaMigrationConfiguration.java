@@ -0,0 +1,45 @@
+package com.events.events.config.database;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.annotation.PostConstruct;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Runs the SQL scripts in db/migration once Hibernate has created or updated the tables.
+ * Hibernate can't create things like extensions or expression indexes so they live in these scripts,
+ * every script must be safe to run again on each startup.
+ */
+@Configuration
+@DependsOn("entityManagerFactory")
+public class SchemaMigrationConfiguration {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SchemaMigrationConfiguration.class);
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Value("${events.schema.migrations:classpath*:db/migration/*.sql}")
+    private String migrations;
+
+    @PostConstruct
+    public void migrate() throws IOException {
+        Resource[] scripts = new PathMatchingResourcePatternResolver().getResources(migrations);
+        Arrays.sort(scripts, Comparator.comparing(Resource::getFilename));
+        for(Resource script : scripts){
+            LOGGER.info("Running schema migration: " + script.getFilename());
+        }
+        new ResourceDatabasePopulator(scripts).execute(dataSource);
+    }
+}
@@ -0,0 +1,77 @@
+package com.events.events.config.security;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A set that can only answer whether a key might have been added or definitely wasn't, in a fixed amount of memory.
+ * Keys are given as digests of at least 16 bytes, like SHA-256 hashes, whose first two longs are used as the two
+ * hashes every probe position is derived from. Adding and checking keys are safe to do from several threads at once.
+ */
+public class BloomFilter {
+
+    private final AtomicLongArray bits;
+
+    private final long bitCount;
+
+    private final int hashCount;
+
+    private final int expectedInsertions;
+
+    private final AtomicInteger insertions = new AtomicInteger();
+
+    /**
+     * @param expectedInsertions the number of keys the filter is sized for
+     * @param falsePositiveRate the rate of keys wrongly reported as added once it holds that many
+     */
+    public BloomFilter(int expectedInsertions, double falsePositiveRate) {
+        if(falsePositiveRate <= 0 || falsePositiveRate >= 1){
+            throw new IllegalArgumentException("The false positive rate must be between 0 and 1");
+        }
+        this.expectedInsertions = Math.max(1, expectedInsertions);
+        long optimalBits = (long) Math.ceil(-this.expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.max(1, (optimalBits + 63) / 64);
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = words * 64L;
+        this.hashCount = (int) Math.max(1, Math.round((double) bitCount / this.expectedInsertions * Math.log(2)));
+    }
+
+    public void put(byte[] digest){
+        long hash1 = longAt(digest, 0);
+        long hash2 = longAt(digest, 8);
+        for(int i = 0; i < hashCount; i++){
+            long index = Math.floorMod(hash1 + i * hash2, bitCount);
+            long mask = 1L << index;
+            bits.getAndAccumulate((int) (index >>> 6), mask, (word, bit) -> word | bit);
+        }
+        insertions.incrementAndGet();
+    }
+
+    public boolean mightContain(byte[] digest){
+        long hash1 = longAt(digest, 0);
+        long hash2 = longAt(digest, 8);
+        for(int i = 0; i < hashCount; i++){
+            long index = Math.floorMod(hash1 + i * hash2, bitCount);
+            if((bits.get((int) (index >>> 6)) & (1L << index)) == 0){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int getInsertions() {
+        return insertions.get();
+    }
+
+    public int getExpectedInsertions() {
+        return expectedInsertions;
+    }
+
+    private static long longAt(byte[] digest, int offset){
+        long value = 0;
+        for(int i = offset; i < offset + 8; i++){
+            value = (value << 8) | (digest[i] & 0xff);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,153 @@
+package com.events.events.config.security;
+
+import com.events.events.error.ServiceUnavailableException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs the hashing and checking of passwords on a pool of its own instead of the request threads.
+ * Both the pool and the queue in front of it are bounded, when the queue is full the request is turned away
+ * with a ServiceUnavailableException rather than waiting, so a burst of logins can only hold on to as many
+ * request threads as there are places in the pool and the queue.
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder, MeterBinder, DisposableBean {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(BoundedPasswordEncoder.class);
+
+    private final PasswordEncoder delegate;
+
+    private final ThreadPoolExecutor executor;
+
+    private final long retryAfterSeconds;
+
+    private final LongAdder rejected = new LongAdder();
+
+    private volatile Timer waitTimer;
+
+    /**
+     * @param delegate the encoder doing the actual hashing
+     * @param threads the number of passwords hashed or checked at once
+     * @param queueCapacity the number of passwords that can wait for a thread before requests are turned away
+     * @param retryAfterSeconds how long turned away clients are told to wait before trying again
+     */
+    public BoundedPasswordEncoder(PasswordEncoder delegate, int threads, int queueCapacity, long retryAfterSeconds) {
+        this.delegate = delegate;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new PasswordHashingThreadFactory(),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return call(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return call(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        // only reads the hash, cheap enough to stay on the calling thread
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    public int getQueueDepth(){
+        return executor.getQueue().size();
+    }
+
+    public long getRejectedCount(){
+        return rejected.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("events.password.hashing.queue.depth", executor, e -> e.getQueue().size())
+                .description("Passwords waiting for a hashing thread")
+                .register(registry);
+        Gauge.builder("events.password.hashing.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Passwords being hashed or checked")
+                .register(registry);
+        FunctionCounter.builder("events.password.hashing.rejected", rejected, LongAdder::sum)
+                .description("Requests turned away because the hashing queue was full")
+                .register(registry);
+        waitTimer = Timer.builder("events.password.hashing.wait")
+                .description("Time passwords spent in the queue before a hashing thread picked them up")
+                .register(registry);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    private <T> T call(Callable<T> work){
+        long submittedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                recordWait(System.nanoTime() - submittedAt);
+                return work.call();
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            LOGGER.error("Password hashing queue is full, rejecting request");
+            throw new ServiceUnavailableException("The server is busy, please try again shortly", retryAfterSeconds);
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the password to be hashed", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException){
+                throw (RuntimeException) cause;
+            }
+            if(cause instanceof Error){
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private void recordWait(long waitNanos){
+        Timer timer = waitTimer;
+        if(timer != null){
+            timer.record(waitNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static class PasswordHashingThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "password-hashing-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
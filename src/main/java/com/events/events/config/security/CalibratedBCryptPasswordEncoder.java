@@ -0,0 +1,79 @@
+package com.events.events.config.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A BCrypt encoder whose strength is picked on startup so a hash takes about a target time on the machine it runs on.
+ * Stored hashes made with any other strength, higher or lower, are reported as needing an upgrade so they are hashed
+ * again with the calibrated strength the next time their user logs in.
+ */
+public class CalibratedBCryptPasswordEncoder extends BCryptPasswordEncoder {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(CalibratedBCryptPasswordEncoder.class);
+
+    private static final Pattern BCRYPT_HASH = Pattern.compile("^\\$2[aby]?\\$(\\d\\d)\\$[./0-9A-Za-z]{53}$");
+
+    private static final int MIN_STRENGTH = 4;
+
+    private static final int MAX_STRENGTH = 31;
+
+    private static final int SAMPLES = 3;
+
+    private final int strength;
+
+    public CalibratedBCryptPasswordEncoder(int strength) {
+        super(strength);
+        this.strength = strength;
+    }
+
+    /**
+     * Creates an encoder with the highest strength between the bounds whose hashes take no longer than the target
+     * @param targetMillis the time a hash should take at most
+     * @param minStrength the strength used however long its hashes take
+     * @param maxStrength the strength never gone above however quick the hashes are
+     */
+    public static CalibratedBCryptPasswordEncoder calibrate(long targetMillis, int minStrength, int maxStrength){
+        if(minStrength < MIN_STRENGTH || maxStrength > MAX_STRENGTH || minStrength > maxStrength){
+            throw new IllegalArgumentException("BCrypt strengths must be between " + MIN_STRENGTH + " and " + MAX_STRENGTH);
+        }
+        int strength = minStrength;
+        long millis = timeHash(strength);
+        // each step up in strength doubles the time a hash takes
+        while (strength < maxStrength && millis * 2 <= targetMillis){
+            strength++;
+            millis = timeHash(strength);
+        }
+        LOGGER.info("Calibrated BCrypt strength to " + strength + ", a hash takes " + millis + "ms for a target of " + targetMillis + "ms");
+        return new CalibratedBCryptPasswordEncoder(strength);
+    }
+
+    public int getStrength() {
+        return strength;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if(encodedPassword == null){
+            return false;
+        }
+        Matcher matcher = BCRYPT_HASH.matcher(encodedPassword);
+        return matcher.matches() && Integer.parseInt(matcher.group(1)) != strength;
+    }
+
+    private static long timeHash(int strength){
+        // the quickest of a few runs, the others are more likely to have been slowed down by something else
+        long best = Long.MAX_VALUE;
+        for(int i = 0; i < SAMPLES; i++){
+            long start = System.nanoTime();
+            BCrypt.hashpw("calibration", BCrypt.gensalt(strength));
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / 1_000_000;
+    }
+}
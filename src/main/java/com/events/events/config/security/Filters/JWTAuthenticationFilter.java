@@ -1,13 +1,17 @@
 package com.events.events.config.security.Filters;
 
 import com.events.events.config.security.SecurityConstants;
+import com.events.events.error.ServiceUnavailableException;
 import com.events.events.models.User;
-import com.events.events.services.UserService;
+import com.events.events.models.UserAccountDetails;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
@@ -31,27 +35,35 @@ public class JWTAuthenticationFilter extends UsernamePasswordAuthenticationFilte
 
     private AuthenticationManager authenticationManager;
 
-    private UserService userService;
+    // built once from the application's mapper, which also knows how to write the user's image url
+    private final ObjectReader credentialsReader;
+
+    private final ObjectWriter responseWriter;
 
     private final static Logger LOGGER = LoggerFactory.getLogger(JWTAuthenticationFilter.class);
 
-    public JWTAuthenticationFilter(AuthenticationManager authenticationManager, UserService userService){
+    public JWTAuthenticationFilter(AuthenticationManager authenticationManager, ObjectMapper objectMapper){
         this.authenticationManager = authenticationManager;
-        this.userService = userService;
+        this.credentialsReader = objectMapper.readerFor(User.class);
+        this.responseWriter = objectMapper.writer();
     }
 
     @Override
     public Authentication attemptAuthentication(HttpServletRequest request, HttpServletResponse response) throws AuthenticationException {
         LOGGER.info("Attempting Authentication");
         try {
-            User creds = new ObjectMapper()
-                    .readValue(request.getInputStream(), User.class);
+            User creds = credentialsReader.readValue(request.getInputStream());
             return authenticationManager.authenticate(
                     new UsernamePasswordAuthenticationToken(
                             creds.getUsername(),
                             creds.getPassword(),
                             new ArrayList<>())
             );
+        } catch (ServiceUnavailableException e) {
+            // the password hashing pool is full, answer straight away instead of holding the connection
+            LOGGER.error("Authentication rejected, " + e.getMessage());
+            writeServiceUnavailable(response, e);
+            return null;
         } catch (IOException e) {
             LOGGER.info("Error authenticating user = " + e.getMessage());
             throw new RuntimeException(e);
@@ -60,10 +72,14 @@ public class JWTAuthenticationFilter extends UsernamePasswordAuthenticationFilte
 
     @Override
     protected void successfulAuthentication(HttpServletRequest request, HttpServletResponse response, FilterChain chain, Authentication authResult) throws IOException, ServletException {
-        User user = userService.findUserByUsername(((org.springframework.security.core.userdetails.User) authResult.getPrincipal()).getUsername());
+        // the user loaded to check the password comes along with the principal, no need to load them again
+        User user = ((UserAccountDetails) authResult.getPrincipal()).getUser();
+        long now = System.currentTimeMillis();
         String token = Jwts.builder()
-                .setSubject(((org.springframework.security.core.userdetails.User) authResult.getPrincipal()).getUsername())
-                .setExpiration(new Date(System.currentTimeMillis() + 864_000_000))
+                .setSubject(user.getUsername())
+                .claim(SecurityConstants.USER_ID_CLAIM.getConstant(), user.getUserId())
+                .setIssuedAt(new Date(now))
+                .setExpiration(new Date(now + SecurityConstants.expirationTimeMillis()))
                 .signWith(SignatureAlgorithm.HS512, SecurityConstants.SECRETKEY.getConstant())
                 .compact();
         response.addHeader(SecurityConstants.HEADER_STRING.getConstant(), SecurityConstants.TOKEN_PREFIX.getConstant() + token);
@@ -72,7 +88,7 @@ public class JWTAuthenticationFilter extends UsernamePasswordAuthenticationFilte
         responseBody.put("token", token);
         responseBody.put("user", user);
         LOGGER.info("Authentication Successful");
-        new ObjectMapper().writeValue(response.getWriter(), responseBody);
+        responseWriter.writeValue(response.getWriter(), responseBody);
     }
 
     @Override
@@ -90,6 +106,17 @@ public class JWTAuthenticationFilter extends UsernamePasswordAuthenticationFilte
         responseBody.put("status", HttpStatus.UNAUTHORIZED.toString());
         responseBody.put("message", failed.getMessage());
 
-        new ObjectMapper().writeValue(response.getWriter(), responseBody);
+        responseWriter.writeValue(response.getWriter(), responseBody);
+    }
+
+    private void writeServiceUnavailable(HttpServletResponse response, ServiceUnavailableException e) throws IOException {
+        response.addHeader("content-type", "application/json");
+        response.addHeader(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        Map<String, String> responseBody = new HashMap<>();
+        responseBody.put("status", HttpStatus.SERVICE_UNAVAILABLE.toString());
+        responseBody.put("message", e.getMessage());
+
+        responseWriter.writeValue(response.getWriter(), responseBody);
     }
 }
@@ -1,6 +1,12 @@
 package com.events.events.config.security.Filters;
 
 import com.events.events.config.security.SecurityConstants;
+import com.events.events.config.security.TokenHashes;
+import com.events.events.config.security.VerifiedTokenCache;
+import com.events.events.models.AuthenticatedUser;
+import com.events.events.services.TokenRevocationService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -13,11 +19,22 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Date;
 
 public class JWTAuthorizationFilter extends BasicAuthenticationFilter {
 
-    public JWTAuthorizationFilter(AuthenticationManager authenticationManager){
+    // the parser is only configured here, parsing doesn't change it so every request can share it
+    private final JwtParser jwtParser = Jwts.parser().setSigningKey(SecurityConstants.SECRETKEY.getConstant());
+
+    private final VerifiedTokenCache verifiedTokenCache;
+
+    private final TokenRevocationService tokenRevocationService;
+
+    public JWTAuthorizationFilter(AuthenticationManager authenticationManager, VerifiedTokenCache verifiedTokenCache,
+                                  TokenRevocationService tokenRevocationService){
         super(authenticationManager);
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.tokenRevocationService = tokenRevocationService;
     }
 
     @Override
@@ -35,17 +52,47 @@ public class JWTAuthorizationFilter extends BasicAuthenticationFilter {
     private UsernamePasswordAuthenticationToken getAuthentication(HttpServletRequest request) {
         String token = request.getHeader(SecurityConstants.HEADER_STRING.getConstant());
         if (token != null) {
-            // parse the token.
-            String user = Jwts.parser()
-                    .setSigningKey(SecurityConstants.SECRETKEY.getConstant())
-                    .parseClaimsJws(token.replace(SecurityConstants.TOKEN_PREFIX.getConstant(), ""))
-                    .getBody()
-                    .getSubject();
-            if (user != null) {
+            token = token.replace(SecurityConstants.TOKEN_PREFIX.getConstant(), "");
+            // hashed once, the verified tokens and the revocations both know tokens by this hash
+            byte[] tokenHash = TokenHashes.hash(token);
+            // a token seen before was already verified, only new tokens have their signature checked
+            VerifiedTokenCache.VerifiedToken verified = verifiedTokenCache.get(tokenHash);
+            AuthenticatedUser user = null;
+            Date issuedAt = null;
+            if (verified != null) {
+                user = verified.getUser();
+                issuedAt = verified.getIssuedAt();
+            } else {
+                Claims claims = jwtParser.parseClaimsJws(token).getBody();
+                if (claims.getSubject() != null) {
+                    user = new AuthenticatedUser(userIdOf(claims), claims.getSubject());
+                    issuedAt = issuedAtOf(claims);
+                    verifiedTokenCache.put(tokenHash, user, issuedAt, claims.getExpiration());
+                }
+            }
+            // a revoked token is still correctly signed, so this is checked even for tokens verified before
+            if (user != null && !tokenRevocationService.isRevoked(tokenHash, user, issuedAt)) {
                 return new UsernamePasswordAuthenticationToken(user, null, new ArrayList<>());
             }
             return null;
         }
         return null;
     }
+
+    // tokens issued before the user id was added to them don't have the claim
+    private Integer userIdOf(Claims claims) {
+        Object userId = claims.get(SecurityConstants.USER_ID_CLAIM.getConstant());
+        return userId instanceof Number ? ((Number) userId).intValue() : null;
+    }
+
+    // tokens issued before the issue time was added to them were all issued a full lifetime before they expire
+    private Date issuedAtOf(Claims claims) {
+        if (claims.getIssuedAt() != null) {
+            return claims.getIssuedAt();
+        }
+        if (claims.getExpiration() != null) {
+            return new Date(claims.getExpiration().getTime() - SecurityConstants.expirationTimeMillis());
+        }
+        return null;
+    }
 }
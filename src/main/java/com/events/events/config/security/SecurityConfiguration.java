@@ -2,14 +2,18 @@ package com.events.events.config.security;
 
 import com.events.events.config.security.Filters.JWTAuthenticationFilter;
 import com.events.events.config.security.Filters.JWTAuthorizationFilter;
+import com.events.events.services.TokenRevocationService;
 import com.events.events.services.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 
 @Configuration
 @EnableGlobalMethodSecurity(
@@ -23,16 +27,33 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
     private UserService userService;
 
     @Autowired
-    private BCryptPasswordEncoder bCryptPasswordEncoder;
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
+    @Value("${events.security.token-cache.max-size:100000}")
+    private int tokenCacheMaxSize;
+
+    @Value("${events.security.token-cache.max-age-minutes:60}")
+    private long tokenCacheMaxAgeMinutes;
+
+    @Bean
+    public VerifiedTokenCache verifiedTokenCache(){
+        return new VerifiedTokenCache(tokenCacheMaxSize, tokenCacheMaxAgeMinutes * 60_000);
+    }
 
     @Override
     protected void configure(AuthenticationManagerBuilder auth) throws Exception {
-        auth.userDetailsService(userService).passwordEncoder(bCryptPasswordEncoder);
+        auth.userDetailsService(userService).passwordEncoder(passwordEncoder);
     }
 
     @Override
     protected void configure(HttpSecurity http) throws Exception {
-        JWTAuthenticationFilter jwtAuthenticationFilter = new JWTAuthenticationFilter(authenticationManager(), userService);
+        JWTAuthenticationFilter jwtAuthenticationFilter = new JWTAuthenticationFilter(authenticationManager(), objectMapper);
         jwtAuthenticationFilter.setFilterProcessesUrl("/v1/account/login");
         http.csrf().disable()
                 .authorizeRequests()
@@ -43,7 +64,7 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
                 .authenticated()
                 .and()
                 .addFilter(jwtAuthenticationFilter)
-                .addFilter(new JWTAuthorizationFilter(authenticationManager()));
+                .addFilter(new JWTAuthorizationFilter(authenticationManager(), verifiedTokenCache(), tokenRevocationService));
 
     }
 }
@@ -5,6 +5,7 @@ public enum SecurityConstants {
     EXPIRATIONTIME("864_000_000"),
     TOKEN_PREFIX("Bearer "),
     HEADER_STRING("Authorization"),
+    USER_ID_CLAIM("userId"),
     SIGN_UP_URL("/register");
 
     private String constant;
@@ -16,4 +17,8 @@ public enum SecurityConstants {
     public String getConstant(){
          return constant;
     }
+
+    public static long expirationTimeMillis(){
+        return Long.parseLong(EXPIRATIONTIME.constant.replace("_", ""));
+    }
 }
@@ -0,0 +1,46 @@
+package com.events.events.config.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The SHA-256 hash tokens are known by once they have been verified or revoked, instead of the tokens themselves.
+ * A request hashes its token once, the same hash is used to find it among the verified tokens and to check the
+ * revocations, which store it hex encoded.
+ */
+public final class TokenHashes {
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private TokenHashes(){}
+
+    public static byte[] hash(String token){
+        return SHA_256.get().digest(token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String toHex(byte[] hash){
+        char[] hex = new char[hash.length * 2];
+        for(int i = 0; i < hash.length; i++){
+            hex[i * 2] = HEX[(hash[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX[hash[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    public static byte[] fromHex(String hex){
+        byte[] hash = new byte[hex.length() / 2];
+        for(int i = 0; i < hash.length; i++){
+            hash[i] = (byte) ((Character.digit(hex.charAt(i * 2), 16) << 4) | Character.digit(hex.charAt(i * 2 + 1), 16));
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,79 @@
+package com.events.events.config.security;
+
+import com.events.events.models.AuthenticatedUser;
+import com.events.events.services.ExpiringCache;
+
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.util.Date;
+
+/**
+ * Remembers who tokens whose signature has been verified belong to, so a token sent again skips the verification.
+ * Tokens are stored under their SHA-256 hash rather than as they are, and are forgotten once they expire.
+ * The number of tokens is bounded, dropping a token only costs it a verification the next time it is sent.
+ */
+public class VerifiedTokenCache {
+
+    private final ExpiringCache<ByteBuffer, VerifiedToken> tokens;
+
+    private final long maxAgeMillis;
+
+    private final Clock clock;
+
+    /**
+     * @param maxSize the most tokens kept at once
+     * @param maxAgeMillis how long a token is kept when it expires later than that or doesn't expire
+     */
+    public VerifiedTokenCache(int maxSize, long maxAgeMillis) {
+        this(maxSize, maxAgeMillis, Clock.systemUTC());
+    }
+
+    /**
+     * @param clock tells the time tokens are compared against
+     */
+    public VerifiedTokenCache(int maxSize, long maxAgeMillis, Clock clock) {
+        this.tokens = new ExpiringCache<>(maxSize, clock);
+        this.maxAgeMillis = maxAgeMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns what was read from the token with the hash when it was verified if that was before and it hasn't
+     * expired, null otherwise. Tokens are hashed with TokenHashes
+     */
+    public VerifiedToken get(byte[] tokenHash){
+        return tokens.get(ByteBuffer.wrap(tokenHash));
+    }
+
+    public void put(byte[] tokenHash, AuthenticatedUser user, Date issuedAt, Date expiration){
+        long expiresAt = clock.millis() + maxAgeMillis;
+        if(expiration != null){
+            expiresAt = Math.min(expiresAt, expiration.getTime());
+        }
+        tokens.put(ByteBuffer.wrap(tokenHash), new VerifiedToken(user, issuedAt), expiresAt);
+    }
+
+    public int size(){
+        return tokens.size();
+    }
+
+    public static class VerifiedToken {
+
+        private final AuthenticatedUser user;
+
+        private final Date issuedAt;
+
+        private VerifiedToken(AuthenticatedUser user, Date issuedAt) {
+            this.user = user;
+            this.issuedAt = issuedAt;
+        }
+
+        public AuthenticatedUser getUser() {
+            return user;
+        }
+
+        public Date getIssuedAt() {
+            return issuedAt;
+        }
+    }
+}
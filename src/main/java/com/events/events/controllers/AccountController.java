@@ -1,6 +1,8 @@
 package com.events.events.controllers;
 
+import com.events.events.config.security.SecurityConstants;
 import com.events.events.models.User;
+import com.events.events.services.TokenRevocationService;
 import com.events.events.services.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -20,6 +22,9 @@ public class AccountController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
     @RequestMapping(value = "/register",method = RequestMethod.POST)
     public User registerUser(@Valid @RequestBody User user){
         user.add(linkTo(UserController.class).withSelfRel());
@@ -37,4 +42,10 @@ public class AccountController {
         userService.changePassword(oldPassword, password, principal.getName());
         return new ResponseEntity<>("Password was changed successfully", HttpStatus.OK);
     }
+
+    @RequestMapping(value = "/logout", method = RequestMethod.POST)
+    public ResponseEntity<String> logoutUser(@RequestHeader("Authorization") String header){
+        tokenRevocationService.revokeToken(header.replace(SecurityConstants.TOKEN_PREFIX.getConstant(), ""));
+        return new ResponseEntity<>("Logout successful", HttpStatus.OK);
+    }
 }
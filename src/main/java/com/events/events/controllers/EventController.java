@@ -1,11 +1,25 @@
 package com.events.events.controllers;
 
 import com.events.events.models.Event;
+import com.events.events.models.EventCursor;
+import com.events.events.models.EventPage;
+import com.events.events.models.EventSearchPage;
+import com.events.events.models.EventStatus;
+import com.events.events.models.SearchCursor;
 import com.events.events.services.EventService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.security.Principal;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -14,38 +28,67 @@ import java.util.List;
 @RequestMapping("/v1/events")
 public class EventController {
 
+    private static final String DEFAULT_PAGE_SIZE = "50";
+
     @Autowired
     private EventService eventService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
 
     @RequestMapping(method = RequestMethod.GET)
-    public List<Event> getAllEvents(){
-        return eventService.getAllEvents();
+    public ResponseEntity<List<Event>> getAllEvents(@RequestParam(value = "cursor", required = false) String cursor, @RequestParam(value = "size", defaultValue = DEFAULT_PAGE_SIZE) int size){
+        return toResponse(eventService.getAllEvents(decodeCursor(cursor), size));
+    }
+
+    @RequestMapping(method = RequestMethod.GET, params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamAllEvents(){
+        // the events are written out as they are read instead of collecting them into a list first
+        StreamingResponseBody body = outputStream -> {
+            try(JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)){
+                generator.writeStartArray();
+                eventService.streamAllEvents(event -> writeEvent(generator, event));
+                generator.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
     }
 
     @RequestMapping(value = "/user", method = RequestMethod.GET)
-    public List<Event> getAllEventsForUser(Principal principal){
-        return eventService.getAllEventsForUser(principal.getName());
+    public ResponseEntity<List<Event>> getAllEventsForUser(Principal principal, @RequestParam(value = "cursor", required = false) String cursor, @RequestParam(value = "size", defaultValue = DEFAULT_PAGE_SIZE) int size){
+        return toResponse(eventService.getAllEventsForUser(principal.getName(), decodeCursor(cursor), size));
     }
 
     @RequestMapping(method = RequestMethod.GET, params = "date")
-    public List<Event> getAllEventsByDate(@RequestParam("date") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDateTime date){
-        return eventService.getEventsByDate(date);
+    public ResponseEntity<List<Event>> getAllEventsByDate(@RequestParam("date") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDateTime date, @RequestParam(value = "cursor", required = false) String cursor, @RequestParam(value = "size", defaultValue = DEFAULT_PAGE_SIZE) int size){
+        return toResponse(eventService.getEventsByDate(date, decodeCursor(cursor), size));
     }
 
     @RequestMapping(method = RequestMethod.GET, params = {"dateFrom", "dateTo"})
-    public List<Event> getAllEventsBetweenSpecificDates(@RequestParam("dateFrom") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDateTime dateFrom, @RequestParam("dateTo") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDateTime dateTo){
-        return eventService.getEventsBetweenDates(dateFrom, dateTo);
+    public ResponseEntity<List<Event>> getAllEventsBetweenSpecificDates(@RequestParam("dateFrom") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDateTime dateFrom, @RequestParam("dateTo") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDateTime dateTo, @RequestParam(value = "cursor", required = false) String cursor, @RequestParam(value = "size", defaultValue = DEFAULT_PAGE_SIZE) int size){
+        return toResponse(eventService.getEventsBetweenDates(dateFrom, dateTo, decodeCursor(cursor), size));
     }
 
     @RequestMapping(method = RequestMethod.GET, params = {"startingDate"})
-    public List<Event> getAllEventsAfterDate(@RequestParam("startingDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDateTime startingDate){
-        return eventService.getEventsAfterDate(startingDate);
+    public ResponseEntity<List<Event>> getAllEventsAfterDate(@RequestParam("startingDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDateTime startingDate, @RequestParam(value = "cursor", required = false) String cursor, @RequestParam(value = "size", defaultValue = DEFAULT_PAGE_SIZE) int size){
+        return toResponse(eventService.getEventsAfterDate(startingDate, decodeCursor(cursor), size));
     }
 
     @RequestMapping(method = RequestMethod.GET, params = {"endingDate"})
-    public List<Event> getAllEventsBeforeDate(@RequestParam("endingDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDateTime endingDate){
-        return eventService.getEventsBeforeDate(endingDate);
+    public ResponseEntity<List<Event>> getAllEventsBeforeDate(@RequestParam("endingDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDateTime endingDate, @RequestParam(value = "cursor", required = false) String cursor, @RequestParam(value = "size", defaultValue = DEFAULT_PAGE_SIZE) int size){
+        return toResponse(eventService.getEventsBeforeDate(endingDate, decodeCursor(cursor), size));
+    }
+
+    @RequestMapping(value = "/search", params = {"q"}, method = RequestMethod.GET)
+    public ResponseEntity<List<Event>> searchEvents(@RequestParam("q") String query,
+                                                    @RequestParam(value = "dateFrom", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDateTime dateFrom,
+                                                    @RequestParam(value = "dateTo", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDateTime dateTo,
+                                                    @RequestParam(value = "status", required = false) EventStatus status,
+                                                    @RequestParam(value = "cursor", required = false) String cursor, @RequestParam(value = "size", defaultValue = DEFAULT_PAGE_SIZE) int size){
+        SearchCursor after = cursor == null || cursor.isEmpty() ? null : SearchCursor.decode(cursor);
+        EventSearchPage page = eventService.searchEvents(query, dateFrom, dateTo, status, after, size);
+        return toResponse(page.getEvents(), page.hasNext() ? page.getNext().encode() : null);
     }
 
     @RequestMapping(value = "/{id}/participants/{userId}", method = RequestMethod.POST)
@@ -53,5 +96,31 @@ public class EventController {
         return eventService.addSingleParticipantToEvent(id, userId);
     }
 
+    private void writeEvent(JsonGenerator generator, Event event){
+        try {
+            generator.writeObject(event);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private EventCursor decodeCursor(String cursor){
+        return cursor == null || cursor.isEmpty() ? null : EventCursor.decode(cursor);
+    }
+
+    private ResponseEntity<List<Event>> toResponse(EventPage page){
+        return toResponse(page.getEvents(), page.hasNext() ? page.getNext().encode() : null);
+    }
+
+    private ResponseEntity<List<Event>> toResponse(List<Event> events, String next){
+        // the cursor for the next page is returned as a link to the same request starting after the last event
+        HttpHeaders headers = new HttpHeaders();
+        if(next != null){
+            headers.add("X-Next-Cursor", next);
+            headers.add(HttpHeaders.LINK, "<" + ServletUriComponentsBuilder.fromCurrentRequest().replaceQueryParam("cursor", next).toUriString() + ">; rel=\"next\"");
+        }
+        return ResponseEntity.ok().headers(headers).body(events);
+    }
+
 
 }
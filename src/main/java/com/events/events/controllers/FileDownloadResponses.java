@@ -0,0 +1,50 @@
+package com.events.events.controllers;
+
+import com.events.events.models.FileDownload;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Builds the responses of the image download endpoints, which write the file straight from storage to the client.
+ */
+final class FileDownloadResponses {
+
+    private FileDownloadResponses(){}
+
+    /**
+     * Returns the ranges asked for in the Range header, a header that can't be read is ignored and the whole file sent
+     */
+    static List<HttpRange> rangesOf(HttpHeaders headers){
+        try {
+            return headers.getRange();
+        } catch (IllegalArgumentException e) {
+            return Collections.emptyList();
+        }
+    }
+
+    static ResponseEntity<StreamingResponseBody> stream(FileDownload download){
+        ResponseEntity.BodyBuilder response = ResponseEntity
+                .status(download.isPartial() ? HttpStatus.PARTIAL_CONTENT : HttpStatus.OK)
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .contentLength(download.getContentLength())
+                .contentType(download.getContentType() == null ? MediaType.IMAGE_PNG : MediaType.parseMediaType(download.getContentType()));
+        if(download.getETag() != null){
+            response.eTag(download.getETag());
+        }
+        if(download.isPartial()){
+            response.header(HttpHeaders.CONTENT_RANGE, download.getContentRange());
+        }
+        return response.body(outputStream -> {
+            try (FileDownload file = download) {
+                file.writeTo(outputStream);
+            }
+        });
+    }
+}
@@ -1,14 +1,17 @@
 package com.events.events.controllers;
 
+import com.events.events.models.AuthenticatedUser;
 import com.events.events.models.User;
+import com.events.events.models.UserSuggestion;
+import com.events.events.services.TypeaheadService;
 import com.events.events.services.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.security.Principal;
 import java.util.List;
@@ -22,6 +25,9 @@ public class UserController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private TypeaheadService typeaheadService;
+
     @RequestMapping(value = "/{id}", method = RequestMethod.GET)
     public User findOneUser(@PathVariable("id") int id, Principal principal ){
         return userService.getUserById(id);
@@ -42,9 +48,9 @@ public class UserController {
         return userService.uploadUserImage(id, multipartFile);
     }
 
-    @RequestMapping(value = "/{id}/downloadImage", method = RequestMethod.GET, produces = MediaType.IMAGE_PNG_VALUE)
-    public ResponseEntity<ByteArrayResource> downloadImageForUserById(@PathVariable("id") int id){
-        return new ResponseEntity<>(userService.downloadUserImage(id), HttpStatus.OK);
+    @RequestMapping(value = "/{id}/downloadImage", method = RequestMethod.GET)
+    public ResponseEntity<StreamingResponseBody> downloadImageForUserById(@PathVariable("id") int id, @RequestHeader HttpHeaders headers){
+        return FileDownloadResponses.stream(userService.downloadUserImage(id, FileDownloadResponses.rangesOf(headers)));
     }
 
     @RequestMapping(value = "/{id}/followers", method = RequestMethod.GET)
@@ -55,13 +61,13 @@ public class UserController {
 
     @RequestMapping(value = "/{id}/followers/{followerId}/accept", method = RequestMethod.POST)
     public ResponseEntity<String> acceptFollowRequest(@PathVariable("id") int id, @PathVariable("followerId") int followerId, Principal principal){
-        userService.acceptFollowRequest(id, followerId, principal.getName());
+        userService.acceptFollowRequest(id, followerId, AuthenticatedUser.of(principal));
         return new ResponseEntity<>("Request from user id: "+followerId+"accepted", HttpStatus.OK);
     }
 
     @RequestMapping(value = "/{id}/followers/{followerId}/reject", method = RequestMethod.POST)
     public ResponseEntity<String> rejectFollowRequest(@PathVariable("id") int id, @PathVariable("followerId") int followerId, Principal principal){
-        userService.rejectFollowRequest(id, followerId, principal.getName());
+        userService.rejectFollowRequest(id, followerId, AuthenticatedUser.of(principal));
         return new ResponseEntity<>("Request from user id: "+followerId+"rejected", HttpStatus.OK);
     }
 
@@ -73,24 +79,31 @@ public class UserController {
 
     @RequestMapping(value = "/{id}/friends/{friendId}", method = RequestMethod.POST)
     public ResponseEntity<String> postFollowRequest(@PathVariable("id") int id, @PathVariable("friendId") int friendId, Principal principal){
-        userService.addFriend(id, friendId, principal.getName());
+        userService.addFriend(id, friendId, AuthenticatedUser.of(principal));
         return new ResponseEntity<>("Friend with user id: "+friendId+" requested", HttpStatus.OK);
     }
 
     @RequestMapping(value = "/{id}/friends/{friendId}/unfollow", method = RequestMethod.POST)
     public ResponseEntity<String> unFollowUser(@PathVariable("id") int id, @PathVariable("friendId") int friendId, Principal principal){
-        userService.unFollowUser(id, friendId, principal.getName());
+        userService.unFollowUser(id, friendId, AuthenticatedUser.of(principal));
         return new ResponseEntity<>("You have stopped follow user with userId: "+id, HttpStatus.OK);
     }
 
     @RequestMapping(value = "/{id}/friendships/lookup", method = RequestMethod.POST)
     public List<Map<String, Object>> getUserConnections(@PathVariable int id, @RequestBody Map<String, int[]> payload, Principal principal){
-        return userService.userConnections(payload.get("ids"), id, principal.getName());
+        return userService.userConnections(payload.get("ids"), id, AuthenticatedUser.of(principal));
     }
 
     @RequestMapping(value = "/search", params = {"q"}, method = RequestMethod.GET)
-    public List<User> searchUsers(@RequestParam("q") String searchTerm){
-        return userService.searchUsers(searchTerm);
+    public List<User> searchUsers(@RequestParam("q") String searchTerm, @RequestParam(value = "size", defaultValue = "20") int size, @RequestParam(value = "fuzzy", defaultValue = "false") boolean fuzzy){
+        // fuzzy search also finds names with one or two typos in them
+        return fuzzy ? userService.fuzzySearchUsers(searchTerm, size) : userService.searchUsers(searchTerm, size);
+    }
+
+    @RequestMapping(value = "/typeahead", params = {"q"}, method = RequestMethod.GET)
+    public List<UserSuggestion> suggestUsers(@RequestParam("q") String prefix, @RequestParam(value = "size", defaultValue = "10") int size){
+        // called on every keystroke, so it answers from memory and returns an empty list instead of an error
+        return typeaheadService.suggestUsers(prefix, Math.max(1, Math.min(size, 50)));
     }
 
     @RequestMapping(value = "/facebook/setToken", method = RequestMethod.POST)
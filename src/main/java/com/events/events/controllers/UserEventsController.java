@@ -2,16 +2,17 @@ package com.events.events.controllers;
 
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.*;
 
+import com.events.events.models.AuthenticatedUser;
 import com.events.events.models.Event;
 import com.events.events.models.User;
 import com.events.events.services.EventService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 import java.security.Principal;
@@ -56,9 +57,9 @@ public class UserEventsController {
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
-    @RequestMapping(value = "/{eventId}/downloadImage", method = RequestMethod.GET, produces = MediaType.IMAGE_PNG_VALUE)
-    public ResponseEntity<ByteArrayResource> downloadEventImage(@PathVariable("id") int id, @PathVariable("eventId") int eventId){
-        return new ResponseEntity<>(eventService.downloadEventImage(eventId, id), HttpStatus.OK);
+    @RequestMapping(value = "/{eventId}/downloadImage", method = RequestMethod.GET)
+    public ResponseEntity<StreamingResponseBody> downloadEventImage(@PathVariable("id") int id, @PathVariable("eventId") int eventId, @RequestHeader HttpHeaders headers){
+        return FileDownloadResponses.stream(eventService.downloadEventImage(eventId, id, FileDownloadResponses.rangesOf(headers)));
     }
 
     @RequestMapping(value = "/{eventId}/invites", method = RequestMethod.POST)
@@ -68,23 +69,23 @@ public class UserEventsController {
 
     @RequestMapping(value = "/{eventId}/invites/{inviteeId}", method = RequestMethod.DELETE)
     public Event deleteInvitesForEvent(@PathVariable("id") int id, @PathVariable("eventId") int eventId, @PathVariable("inviteeId") int inviteeId, Principal principal){
-        return addHateoasLinksToEvent(eventService.deleteInviteeFromEvent(id, eventId, inviteeId, principal.getName()), id);
+        return addHateoasLinksToEvent(eventService.deleteInviteeFromEvent(id, eventId, inviteeId, AuthenticatedUser.of(principal)), id);
     }
 
     @RequestMapping(value = "/attending", method = RequestMethod.GET)
     public List<Event> getAllEventsUserIsAttending(@PathVariable("id") int id, Principal principal){
-        return eventService.getAllEventsUserIsAttending(id, principal.getName());
+        return eventService.getAllEventsUserIsAttending(id, AuthenticatedUser.of(principal));
     }
 
     @RequestMapping(value = "/invites", method = RequestMethod.GET)
     public List<Event> getAllEventsUserIsInvitedTo(@PathVariable("id") int id, Principal principal){
-        return eventService.getAllEventsUserIsInvitedTo(id, principal.getName());
+        return eventService.getAllEventsUserIsInvitedTo(id, AuthenticatedUser.of(principal));
     }
 
     private Event addHateoasLinksToEvent(Event event, int id){
         event.add(linkTo(methodOn(UserEventsController.class).getEventById(id, event.getEventId())).withSelfRel().withType("GET, PUT, UPDATE"));
         event.add(linkTo(methodOn(UserEventsController.class).uploadImageForEvent(id, event.getEventId(), null)).withRel("uploadEventImage"));
-        event.add(linkTo(methodOn(UserEventsController.class).downloadEventImage(id, event.getEventId())).withRel("downloadEventImage"));
+        event.add(linkTo(methodOn(UserEventsController.class).downloadEventImage(id, event.getEventId(), null)).withRel("downloadEventImage"));
         event.add(linkTo(methodOn(UserEventsController.class).postInvitesForEvent(id, event.getEventId(), null)).withRel("placeInvite"));
         return event;
     }
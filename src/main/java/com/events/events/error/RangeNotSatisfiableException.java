@@ -0,0 +1,26 @@
+package com.events.events.error;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+public class RangeNotSatisfiableException extends RuntimeException {
+
+    private String message;
+
+    private long fileLength;
+
+    public RangeNotSatisfiableException(String message, long fileLength){
+        this.message = message;
+        this.fileLength = fileLength;
+    }
+
+    @Override
+    public String getMessage(){
+        return message;
+    }
+
+    public long getFileLength() {
+        return fileLength;
+    }
+}
@@ -51,6 +51,22 @@ public class ResponseExceptionHandler extends ResponseEntityExceptionHandler {
         return constructHandleException(e, request, HttpStatus.UNAUTHORIZED);
     }
 
+    @ExceptionHandler(ServiceUnavailableException.class)
+    protected ResponseEntity<Object> handleServiceUnavailableException(ServiceUnavailableException e, WebRequest request){
+        CustomErrorMessage customErrorMessage = new CustomErrorMessage(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+        return handleExceptionInternal(e, customErrorMessage, headers, customErrorMessage.getStatus(), request);
+    }
+
+    @ExceptionHandler(RangeNotSatisfiableException.class)
+    protected ResponseEntity<Object> handleRangeNotSatisfiableException(RangeNotSatisfiableException e, WebRequest request){
+        CustomErrorMessage customErrorMessage = new CustomErrorMessage(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, e.getMessage());
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.CONTENT_RANGE, "bytes */" + e.getFileLength());
+        return handleExceptionInternal(e, customErrorMessage, headers, customErrorMessage.getStatus(), request);
+    }
+
 
 
     @Override
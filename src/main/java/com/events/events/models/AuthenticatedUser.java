@@ -0,0 +1,74 @@
+package com.events.events.models;
+
+import org.springframework.security.core.Authentication;
+
+import java.security.Principal;
+import java.util.Objects;
+
+/**
+ * The user a request was authenticated as, read from the claims of their token.
+ * Tokens issued before the user id was added to them only carry the username, for those the id is null
+ * and the user has to be looked up to know who they are.
+ */
+public class AuthenticatedUser implements Principal {
+
+    private final Integer userId;
+
+    private final String username;
+
+    public AuthenticatedUser(Integer userId, String username) {
+        this.userId = userId;
+        this.username = username;
+    }
+
+    /**
+     * Returns the authenticated user behind the principal a controller is given
+     */
+    public static AuthenticatedUser of(Principal principal){
+        if(principal instanceof AuthenticatedUser){
+            return (AuthenticatedUser) principal;
+        }
+        if(principal instanceof Authentication && ((Authentication) principal).getPrincipal() instanceof AuthenticatedUser){
+            return (AuthenticatedUser) ((Authentication) principal).getPrincipal();
+        }
+        return new AuthenticatedUser(null, principal.getName());
+    }
+
+    public boolean hasUserId(){
+        return userId != null;
+    }
+
+    public Integer getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    @Override
+    public String getName() {
+        return username;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if(obj == this){
+            return true;
+        }
+        if(!(obj instanceof AuthenticatedUser)){
+            return false;
+        }
+        return Objects.equals(userId, ((AuthenticatedUser) obj).userId) && Objects.equals(username, ((AuthenticatedUser) obj).username);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(userId, username);
+    }
+
+    @Override
+    public String toString() {
+        return username;
+    }
+}
@@ -0,0 +1,68 @@
+package com.events.events.models;
+
+import java.time.LocalDateTime;
+
+/**
+ * Time an event takes up in a user's calendar, the interval [startTime, endTime).
+ * An event without an end after its start takes up the minute it starts in.
+ */
+public class CalendarEntry {
+
+    private final int eventId;
+
+    private final LocalDateTime startTime;
+
+    private final LocalDateTime endTime;
+
+    private final boolean created;
+
+    public CalendarEntry(int eventId, LocalDateTime startTime, LocalDateTime endTime) {
+        this(eventId, startTime, endTime, false);
+    }
+
+    public CalendarEntry(int eventId, LocalDateTime startTime, LocalDateTime endTime, boolean created) {
+        this.eventId = eventId;
+        this.startTime = startTime;
+        this.endTime = endTime != null && endTime.isAfter(startTime) ? endTime : startTime.plusMinutes(1);
+        this.created = created;
+    }
+
+    public static CalendarEntry created(Event event){
+        return new CalendarEntry(event.getEventId(), event.getStartTime(), event.getEndTime(), true);
+    }
+
+    public static CalendarEntry attending(Event event){
+        return new CalendarEntry(event.getEventId(), event.getStartTime(), event.getEndTime(), false);
+    }
+
+    public CalendarEntry asCreated(){
+        return new CalendarEntry(eventId, startTime, endTime, true);
+    }
+
+    public CalendarEntry rescheduled(LocalDateTime startTime, LocalDateTime endTime){
+        return new CalendarEntry(eventId, startTime, endTime, created);
+    }
+
+    public boolean overlaps(LocalDateTime startTime, LocalDateTime endTime){
+        return this.startTime.isBefore(endTime) && this.endTime.isAfter(startTime);
+    }
+
+    public int getEventId() {
+        return eventId;
+    }
+
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    public LocalDateTime getEndTime() {
+        return endTime;
+    }
+
+    /**
+     * Whether the user created the event rather than attending it
+     */
+    public boolean isCreated() {
+        return created;
+    }
+}
@@ -1,8 +1,10 @@
 package com.events.events.models;
 
 import com.events.events.models.serializers.CustomURLSerializer;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.validator.constraints.NotEmpty;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
@@ -23,9 +25,16 @@ import java.util.*;
 @EntityListeners(AuditingEntityListener.class)
 @JsonIgnoreProperties(value = {"createdAt", "updatedAt"},
         allowGetters = true)
-@Table(name = "events")
+@Table(name = "events", indexes = {
+        @Index(name = "events_user_idx", columnList = "user_id"),
+        @Index(name = "events_start_time_idx", columnList = "start_time, event_id")
+})
 public class Event extends RepresentationModel<Event> {
 
+    // pages of events are written out with the participants and invitees of each event, loading the collections
+    // of up to this many events in one statement keeps that from being a statement per event
+    static final int ASSOCIATION_BATCH_SIZE = 50;
+
     @Id
     @GeneratedValue
     private int eventId;
@@ -55,10 +64,12 @@ public class Event extends RepresentationModel<Event> {
     private User creator;
 
     @ManyToMany(mappedBy = "attending")
+    @BatchSize(size = ASSOCIATION_BATCH_SIZE)
     @JsonIgnoreProperties({"createdEvents", "attending", "createdAt", "updatedAt", "enabled", "imageKey"})
     private Set<User> participants;
 
     @ManyToMany(mappedBy = "invites")
+    @BatchSize(size = ASSOCIATION_BATCH_SIZE)
     @JsonIgnoreProperties({"createdEvents", "attending", "createdAt", "updatedAt", "enabled", "imageKey"})
     private Set<User> invitees;
 
@@ -74,6 +85,12 @@ public class Event extends RepresentationModel<Event> {
 
     private EventPermission eventPermission = EventPermission.PUBLIC;
 
+    // false when the creator had too many followers for the event to be pushed into their feeds,
+    // such events are pulled into the feed when it is read instead
+    @JsonIgnore
+    @Column(columnDefinition = "boolean default true")
+    private boolean fannedOut = true;
+
     public Event(){
         this.participants = new HashSet<>();
     }
@@ -203,6 +220,15 @@ public class Event extends RepresentationModel<Event> {
         return updatedAt;
     }
 
+    // the auditing sets both dates on stored events, only copies of them made from snapshots set them otherwise
+    void setCreatedAt(LocalDate createdAt){
+        this.createdAt = createdAt;
+    }
+
+    void setUpdatedAt(LocalDate updatedAt){
+        this.updatedAt = updatedAt;
+    }
+
     public Currency getCost() {
         return cost;
     }
@@ -227,6 +253,14 @@ public class Event extends RepresentationModel<Event> {
         this.eventPermission = eventPermission;
     }
 
+    public boolean isFannedOut() {
+        return fannedOut;
+    }
+
+    public void setFannedOut(boolean fannedOut) {
+        this.fannedOut = fannedOut;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if(obj == this){
@@ -0,0 +1,105 @@
+package com.events.events.models;
+
+import com.events.events.error.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * Position in a list of events ordered by (startTime, eventId).
+ * A page holds the events strictly after the cursor, which keeps the cost of a page independent of how deep it is.
+ */
+public class EventCursor implements Comparable<EventCursor> {
+
+    private static final LocalDateTime EARLIEST = LocalDateTime.of(1900, 1, 1, 0, 0);
+
+    private final LocalDateTime startTime;
+
+    private final int eventId;
+
+    public EventCursor(LocalDateTime startTime, int eventId) {
+        this.startTime = startTime;
+        this.eventId = eventId;
+    }
+
+    /**
+     * Cursor positioned before every event
+     */
+    public static EventCursor first(){
+        return startingAt(EARLIEST);
+    }
+
+    /**
+     * Cursor positioned before the events starting at the given time, so they are included in the next page
+     */
+    public static EventCursor startingAt(LocalDateTime startTime){
+        return new EventCursor(startTime, -1);
+    }
+
+    /**
+     * Cursor positioned after every event starting at the given time, so they are excluded from the next page
+     */
+    public static EventCursor after(LocalDateTime startTime){
+        return new EventCursor(startTime, Integer.MAX_VALUE);
+    }
+
+    public static EventCursor of(Event event){
+        return new EventCursor(event.getStartTime(), event.getEventId());
+    }
+
+    public static EventCursor decode(String cursor){
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = decoded.lastIndexOf('_');
+            return new EventCursor(LocalDateTime.parse(decoded.substring(0, separator)), Integer.parseInt(decoded.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new BadRequestException("The cursor provided is not valid");
+        }
+    }
+
+    public String encode(){
+        String cursor = startTime.toString() + "_" + eventId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    public int getEventId() {
+        return eventId;
+    }
+
+    /**
+     * Returns whether the event comes after this cursor in (startTime, eventId) order
+     */
+    public boolean isBefore(Event event){
+        int comparison = startTime.compareTo(event.getStartTime());
+        return comparison < 0 || (comparison == 0 && eventId < event.getEventId());
+    }
+
+    @Override
+    public int compareTo(EventCursor other) {
+        int comparison = startTime.compareTo(other.startTime);
+        return comparison != 0 ? comparison : Integer.compare(eventId, other.eventId);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if(obj == this){
+            return true;
+        }
+        if(!(obj instanceof EventCursor)){
+            return false;
+        }
+        return startTime.equals(((EventCursor) obj).startTime) && eventId == ((EventCursor) obj).eventId;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(startTime, eventId);
+    }
+}
@@ -0,0 +1,44 @@
+package com.events.events.models;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A page of events together with the cursor to request the page that follows it.
+ * The next cursor is null when there are no more events.
+ */
+public class EventPage {
+
+    private final List<Event> events;
+
+    private final EventCursor next;
+
+    public EventPage(List<Event> events, EventCursor next) {
+        this.events = events;
+        this.next = next;
+    }
+
+    /**
+     * Builds a page from the events read for it, there can only be more events when the page is full
+     */
+    public static EventPage of(List<Event> events, int size){
+        EventCursor next = !events.isEmpty() && events.size() >= size ? EventCursor.of(events.get(events.size() - 1)) : null;
+        return new EventPage(events, next);
+    }
+
+    public static EventPage empty(){
+        return new EventPage(Collections.emptyList(), null);
+    }
+
+    public List<Event> getEvents() {
+        return events;
+    }
+
+    public EventCursor getNext() {
+        return next;
+    }
+
+    public boolean hasNext(){
+        return next != null;
+    }
+}
@@ -0,0 +1,58 @@
+package com.events.events.models;
+
+import java.time.LocalDateTime;
+
+/**
+ * The parts of an event the search index needs, its text to match and the fields the results can be filtered on.
+ */
+public class EventSearchDocument {
+
+    private final int eventId;
+
+    private final String title;
+
+    private final String description;
+
+    private final String location;
+
+    private final LocalDateTime startTime;
+
+    private final EventStatus eventStatus;
+
+    public EventSearchDocument(int eventId, String title, String description, String location, LocalDateTime startTime, EventStatus eventStatus) {
+        this.eventId = eventId;
+        this.title = title;
+        this.description = description;
+        this.location = location;
+        this.startTime = startTime;
+        this.eventStatus = eventStatus;
+    }
+
+    public static EventSearchDocument of(Event event){
+        return new EventSearchDocument(event.getEventId(), event.getTitle(), event.getDescription(), event.getLocation(), event.getStartTime(), event.getEventStatus());
+    }
+
+    public int getEventId() {
+        return eventId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    public EventStatus getEventStatus() {
+        return eventStatus;
+    }
+}
@@ -0,0 +1,36 @@
+package com.events.events.models;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A page of search results together with the cursor to request the page that follows it.
+ * The next cursor is null when there are no more results.
+ */
+public class EventSearchPage {
+
+    private final List<Event> events;
+
+    private final SearchCursor next;
+
+    public EventSearchPage(List<Event> events, SearchCursor next) {
+        this.events = events;
+        this.next = next;
+    }
+
+    public static EventSearchPage empty(){
+        return new EventSearchPage(Collections.emptyList(), null);
+    }
+
+    public List<Event> getEvents() {
+        return events;
+    }
+
+    public SearchCursor getNext() {
+        return next;
+    }
+
+    public boolean hasNext(){
+        return next != null;
+    }
+}
@@ -0,0 +1,148 @@
+package com.events.events.models;
+
+import java.net.URL;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Copy of an event as it is written out by the API, taken while the event could still be read from the database.
+ * Snapshots never change, every read turns one into a new Event so requests never share an entity.
+ */
+public class EventSnapshot {
+
+    private final int eventId;
+
+    private final String title;
+
+    private final String location;
+
+    private final String description;
+
+    private final URL link;
+
+    private final String imageKey;
+
+    private final LocalDateTime startTime;
+
+    private final LocalDateTime endTime;
+
+    private final Currency cost;
+
+    private final LocalDate createdAt;
+
+    private final LocalDate updatedAt;
+
+    private final EventStatus eventStatus;
+
+    private final EventPermission eventPermission;
+
+    private final UserSnapshot creator;
+
+    private final List<UserSnapshot> participants;
+
+    // null when the event had no invitees set
+    private final List<UserSnapshot> invitees;
+
+    private EventSnapshot(Event event, Collection<User> participants, Collection<User> invitees) {
+        this.eventId = event.getEventId();
+        this.title = event.getTitle();
+        this.location = event.getLocation();
+        this.description = event.getDescription();
+        this.link = event.getLink();
+        this.imageKey = event.getImageKey();
+        this.startTime = event.getStartTime();
+        this.endTime = event.getEndTime();
+        this.cost = event.getCost();
+        this.createdAt = event.getCreatedAt();
+        this.updatedAt = event.getUpdatedAt();
+        this.eventStatus = event.getEventStatus();
+        this.eventPermission = event.getEventPermission();
+        this.creator = event.getCreator() == null ? null : new UserSnapshot(event.getCreator());
+        this.participants = participants == null ? Collections.emptyList() : snapshotsOf(participants);
+        this.invitees = invitees == null ? null : snapshotsOf(invitees);
+    }
+
+    /**
+     * Takes the snapshot of the event with its participants and invitees, which are loaded if they haven't been yet
+     */
+    public static EventSnapshot of(Event event){
+        return new EventSnapshot(event, event.getParticipants(), event.getInvitees());
+    }
+
+    /**
+     * Takes the snapshot of the event with participants and invitees that were read separately from it
+     */
+    public static EventSnapshot of(Event event, Collection<User> participants, Collection<User> invitees){
+        return new EventSnapshot(event, participants, invitees);
+    }
+
+    public int getEventId() {
+        return eventId;
+    }
+
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    public Event toEvent(){
+        Event event = new Event(title, location, description, startTime, endTime, creator == null ? null : creator.toUser());
+        event.setEventId(eventId);
+        event.setLink(link);
+        event.setImageKey(imageKey);
+        event.setCost(cost);
+        event.setCreatedAt(createdAt);
+        event.setUpdatedAt(updatedAt);
+        event.setEventStatus(eventStatus);
+        event.setEventPermission(eventPermission);
+        event.setParticipants(usersOf(participants));
+        event.setInvitees(invitees == null ? null : usersOf(invitees));
+        return event;
+    }
+
+    private static List<UserSnapshot> snapshotsOf(Collection<User> users){
+        List<UserSnapshot> snapshots = new ArrayList<>(users.size());
+        for(User user : users){
+            snapshots.add(new UserSnapshot(user));
+        }
+        return Collections.unmodifiableList(snapshots);
+    }
+
+    private static Set<User> usersOf(List<UserSnapshot> snapshots){
+        Set<User> users = new HashSet<>();
+        for(UserSnapshot snapshot : snapshots){
+            users.add(snapshot.toUser());
+        }
+        return users;
+    }
+
+    /**
+     * The fields of a user written out with the events they created, attend or are invited to
+     */
+    private static class UserSnapshot {
+
+        private final int userId;
+
+        private final String firstName;
+
+        private final String lastName;
+
+        private final String username;
+
+        private final String email;
+
+        private UserSnapshot(User user) {
+            this.userId = user.getUserId();
+            this.firstName = user.getFirstName();
+            this.lastName = user.getLastName();
+            this.username = user.getUsername();
+            this.email = user.getEmail();
+        }
+
+        private User toUser(){
+            User user = new User(firstName, lastName, username, null, email);
+            user.setUserId(userId);
+            return user;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.events.events.models;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * A single row of a user's materialized home feed.
+ * Rows are written when events are created or a follow request is accepted so that
+ * reading the feed is a single lookup on (user_id, start_time) instead of walking the friends graph.
+ */
+@Entity
+@Table(name = "user_feed", indexes = {
+        @Index(name = "user_feed_user_start_time_idx", columnList = "user_id, start_time, event_id"),
+        @Index(name = "user_feed_event_idx", columnList = "event_id")
+})
+public class FeedEntry {
+
+    @EmbeddedId
+    private Key key;
+
+    @Column(name = "start_time")
+    private LocalDateTime startTime;
+
+    public FeedEntry(){}
+
+    public FeedEntry(int userId, int eventId, LocalDateTime startTime){
+        this.key = new Key(userId, eventId);
+        this.startTime = startTime;
+    }
+
+    public int getUserId() {
+        return key.userId;
+    }
+
+    public int getEventId() {
+        return key.eventId;
+    }
+
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    public void setStartTime(LocalDateTime startTime) {
+        this.startTime = startTime;
+    }
+
+    @Embeddable
+    public static class Key implements Serializable {
+
+        @Column(name = "user_id")
+        private int userId;
+
+        @Column(name = "event_id")
+        private int eventId;
+
+        public Key(){}
+
+        public Key(int userId, int eventId){
+            this.userId = userId;
+            this.eventId = eventId;
+        }
+
+        public int getUserId() {
+            return userId;
+        }
+
+        public int getEventId() {
+            return eventId;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if(obj == this){
+                return true;
+            }
+            if(obj == null){
+                return false;
+            }
+            if(!(obj instanceof FeedEntry.Key)){
+                return false;
+            }
+            return userId == ((Key) obj).userId && eventId == ((Key) obj).eventId;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userId, eventId);
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if(obj == this){
+            return true;
+        }
+        if(obj == null){
+            return false;
+        }
+        if(!(obj instanceof FeedEntry)){
+            return false;
+        }
+        return key.equals(((FeedEntry) obj).key);
+    }
+
+    @Override
+    public int hashCode() {
+        return key.hashCode();
+    }
+}
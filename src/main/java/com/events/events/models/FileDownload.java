@@ -0,0 +1,126 @@
+package com.events.events.models;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A file being read from storage, either whole or a single range of it, along with what the response needs to
+ * describe it. The content is only read while it is written to the response, a buffer at a time, so the memory a
+ * download takes doesn't depend on the size of the file. The download has to be closed once it is written.
+ * Files read from the local disk are handed to the channel of the file, which transfers them without copying them
+ * through a buffer of our own.
+ */
+public class FileDownload implements Closeable {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final InputStream content;
+
+    private final FileChannel channel;
+
+    private final long contentLength;
+
+    private final String contentType;
+
+    private final String eTag;
+
+    // the range of the file being read, null when reading all of it
+    private final Long rangeStart;
+
+    private final Long rangeEnd;
+
+    private final long fileLength;
+
+    public FileDownload(InputStream content, long fileLength, String contentType, String eTag) {
+        this(content, fileLength, contentType, eTag, null, null);
+    }
+
+    public FileDownload(InputStream content, long fileLength, String contentType, String eTag, Long rangeStart, Long rangeEnd) {
+        this(content, null, fileLength, contentType, eTag, rangeStart, rangeEnd);
+    }
+
+    public FileDownload(FileChannel channel, long fileLength, String contentType, String eTag, Long rangeStart, Long rangeEnd) {
+        this(null, channel, fileLength, contentType, eTag, rangeStart, rangeEnd);
+    }
+
+    private FileDownload(InputStream content, FileChannel channel, long fileLength, String contentType, String eTag, Long rangeStart, Long rangeEnd) {
+        this.content = content;
+        this.channel = channel;
+        this.fileLength = fileLength;
+        this.contentType = contentType;
+        this.eTag = eTag;
+        this.rangeStart = rangeStart;
+        this.rangeEnd = rangeEnd;
+        this.contentLength = rangeStart == null ? fileLength : rangeEnd - rangeStart + 1;
+    }
+
+    public void writeTo(OutputStream outputStream) throws IOException {
+        if(channel != null){
+            transferTo(outputStream);
+            return;
+        }
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = content.read(buffer)) != -1){
+            outputStream.write(buffer, 0, read);
+        }
+        outputStream.flush();
+    }
+
+    private void transferTo(OutputStream outputStream) throws IOException {
+        WritableByteChannel target = Channels.newChannel(outputStream);
+        long position = rangeStart == null ? 0 : rangeStart;
+        long remaining = contentLength;
+        while (remaining > 0){
+            long transferred = channel.transferTo(position, remaining, target);
+            if(transferred <= 0){
+                // the file is shorter than it was said to be
+                break;
+            }
+            position += transferred;
+            remaining -= transferred;
+        }
+        outputStream.flush();
+    }
+
+    public boolean isPartial(){
+        return rangeStart != null;
+    }
+
+    /**
+     * Returns the value of the Content-Range header for a partial download, like bytes 0-99/1000
+     */
+    public String getContentRange(){
+        return "bytes " + rangeStart + "-" + rangeEnd + "/" + fileLength;
+    }
+
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
+    public long getFileLength() {
+        return fileLength;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(channel != null){
+            channel.close();
+        }else{
+            content.close();
+        }
+    }
+}
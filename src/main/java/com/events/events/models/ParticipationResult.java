@@ -0,0 +1,11 @@
+package com.events.events.models;
+
+/**
+ * Outcome of adding one user to an event when several users are added at once
+ */
+public enum ParticipationResult {
+    ADDED,
+    ALREADY_PARTICIPANT,
+    SCHEDULE_CONFLICT,
+    USER_NOT_FOUND;
+}
@@ -0,0 +1,70 @@
+package com.events.events.models;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * A revocation of tokens that haven't expired yet.
+ * The key is either the SHA-256 hash of a single token, revoked when its user logs out, or the key of a user, which
+ * revokes every token of that user issued before the revocation, like after they change their password.
+ * Once every token it could apply to has expired the revocation is no longer needed and can be deleted.
+ */
+@Entity
+@Table(name = "revoked_tokens", indexes = {
+        @Index(name = "revoked_tokens_key_idx", columnList = "revocation_key"),
+        @Index(name = "revoked_tokens_expires_at_idx", columnList = "expires_at"),
+        @Index(name = "revoked_tokens_revoked_at_idx", columnList = "revoked_at")
+})
+public class RevokedToken {
+
+    private static final String USER_KEY_PREFIX = "user:";
+
+    @Id
+    @GeneratedValue
+    private int id;
+
+    @Column(name = "revocation_key", nullable = false, length = 64)
+    private String revocationKey;
+
+    @Column(name = "revoked_at", nullable = false)
+    private LocalDateTime revokedAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    public RevokedToken(){}
+
+    public RevokedToken(String revocationKey, LocalDateTime revokedAt, LocalDateTime expiresAt) {
+        this.revocationKey = revocationKey;
+        this.revokedAt = revokedAt;
+        this.expiresAt = expiresAt;
+    }
+
+    public static String userKey(int userId){
+        return USER_KEY_PREFIX + userId;
+    }
+
+    public static boolean isUserKey(String revocationKey){
+        return revocationKey.startsWith(USER_KEY_PREFIX);
+    }
+
+    public static int userIdOf(String userKey){
+        return Integer.parseInt(userKey.substring(USER_KEY_PREFIX.length()));
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getRevocationKey() {
+        return revocationKey;
+    }
+
+    public LocalDateTime getRevokedAt() {
+        return revokedAt;
+    }
+
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+}
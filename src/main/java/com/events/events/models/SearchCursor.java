@@ -0,0 +1,88 @@
+package com.events.events.models;
+
+import com.events.events.error.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * Position in the ranked results of a search. The rank counts the results of the snapshot the previous pages were
+ * cut from, a page holds the results from that rank on. Once the snapshot is gone the score and eventId of the last
+ * result are used instead, a page then holds the results strictly after them, best score first and then by eventId.
+ */
+public class SearchCursor {
+
+    private final long snapshotId;
+
+    private final int rank;
+
+    private final double score;
+
+    private final int eventId;
+
+    public SearchCursor(long snapshotId, int rank, double score, int eventId) {
+        this.snapshotId = snapshotId;
+        this.rank = rank;
+        this.score = score;
+        this.eventId = eventId;
+    }
+
+    public static SearchCursor decode(String cursor){
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("_");
+            if(parts.length != 4){
+                throw new BadRequestException("The cursor provided is not valid");
+            }
+            return new SearchCursor(Long.parseLong(parts[0]), Integer.parseInt(parts[1]), Double.parseDouble(parts[2]), Integer.parseInt(parts[3]));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("The cursor provided is not valid");
+        }
+    }
+
+    public String encode(){
+        String cursor = snapshotId + "_" + rank + "_" + score + "_" + eventId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public long getSnapshotId() {
+        return snapshotId;
+    }
+
+    public int getRank() {
+        return rank;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public int getEventId() {
+        return eventId;
+    }
+
+    /**
+     * Returns whether a result with the given score and id comes after this cursor
+     */
+    public boolean isBefore(double score, int eventId){
+        int comparison = Double.compare(this.score, score);
+        return comparison > 0 || (comparison == 0 && this.eventId < eventId);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if(obj == this){
+            return true;
+        }
+        if(!(obj instanceof SearchCursor)){
+            return false;
+        }
+        SearchCursor other = (SearchCursor) obj;
+        return snapshotId == other.snapshotId && rank == other.rank && Double.compare(score, other.score) == 0 && eventId == other.eventId;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(snapshotId, rank, score, eventId);
+    }
+}
@@ -4,6 +4,7 @@ package com.events.events.models;
 import com.events.events.models.serializers.CustomURLSerializer;
 import com.fasterxml.jackson.annotation.*;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import org.hibernate.annotations.BatchSize;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
@@ -24,6 +25,8 @@ import java.util.Set;
 @JsonIgnoreProperties(value = {"createdAt", "updatedAt"},
         allowGetters = true)
 @Table(name = "users")
+// the creators of a page of events are loaded together instead of one statement each
+@BatchSize(size = Event.ASSOCIATION_BATCH_SIZE)
 public class User extends RepresentationModel<User> {
 
     @Id
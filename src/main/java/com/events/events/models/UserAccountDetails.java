@@ -0,0 +1,21 @@
+package com.events.events.models;
+
+import java.util.Collections;
+
+/**
+ * The details Spring Security checks a login against, holding on to the user they were loaded from
+ * so the rest of the login doesn't have to load the user again.
+ */
+public class UserAccountDetails extends org.springframework.security.core.userdetails.User {
+
+    private final User user;
+
+    public UserAccountDetails(User user) {
+        super(user.getUsername(), user.getPassword(), user.isEnabled(), true, true, true, Collections.emptyList());
+        this.user = user;
+    }
+
+    public User getUser() {
+        return user;
+    }
+}
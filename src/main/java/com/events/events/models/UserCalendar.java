@@ -0,0 +1,137 @@
+package com.events.events.models;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * The events a user created or attends, sorted by start time, with the entry ending latest up to each entry.
+ * Finding an overlap is a binary search for the entries starting before the end of the interval, the
+ * entry ending latest then tells whether any of them runs into it without looking at them one by one.
+ * The entry ending latest among those of other events is kept as well, for when the event being checked
+ * is itself the one ending latest.
+ * Instances are immutable, changes return a new calendar so readers never see one half updated.
+ */
+public final class UserCalendar {
+
+    private static final Comparator<CalendarEntry> BY_START_TIME = Comparator.comparing(CalendarEntry::getStartTime).thenComparingInt(CalendarEntry::getEventId);
+
+    private final CalendarEntry[] entries;
+
+    // the index of the entry ending latest among the entries up to each one
+    private final int[] latest;
+
+    // the index of the entry ending latest among the entries up to each one that are of another event than the
+    // entry at latest, -1 when there is none
+    private final int[] latestOfOtherEvent;
+
+    private UserCalendar(CalendarEntry[] entries) {
+        Arrays.sort(entries, BY_START_TIME);
+        this.entries = entries;
+        this.latest = new int[entries.length];
+        this.latestOfOtherEvent = new int[entries.length];
+        for(int i = 0; i < entries.length; i++){
+            if(i == 0){
+                latest[i] = i;
+                latestOfOtherEvent[i] = -1;
+            }else if(entries[i].getEndTime().isAfter(entries[latest[i - 1]].getEndTime())){
+                latest[i] = i;
+                // the previous latest entry is the latest of its event, so it is the runner up unless it is of this event
+                latestOfOtherEvent[i] = entries[latest[i - 1]].getEventId() != entries[i].getEventId() ? latest[i - 1] : latestOfOtherEvent[i - 1];
+            }else{
+                latest[i] = latest[i - 1];
+                latestOfOtherEvent[i] = entries[i].getEventId() != entries[latest[i]].getEventId() && endsLater(i, latestOfOtherEvent[i - 1])
+                        ? i : latestOfOtherEvent[i - 1];
+            }
+        }
+    }
+
+    public static UserCalendar of(Collection<CalendarEntry> entries){
+        return new UserCalendar(entries.toArray(new CalendarEntry[0]));
+    }
+
+    /**
+     * Returns an entry of another event overlapping with [startTime, endTime) if there is one
+     */
+    public Optional<CalendarEntry> findOverlap(int eventId, LocalDateTime startTime, LocalDateTime endTime){
+        CalendarEntry interval = new CalendarEntry(eventId, startTime, endTime);
+        // entries before index all start before the interval ends
+        int low = 0, high = entries.length;
+        while(low < high){
+            int middle = (low + high) >>> 1;
+            if(entries[middle].getStartTime().isBefore(interval.getEndTime())){
+                low = middle + 1;
+            }else{
+                high = middle;
+            }
+        }
+        if(low == 0){
+            return Optional.empty();
+        }
+        // the entries all start before the interval ends, so one overlaps it when it also ends after the interval starts
+        int candidate = entries[latest[low - 1]].getEventId() != eventId ? latest[low - 1] : latestOfOtherEvent[low - 1];
+        if(candidate >= 0 && entries[candidate].getEndTime().isAfter(interval.getStartTime())){
+            return Optional.of(entries[candidate]);
+        }
+        return Optional.empty();
+    }
+
+    private boolean endsLater(int index, int than){
+        return than < 0 || entries[index].getEndTime().isAfter(entries[than].getEndTime());
+    }
+
+    public boolean contains(int eventId){
+        for(CalendarEntry entry : entries){
+            if(entry.getEventId() == eventId){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the calendar with the entry added, replacing the entry for the same event and role
+     */
+    public UserCalendar with(CalendarEntry entry){
+        List<CalendarEntry> updated = new ArrayList<>(entries.length + 1);
+        for(CalendarEntry existing : entries){
+            if(existing.getEventId() != entry.getEventId() || existing.isCreated() != entry.isCreated()){
+                updated.add(existing);
+            }
+        }
+        updated.add(entry);
+        return of(updated);
+    }
+
+    public UserCalendar without(int eventId){
+        List<CalendarEntry> updated = new ArrayList<>(entries.length);
+        for(CalendarEntry existing : entries){
+            if(existing.getEventId() != eventId){
+                updated.add(existing);
+            }
+        }
+        return of(updated);
+    }
+
+    public UserCalendar rescheduled(int eventId, LocalDateTime startTime, LocalDateTime endTime){
+        List<CalendarEntry> updated = new ArrayList<>(entries.length);
+        for(CalendarEntry existing : entries){
+            updated.add(existing.getEventId() == eventId ? existing.rescheduled(startTime, endTime) : existing);
+        }
+        return of(updated);
+    }
+
+    /**
+     * Returns the ids of the events in the calendar, an event the user created and attends is listed twice
+     */
+    public int[] eventIds(){
+        int[] eventIds = new int[entries.length];
+        for(int i = 0; i < entries.length; i++){
+            eventIds[i] = entries[i].getEventId();
+        }
+        return eventIds;
+    }
+
+    public int size(){
+        return entries.length;
+    }
+}
@@ -0,0 +1,24 @@
+package com.events.events.models;
+
+/**
+ * A user offered while the name is still being typed, only what the client needs to show the suggestion.
+ */
+public class UserSuggestion {
+
+    private final int userId;
+
+    private final String displayName;
+
+    public UserSuggestion(int userId, String displayName) {
+        this.userId = userId;
+        this.displayName = displayName;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+}
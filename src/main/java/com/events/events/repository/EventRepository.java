@@ -1,19 +1,32 @@
 package com.events.events.repository;
 
+import com.events.events.models.CalendarEntry;
 import com.events.events.models.Event;
+import com.events.events.models.EventSearchDocument;
 import com.events.events.models.EventStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 @Repository
 public interface EventRepository extends JpaRepository<Event, Integer>{
 
+    String STREAM_FETCH_SIZE = "200";
+
     List<Event> findByStartTimeOrderByStartTimeAsc(LocalDateTime date);
 
     List<Event> findByEventStatus(EventStatus eventStatus);
@@ -21,11 +34,77 @@ public interface EventRepository extends JpaRepository<Event, Integer>{
     @Query(value = "SELECT * FROM events e WHERE e.user_id IN :friends ORDER BY start_time ASC ", nativeQuery = true)
     List<Event> findAllEventsByFriends(@Param("friends") List<Integer> friends);
 
+    // keyset pages ordered by (startTime, eventId), each returns the events strictly after the cursor
+
+    @Query("SELECT e FROM Event e WHERE e.startTime > :startTime OR (e.startTime = :startTime AND e.eventId > :eventId) ORDER BY e.startTime ASC, e.eventId ASC")
+    List<Event> findPageAfter(@Param("startTime") LocalDateTime startTime, @Param("eventId") int eventId, Pageable pageable);
+
+    @Query("SELECT e FROM Event e WHERE e.startTime = :date AND e.eventId > :eventId ORDER BY e.eventId ASC")
+    List<Event> findPageByStartTime(@Param("date") LocalDateTime date, @Param("eventId") int eventId, Pageable pageable);
+
+    @Query("SELECT e FROM Event e WHERE e.startTime <= :dateTo AND (e.startTime > :startTime OR (e.startTime = :startTime AND e.eventId > :eventId)) ORDER BY e.startTime ASC, e.eventId ASC")
+    List<Event> findPageAfterAndStartTimeLessThanEqual(@Param("startTime") LocalDateTime startTime, @Param("eventId") int eventId, @Param("dateTo") LocalDateTime dateTo, Pageable pageable);
+
+    @Query("SELECT e FROM Event e WHERE e.startTime < :date AND (e.startTime > :startTime OR (e.startTime = :startTime AND e.eventId > :eventId)) ORDER BY e.startTime ASC, e.eventId ASC")
+    List<Event> findPageAfterAndStartTimeLessThan(@Param("startTime") LocalDateTime startTime, @Param("eventId") int eventId, @Param("date") LocalDateTime date, Pageable pageable);
+
+    @Query("SELECT new com.events.events.models.EventSearchDocument(e.eventId, e.title, e.description, e.location, e.startTime, e.eventStatus) FROM Event e")
+    List<EventSearchDocument> findSearchDocuments();
+
+    // the events of the time index with their creators, their participants and invitees are read by the two queries
+    // below, one statement each instead of one per event
+    @Query("SELECT e FROM Event e LEFT JOIN FETCH e.creator WHERE e.startTime >= :from AND e.startTime < :until")
+    List<Event> findStartingBetween(@Param("from") LocalDateTime from, @Param("until") LocalDateTime until);
+
+    @Query("SELECT e.eventId, u FROM Event e JOIN e.participants u WHERE e.startTime >= :from AND e.startTime < :until")
+    List<Object[]> findParticipantsOfEventsStartingBetween(@Param("from") LocalDateTime from, @Param("until") LocalDateTime until);
+
+    @Query("SELECT e.eventId, u FROM Event e JOIN e.invitees u WHERE e.startTime >= :from AND e.startTime < :until")
+    List<Object[]> findInviteesOfEventsStartingBetween(@Param("from") LocalDateTime from, @Param("until") LocalDateTime until);
+
+    @Query("SELECT new com.events.events.models.CalendarEntry(e.eventId, e.startTime, e.endTime) FROM Event e WHERE e.creator.userId = :userId AND e.eventStatus <> :cancelled")
+    List<CalendarEntry> findCalendarEntriesCreatedBy(@Param("userId") int userId, @Param("cancelled") EventStatus cancelled);
+
+    @Query("SELECT new com.events.events.models.CalendarEntry(e.eventId, e.startTime, e.endTime) FROM User u JOIN u.attending e WHERE u.userId = :userId AND e.eventStatus <> :cancelled")
+    List<CalendarEntry> findCalendarEntriesAttendedBy(@Param("userId") int userId, @Param("cancelled") EventStatus cancelled);
+
+    // same interval as CalendarEntry, an event without an end after its start takes up the minute it starts in
+    String OVERLAPS_WINDOW = "e.event_id <> :eventId AND e.event_status <> :cancelled AND e.start_time < :endTime " +
+            "AND (CASE WHEN e.end_time > e.start_time THEN e.end_time ELSE e.start_time + INTERVAL '1 minute' END) > :startTime ";
+
+    // the candidates that created or are attending another event overlapping with [startTime, endTime)
+    @Query(value = "SELECT e.user_id FROM events e WHERE e.user_id IN :userIds AND " + OVERLAPS_WINDOW +
+            "UNION " +
+            "SELECT a.user_id FROM user_event_attending a JOIN events e ON e.event_id = a.event_id WHERE a.user_id IN :userIds AND " + OVERLAPS_WINDOW,
+            nativeQuery = true)
+    List<Integer> findUsersWithEventsOverlapping(@Param("userIds") Collection<Integer> userIds, @Param("eventId") int eventId, @Param("cancelled") int cancelledStatus,
+                                                 @Param("startTime") LocalDateTime startTime, @Param("endTime") LocalDateTime endTime);
+
+    // the creators whose events are pulled into feeds on read, there are only a few so this is answered from a partial index
+    @Query(value = "SELECT DISTINCT e.user_id FROM events e WHERE e.fanned_out = false AND e.user_id IS NOT NULL", nativeQuery = true)
+    List<Integer> findPulledCreatorIds();
+
+    @Modifying
+    @Query(value = "UPDATE events SET fanned_out = :fannedOut WHERE user_id = :creatorId AND fanned_out <> :fannedOut", nativeQuery = true)
+    int setFannedOutOfCreator(@Param("creatorId") int creatorId, @Param("fannedOut") boolean fannedOut);
 
-    List<Event> findByStartTimeGreaterThanOrderByStartTimeAsc(LocalDateTime date);
+    @Query(value = "SELECT a.user_id FROM user_event_attending a WHERE a.event_id = :eventId AND a.user_id IN :userIds", nativeQuery = true)
+    List<Integer> findParticipantIds(@Param("eventId") int eventId, @Param("userIds") Collection<Integer> userIds);
 
-    List<Event> findByStartTimeLessThanOrderByStartTimeAsc(LocalDateTime date);
+    // adds all the users as participants in one statement, users already attending are skipped
+    @Modifying(clearAutomatically = true)
+    @Query(value = "INSERT INTO user_event_attending (user_id, event_id) " +
+            "SELECT u.user_id, :eventId FROM users u WHERE u.user_id IN :userIds " +
+            "AND NOT EXISTS (SELECT 1 FROM user_event_attending a WHERE a.user_id = u.user_id AND a.event_id = :eventId)", nativeQuery = true)
+    int addParticipants(@Param("eventId") int eventId, @Param("userIds") Collection<Integer> userIds);
 
-    List<Event> findByStartTimeBetweenOrderByStartTimeAsc(LocalDateTime dateFrom, LocalDateTime dateTo);
+    // reads all events through a database cursor, STREAM_FETCH_SIZE rows at a time,
+    // the stream has to be consumed and closed inside a transaction
+    @QueryHints(value = {
+            @QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE),
+            @QueryHint(name = HINT_READONLY, value = "true")
+    })
+    @Query("SELECT e FROM Event e LEFT JOIN FETCH e.creator ORDER BY e.startTime ASC, e.eventId ASC")
+    Stream<Event> streamAll();
 
 }
@@ -0,0 +1,94 @@
+package com.events.events.repository;
+
+import com.events.events.models.Event;
+import com.events.events.models.FeedEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface FeedEntryRepository extends JpaRepository<FeedEntry, FeedEntry.Key> {
+
+    // PUBLIC events, the user's own events and PRIVATE events the user is invited to
+    String VISIBLE_TO_USER = "AND (e.event_permission = :publicPermission OR e.user_id = :userId " +
+            "OR EXISTS (SELECT 1 FROM user_event_invites i WHERE i.event_id = e.event_id AND i.user_id = :userId)) ";
+
+    String PUSHED_FEED = "SELECT e.* FROM user_feed uf JOIN events e ON e.event_id = uf.event_id " +
+            "WHERE uf.user_id = :userId AND (uf.start_time, uf.event_id) > (:startTime, :eventId) " + VISIBLE_TO_USER +
+            "ORDER BY uf.start_time ASC, uf.event_id ASC LIMIT :size";
+
+    // one page of the feed when no creator has their events pulled, only the pushed entries of the user
+    @Query(value = PUSHED_FEED, nativeQuery = true)
+    List<Event> findPushedFeedForUser(@Param("userId") int userId, @Param("publicPermission") int publicPermission,
+                                      @Param("startTime") LocalDateTime startTime, @Param("eventId") int eventId, @Param("size") int size);
+
+    // one page of the feed: the pushed entries of the user merged with the events pulled from the few creators with too many
+    // followers to fan out, looked up by the friends primary key for those creators only so reads don't grow with the number
+    // of users followed. UNION drops events pushed before their creator was switched to being pulled.
+    @Query(value = "SELECT * FROM (" +
+            "(" + PUSHED_FEED + ") " +
+            "UNION " +
+            "(SELECT e.* FROM friends f JOIN events e ON e.user_id = f.friend_user_id " +
+            "WHERE f.owner_user_id = :userId AND f.friend_user_id IN :pulledCreatorIds AND f.is_active = true " +
+            "AND e.fanned_out = false AND e.event_status <> :cancelled " +
+            "AND (e.start_time, e.event_id) > (:startTime, :eventId) " + VISIBLE_TO_USER +
+            "ORDER BY e.start_time ASC, e.event_id ASC LIMIT :size)" +
+            ") feed ORDER BY feed.start_time ASC, feed.event_id ASC LIMIT :size", nativeQuery = true)
+    List<Event> findFeedForUser(@Param("userId") int userId, @Param("pulledCreatorIds") Collection<Integer> pulledCreatorIds,
+                                @Param("publicPermission") int publicPermission, @Param("cancelled") int cancelledStatus,
+                                @Param("startTime") LocalDateTime startTime, @Param("eventId") int eventId, @Param("size") int size);
+
+    // pushes the event into the creator's feed and the feed of everyone actively following the creator
+    @Modifying
+    @Query(value = "INSERT INTO user_feed (user_id, event_id, start_time) " +
+            "SELECT f.owner_user_id, :eventId, :startTime FROM friends f WHERE f.friend_user_id = :creatorId AND f.is_active = true " +
+            "UNION SELECT :creatorId, :eventId, :startTime " +
+            "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int fanOutEvent(@Param("eventId") int eventId, @Param("creatorId") int creatorId, @Param("startTime") LocalDateTime startTime);
+
+    // pushes the events of a creator into the feeds of their active followers when they stop being pulled
+    @Modifying
+    @Query(value = "INSERT INTO user_feed (user_id, event_id, start_time) " +
+            "SELECT f.owner_user_id, e.event_id, e.start_time FROM friends f JOIN events e ON e.user_id = f.friend_user_id " +
+            "WHERE f.friend_user_id = :creatorId AND f.is_active = true AND e.event_status <> :cancelled " +
+            "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int fanOutEventsOfCreator(@Param("creatorId") int creatorId, @Param("cancelled") int cancelledStatus);
+
+    @Modifying
+    @Query(value = "INSERT INTO user_feed (user_id, event_id, start_time) VALUES (:userId, :eventId, :startTime) ON CONFLICT DO NOTHING", nativeQuery = true)
+    int addEntry(@Param("userId") int userId, @Param("eventId") int eventId, @Param("startTime") LocalDateTime startTime);
+
+    @Modifying
+    @Query(value = "UPDATE user_feed SET start_time = :startTime WHERE event_id = :eventId", nativeQuery = true)
+    int updateStartTime(@Param("eventId") int eventId, @Param("startTime") LocalDateTime startTime);
+
+    @Modifying
+    @Query(value = "DELETE FROM user_feed WHERE event_id = :eventId", nativeQuery = true)
+    int deleteByEventId(@Param("eventId") int eventId);
+
+    // copies the followee's existing events into the follower's feed once a follow request is accepted
+    @Modifying
+    @Query(value = "INSERT INTO user_feed (user_id, event_id, start_time) " +
+            "SELECT :followerId, e.event_id, e.start_time FROM events e WHERE e.user_id = :followeeId AND e.fanned_out = true AND e.event_status <> :cancelled " +
+            "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int copyEventsOfFollowee(@Param("followerId") int followerId, @Param("followeeId") int followeeId, @Param("cancelled") int cancelledStatus);
+
+    @Modifying
+    @Query(value = "DELETE FROM user_feed uf USING events e WHERE uf.event_id = e.event_id AND uf.user_id = :followerId AND e.user_id = :followeeId", nativeQuery = true)
+    int deleteEventsOfFollowee(@Param("followerId") int followerId, @Param("followeeId") int followeeId);
+
+    // idempotent backfill of every feed from the friends and events tables
+    @Modifying
+    @Query(value = "INSERT INTO user_feed (user_id, event_id, start_time) " +
+            "SELECT f.owner_user_id, e.event_id, e.start_time FROM friends f JOIN events e ON e.user_id = f.friend_user_id " +
+            "WHERE f.is_active = true AND e.fanned_out = true AND e.event_status <> :cancelled " +
+            "UNION SELECT e.user_id, e.event_id, e.start_time FROM events e WHERE e.user_id IS NOT NULL AND e.event_status <> :cancelled " +
+            "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int rebuildAllFeeds(@Param("cancelled") int cancelledStatus);
+}
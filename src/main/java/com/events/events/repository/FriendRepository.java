@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -20,4 +21,22 @@ public interface FriendRepository extends JpaRepository<Friend, Friend.Key> {
 
     @Query(value = "SELECT * FROM friends f where f.friend_user_id = :userId AND f.is_active = false", nativeQuery = true)
     List<Friend> getAllFollowRequests(@Param("userId") int userId);
+
+    // (user_id, following, followed_by) for each of the others that exists, following is whether the user follows them and
+    // followed_by whether they follow the user, true when active, false when only requested and null when neither
+    @Query(value = "SELECT u.user_id, o.is_active AS following, i.is_active AS followed_by FROM users u " +
+            "LEFT JOIN friends o ON o.owner_user_id = :userId AND o.friend_user_id = u.user_id " +
+            "LEFT JOIN friends i ON i.owner_user_id = u.user_id AND i.friend_user_id = :userId " +
+            "WHERE u.user_id IN :userIds", nativeQuery = true)
+    List<Object[]> findConnections(@Param("userId") int userId, @Param("userIds") Collection<Integer> userIds);
+
+    @Query(value = "SELECT f.friend_user_id FROM friends f WHERE f.is_active = true GROUP BY f.friend_user_id HAVING count(*) > :limit", nativeQuery = true)
+    List<Integer> findUserIdsWithMoreFollowersThan(@Param("limit") long limit);
+
+    @Query(value = "SELECT count(*) > 0 FROM friends f WHERE f.owner_user_id = :ownerId AND f.friend_user_id = :friendId", nativeQuery = true)
+    boolean existsFollowOrRequest(@Param("ownerId") int ownerId, @Param("friendId") int friendId);
+
+    // (owner_user_id, friend_user_id, is_active) of every follow and follow request, without loading the users
+    @Query(value = "SELECT f.owner_user_id, f.friend_user_id, f.is_active FROM friends f", nativeQuery = true)
+    List<Object[]> findAllFollows();
 }
@@ -0,0 +1,31 @@
+package com.events.events.repository;
+
+import com.events.events.models.RevokedToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, Integer> {
+
+    // a user can have been revoked more than once, the latest revocation covers the earlier ones
+    Optional<RevokedToken> findFirstByRevocationKeyOrderByRevokedAtDesc(String revocationKey);
+
+    // only the keys and when they were revoked are kept in memory
+    @Query("SELECT r.revocationKey, r.revokedAt FROM RevokedToken r WHERE r.expiresAt > :now")
+    List<Object[]> findKeysNotExpired(@Param("now") LocalDateTime now);
+
+    // ids aren't handed out in the order revocations commit, so newer ones are found by when they were revoked
+    @Query("SELECT r.revocationKey, r.revokedAt FROM RevokedToken r WHERE r.revokedAt >= :since AND r.expiresAt > :now")
+    List<Object[]> findKeysRevokedSince(@Param("since") LocalDateTime since, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("DELETE FROM RevokedToken r WHERE r.expiresAt <= :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,10 +15,20 @@ public interface UserRepository extends JpaRepository<User, Integer> {
 
     Optional<User> findByUsername(String username);
 
-    @Query(value = "SELECT * FROM users u WHERE u.first_name LIKE %:parameter% OR u.last_name LIKE %:parameter% OR u.username LIKE %:parameter%", nativeQuery=true)
-    List<User> findBySearchTerm(@Param("parameter") String parameter);
+    // the LIKE filters are answered from the pg_trgm indexes on the lowercased columns, see db/migration
+    @Query(value = "SELECT * FROM users u WHERE lower(u.first_name) LIKE :pattern OR lower(u.last_name) LIKE :pattern OR lower(u.username) LIKE :pattern " +
+            "ORDER BY GREATEST(similarity(lower(u.first_name), :term), similarity(lower(u.last_name), :term), similarity(lower(u.username), :term)) DESC, u.user_id ASC " +
+            "LIMIT :size", nativeQuery = true)
+    List<User> searchBySimilarity(@Param("term") String term, @Param("pattern") String pattern, @Param("size") int size);
 
     @Query(value = "SELECT id FROM users u WHERE u.facebook_id IN (:facebookIds)", nativeQuery = true)
     List<String> getUserIdsForUsersWithFacebookIds(@Param("facebookIds") List<String> facebookIds);
 
+    // (userId, username, firstName, lastName) of every user, without loading the users
+    @Query("SELECT u.userId, u.username, u.firstName, u.lastName FROM User u")
+    List<Object[]> findNames();
+
+    @Query("SELECT u.userId FROM User u WHERE u.userId IN :userIds")
+    List<Integer> findExistingIds(@Param("userIds") Collection<Integer> userIds);
+
 }
@@ -3,6 +3,11 @@ package com.events.events.scheduling;
 import com.events.events.models.Event;
 import com.events.events.models.EventStatus;
 import com.events.events.repository.EventRepository;
+import com.events.events.services.CalendarService;
+import com.events.events.services.EventTimeIndexService;
+import com.events.events.services.FeedService;
+import com.events.events.services.FollowGraphService;
+import com.events.events.services.TokenRevocationService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
@@ -17,6 +22,21 @@ public class ScheduledTasks {
     @Autowired
     private EventRepository eventRepository;
 
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
+    @Autowired
+    private FeedService feedService;
+
+    @Autowired
+    private CalendarService calendarService;
+
+    @Autowired
+    private FollowGraphService followGraphService;
+
+    @Autowired
+    private EventTimeIndexService eventTimeIndexService;
+
     @Scheduled(cron = "0 0 0 * * ?")
     public void scheduleClosingEventsDayBefore(){
         // close every event that is 24 hours away
@@ -25,6 +45,48 @@ public class ScheduledTasks {
             event.setEventStatus(EventStatus.CLOSED);
         }
         eventRepository.saveAll(events);
+        // picks up the closed events and moves the indexed window on to the new day
+        eventTimeIndexService.rebuildIndex();
+    }
+
+    @Scheduled(fixedDelayString = "${events.security.revocation.refresh-millis:30000}")
+    public void scheduleLoadingNewTokenRevocations(){
+        // picks up the logouts and password changes handled by other instances
+        tokenRevocationService.loadNewRevocations();
+    }
+
+    @Scheduled(cron = "0 30 0 * * ?")
+    public void scheduleDeletingExpiredTokenRevocations(){
+        tokenRevocationService.deleteExpiredRevocations();
+    }
+
+    @Scheduled(fixedDelayString = "${events.feed.fan-out-mode-refresh-millis:600000}")
+    public void scheduleUpdatingFeedFanOutModes(){
+        // counts the followers of every creator, so it runs far less often than the pulled creators are reloaded
+        feedService.updateFanOutModes();
+    }
+
+    @Scheduled(fixedDelayString = "${events.feed.pulled-creators-refresh-millis:30000}")
+    public void scheduleLoadingPulledCreators(){
+        // picks up the creators switched between being pushed and pulled by other instances
+        feedService.loadPulledCreators();
+    }
+
+    @Scheduled(fixedDelayString = "${events.calendar.purge-interval-millis:600000}")
+    public void schedulePurgingExpiredCalendars(){
+        calendarService.purgeExpiredCalendars();
+    }
+
+    @Scheduled(fixedDelayString = "${events.follow-graph.rebuild-millis:3600000}", initialDelayString = "${events.follow-graph.rebuild-millis:3600000}")
+    public void scheduleRebuildingFollowGraph(){
+        // picks up the follows changed by other instances, the graph is loaded on startup so the first run waits
+        followGraphService.rebuildGraph();
+    }
+
+    @Scheduled(fixedDelayString = "${events.time-index.rebuild-millis:3600000}", initialDelayString = "${events.time-index.rebuild-millis:3600000}")
+    public void scheduleRebuildingEventTimeIndex(){
+        // picks up the events changed by other instances, the index is loaded on startup so the first run waits
+        eventTimeIndexService.rebuildIndex();
     }
 
 }
@@ -0,0 +1,132 @@
+package com.events.events.search;
+
+import java.util.*;
+
+/**
+ * A Burkhard-Keller tree of words under the Levenshtein distance, each word mapping to the int ids it was added for.
+ * Every child of a node is filed under its distance to that node's word, so by the triangle inequality a search for
+ * the words within k edits of a term only has to follow the children filed between d - k and d + k, where d is the
+ * distance of the term to the node. Small tolerances visit a small part of the tree instead of every word.
+ * Words are never unlinked once added, a word left without ids stays in the tree to route searches but is not returned.
+ * Not thread safe, callers guard it.
+ */
+public class BKTree {
+
+    private Node root;
+
+    private int size;
+
+    public void put(String word, int id){
+        if(root == null){
+            root = new Node(word);
+            size++;
+        }
+        Node node = root;
+        while(true){
+            int distance = distance(word, node.word);
+            if(distance == 0){
+                node.ids.add(id);
+                return;
+            }
+            Node child = node.children.get(distance);
+            if(child == null){
+                child = new Node(word);
+                child.ids.add(id);
+                node.children.put(distance, child);
+                size++;
+                return;
+            }
+            node = child;
+        }
+    }
+
+    public void remove(String word, int id){
+        Node node = root;
+        while(node != null){
+            int distance = distance(word, node.word);
+            if(distance == 0){
+                node.ids.remove(id);
+                return;
+            }
+            node = node.children.get(distance);
+        }
+    }
+
+    /**
+     * Returns the ids of the words within maxDistance edits of the term, each with its smallest distance
+     */
+    public Map<Integer, Integer> search(String term, int maxDistance){
+        Map<Integer, Integer> found = new HashMap<>();
+        if(root == null){
+            return found;
+        }
+        Deque<Node> pending = new ArrayDeque<>();
+        pending.push(root);
+        while(!pending.isEmpty()){
+            Node node = pending.pop();
+            int distance = distance(term, node.word);
+            if(distance <= maxDistance){
+                for(Integer id : node.ids){
+                    found.merge(id, distance, Math::min);
+                }
+            }
+            for(int edge = Math.max(1, distance - maxDistance); edge <= distance + maxDistance; edge++){
+                Node child = node.children.get(edge);
+                if(child != null){
+                    pending.push(child);
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * The number of distinct words in the tree
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Levenshtein distance, the smallest number of single character insertions, deletions and substitutions
+     * that turn one string into the other
+     */
+    public static int distance(String first, String second){
+        if(first.length() < second.length()){
+            String swap = first;
+            first = second;
+            second = swap;
+        }
+        // only two rows of the table are kept, sized by the shorter string
+        int[] previous = new int[second.length() + 1];
+        int[] current = new int[second.length() + 1];
+        for(int j = 0; j <= second.length(); j++){
+            previous[j] = j;
+        }
+        for(int i = 1; i <= first.length(); i++){
+            current[0] = i;
+            char c = first.charAt(i - 1);
+            for(int j = 1; j <= second.length(); j++){
+                int substitution = previous[j - 1] + (c == second.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[second.length()];
+    }
+
+    private static class Node {
+
+        private final String word;
+
+        private final Set<Integer> ids = new HashSet<>(2);
+
+        private final Map<Integer, Node> children = new HashMap<>(4);
+
+        private Node(String word) {
+            this.word = word;
+        }
+    }
+}
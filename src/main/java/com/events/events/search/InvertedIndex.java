@@ -0,0 +1,111 @@
+package com.events.events.search;
+
+import java.util.*;
+import java.util.function.IntPredicate;
+
+/**
+ * Maps the words of documents made of a few text fields to the documents containing them and ranks matches with BM25.
+ * A field's words count as many times as the field's weight, so a word in a heavier field raises the score more.
+ * The collection statistics BM25 needs, the number of documents and their average length, are kept up to date
+ * as documents are added and removed.
+ * Not thread safe, callers guard it.
+ */
+public class InvertedIndex {
+
+    // how quickly repeating a word stops raising the score
+    private static final double K1 = 1.2;
+
+    // how much longer documents are penalised for having more words to match in
+    private static final double B = 0.75;
+
+    private final double[] fieldWeights;
+
+    private final Map<String, Map<Integer, Double>> postings = new HashMap<>();
+
+    private final Map<Integer, Set<String>> documentTerms = new HashMap<>();
+
+    private final Map<Integer, Double> documentLengths = new HashMap<>();
+
+    private double totalLength;
+
+    public InvertedIndex(double... fieldWeights) {
+        this.fieldWeights = fieldWeights;
+    }
+
+    public void put(int id, String... fields){
+        remove(id);
+        Map<String, Double> frequencies = new HashMap<>();
+        double length = 0;
+        for(int i = 0; i < fields.length && i < fieldWeights.length; i++){
+            for(String term : tokenize(fields[i])){
+                frequencies.merge(term, fieldWeights[i], Double::sum);
+                length += fieldWeights[i];
+            }
+        }
+        for(Map.Entry<String, Double> frequency : frequencies.entrySet()){
+            postings.computeIfAbsent(frequency.getKey(), term -> new HashMap<>()).put(id, frequency.getValue());
+        }
+        documentTerms.put(id, frequencies.keySet());
+        documentLengths.put(id, length);
+        totalLength += length;
+    }
+
+    public void remove(int id){
+        Set<String> terms = documentTerms.remove(id);
+        if(terms == null){
+            return;
+        }
+        for(String term : terms){
+            Map<Integer, Double> documents = postings.get(term);
+            documents.remove(id);
+            if(documents.isEmpty()){
+                postings.remove(term);
+            }
+        }
+        totalLength -= documentLengths.remove(id);
+    }
+
+    /**
+     * Returns the BM25 score of every document accepted by the filter that contains at least one word of the query
+     */
+    public Map<Integer, Double> search(String query, IntPredicate filter){
+        Map<Integer, Double> scores = new HashMap<>();
+        int documentCount = documentTerms.size();
+        if(documentCount == 0){
+            return scores;
+        }
+        double averageLength = Math.max(totalLength / documentCount, 1);
+        for(String term : new LinkedHashSet<>(tokenize(query))){
+            Map<Integer, Double> documents = postings.get(term);
+            if(documents == null){
+                continue;
+            }
+            // rarer words tell more about a document, this form of the idf never goes negative
+            double idf = Math.log(1 + (documentCount - documents.size() + 0.5) / (documents.size() + 0.5));
+            for(Map.Entry<Integer, Double> document : documents.entrySet()){
+                if(!filter.test(document.getKey())){
+                    continue;
+                }
+                double frequency = document.getValue();
+                double length = documentLengths.get(document.getKey());
+                double score = idf * frequency * (K1 + 1) / (frequency + K1 * (1 - B + B * length / averageLength));
+                scores.merge(document.getKey(), score, Double::sum);
+            }
+        }
+        return scores;
+    }
+
+    public int size(){
+        return documentTerms.size();
+    }
+
+    public static List<String> tokenize(String text){
+        List<String> tokens = new ArrayList<>();
+        for(String token : TextNormalizer.normalize(text).split("[^\\p{L}\\p{N}]+")){
+            if(!token.isEmpty()){
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,128 @@
+package com.events.events.search;
+
+import java.util.*;
+
+/**
+ * A prefix tree with the chains of single child nodes merged into one edge, mapping string keys to int ids.
+ * Looking up a prefix walks at most one node per edge label and then visits the nodes below it level by level,
+ * stopping as soon as enough distinct ids were found, so the cost depends on the prefix and the limit and not on
+ * the number of keys.
+ * Not thread safe, callers guard it.
+ */
+public class RadixTrie {
+
+    private final Node root = new Node("");
+
+    public void put(String key, int id){
+        Node node = root;
+        String rest = key;
+        while(!rest.isEmpty()){
+            Node child = node.children.get(rest.charAt(0));
+            if(child == null){
+                child = new Node(rest);
+                node.children.put(rest.charAt(0), child);
+                node = child;
+                break;
+            }
+            int common = commonPrefixLength(child.label, rest);
+            if(common < child.label.length()){
+                // the new key leaves the edge part way along, the edge is split where they differ
+                Node split = new Node(child.label.substring(0, common));
+                child.label = child.label.substring(common);
+                split.children.put(child.label.charAt(0), child);
+                node.children.put(split.label.charAt(0), split);
+                child = split;
+            }
+            node = child;
+            rest = rest.substring(common);
+        }
+        node.ids.add(id);
+    }
+
+    public void remove(String key, int id){
+        Deque<Node> path = new ArrayDeque<>();
+        Node node = root;
+        String rest = key;
+        while(!rest.isEmpty()){
+            path.push(node);
+            Node child = node.children.get(rest.charAt(0));
+            if(child == null || !rest.startsWith(child.label)){
+                return;
+            }
+            rest = rest.substring(child.label.length());
+            node = child;
+        }
+        if(!node.ids.remove(id) || node == root){
+            return;
+        }
+        Node parent = path.pop();
+        if(node.ids.isEmpty() && node.children.isEmpty()){
+            parent.children.remove(node.label.charAt(0));
+            node = parent;
+            parent = path.isEmpty() ? null : path.pop();
+        }
+        // a node left without ids and with a single child is folded back into the edge to its child
+        if(parent != null && node.ids.isEmpty() && node.children.size() == 1){
+            Node child = node.children.values().iterator().next();
+            child.label = node.label + child.label;
+            parent.children.put(child.label.charAt(0), child);
+        }
+    }
+
+    /**
+     * Returns at most limit distinct ids of the keys starting with the prefix, the ids of keys nearer the prefix first
+     */
+    public Set<Integer> findByPrefix(String prefix, int limit){
+        Set<Integer> found = new LinkedHashSet<>();
+        Node node = root;
+        String rest = prefix;
+        while(!rest.isEmpty()){
+            Node child = node.children.get(rest.charAt(0));
+            if(child == null){
+                return found;
+            }
+            int common = commonPrefixLength(child.label, rest);
+            if(common < rest.length() && common < child.label.length()){
+                return found;
+            }
+            rest = rest.substring(common);
+            node = child;
+        }
+        // breadth first so that the ids of keys closer to the prefix are found before longer ones
+        Deque<Node> queue = new ArrayDeque<>();
+        queue.add(node);
+        while(!queue.isEmpty() && found.size() < limit){
+            Node next = queue.poll();
+            for(Integer id : next.ids){
+                found.add(id);
+                if(found.size() == limit){
+                    break;
+                }
+            }
+            queue.addAll(next.children.values());
+        }
+        return found;
+    }
+
+    private static int commonPrefixLength(String first, String second){
+        int length = Math.min(first.length(), second.length());
+        int i = 0;
+        while(i < length && first.charAt(i) == second.charAt(i)){
+            i++;
+        }
+        return i;
+    }
+
+    private static class Node {
+
+        private String label;
+
+        private final SortedMap<Character, Node> children = new TreeMap<>();
+
+        private final SortedSet<Integer> ids = new TreeSet<>();
+
+        private Node(String label) {
+            this.label = label;
+        }
+    }
+}
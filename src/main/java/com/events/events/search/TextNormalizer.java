@@ -0,0 +1,22 @@
+package com.events.events.search;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * Brings names typed by users and names stored on users to the same form before they are compared,
+ * lower case without accents and with single spaces.
+ */
+public final class TextNormalizer {
+
+    private TextNormalizer() {
+    }
+
+    public static String normalize(String value){
+        if(value == null){
+            return "";
+        }
+        String decomposed = Normalizer.normalize(value, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return decomposed.toLowerCase(Locale.ROOT).trim().replaceAll("\\s+", " ");
+    }
+}
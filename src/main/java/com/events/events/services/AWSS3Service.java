@@ -1,8 +1,11 @@
 package com.events.events.services;
 
+import com.events.events.models.FileDownload;
+import org.springframework.http.HttpRange;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.net.URL;
+import java.util.List;
 
 public interface AWSS3Service {
 
@@ -14,7 +17,14 @@ public interface AWSS3Service {
     String uploadFile(final MultipartFile multipartFile, String folder);
 
 
-    byte[] downloadFile(final String fileName);
+    /**
+     * Opens the file for streaming, only the requested range of it when a single range is asked for
+     * Several ranges aren't supported, the whole file is returned for those
+     * @param fileName
+     * @param ranges the ranges of the Range header, empty for the whole file
+     * @return
+     */
+    FileDownload openFile(final String fileName, List<HttpRange> ranges);
 
     /**
      * Deletes the file given the filename
@@ -4,23 +4,46 @@ import com.amazonaws.AmazonServiceException;
 import com.amazonaws.HttpMethod;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.*;
-import com.amazonaws.util.IOUtils;
+import com.events.events.error.RangeNotSatisfiableException;
+import com.events.events.models.FileDownload;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpRange;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
-import java.io.FileOutputStream;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
-public class AWSS3ServiceImpl implements AWSS3Service{
+public class AWSS3ServiceImpl implements AWSS3Service, MeterBinder {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AWSS3ServiceImpl.class);
 
@@ -30,45 +53,164 @@ public class AWSS3ServiceImpl implements AWSS3Service{
     @Value("${aws.s3.bucket}")
     private String bucketName;
 
+    @Value("${aws.s3.multipart.threshold-bytes:16777216}")
+    private long multipartThreshold;
+
+    @Value("${aws.s3.multipart.part-size-bytes:8388608}")
+    private int partSize;
+
+    // S3 rejects the completion of an upload with a part other than the last below 5MB
+    @Value("${aws.s3.multipart.min-part-size-bytes:5242880}")
+    private int minPartSize;
+
+    @Value("${aws.s3.multipart.threads:4}")
+    private int partUploadThreads;
+
+    @Value("${aws.s3.multipart.queue-capacity:4}")
+    private int partUploadQueueCapacity;
+
+    @Value("${aws.s3.presigned-url.cache.max-size:50000}")
+    private int presignedUrlCacheMaxSize;
+
+    // a cached URL is signed again this long before it expires, so clients always get one usable for at least as long
+    @Value("${aws.s3.presigned-url.cache.refresh-margin-minutes:10}")
+    private long presignedUrlRefreshMarginMinutes;
+
+    @Value("${aws.s3.disk-cache.enabled:false}")
+    private boolean diskCacheEnabled;
+
+    @Value("${aws.s3.disk-cache.directory:${java.io.tmpdir}/events-image-cache}")
+    private String diskCacheDirectory;
+
+    @Value("${aws.s3.disk-cache.max-bytes:536870912}")
+    private long diskCacheMaxBytes;
+
+    // larger files are always read from S3, so a few of them can't push the whole hot set out of the cache
+    @Value("${aws.s3.disk-cache.max-file-bytes:16777216}")
+    private long diskCacheMaxFileBytes;
+
+    private ExecutorService partUploadExecutor;
+
+    private PresignedUrlCache presignedUrlCache;
+
+    // null when the disk cache is turned off
+    private DiskImageCache diskImageCache;
+
+    /**
+     * Every queued part holds a buffer of the part size, so when the queue is full the thread reading the file
+     * uploads the part itself, which stops it reading more parts until there is room again.
+     */
+    @PostConstruct
+    public void setup() throws IOException {
+        if(partSize < minPartSize){
+            // otherwise the mistake only shows up when the first large file fails to upload
+            throw new IllegalStateException("aws.s3.multipart.part-size-bytes is " + partSize
+                    + " but S3 needs parts of at least " + minPartSize + " bytes");
+        }
+        if(diskCacheEnabled){
+            diskImageCache = new DiskImageCache(Paths.get(diskCacheDirectory), diskCacheMaxBytes);
+        }
+        presignedUrlCache = new PresignedUrlCache(presignedUrlCacheMaxSize, presignedUrlRefreshMarginMinutes * 60_000);
+        final AtomicInteger count = new AtomicInteger();
+        partUploadExecutor = new ThreadPoolExecutor(partUploadThreads, partUploadThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(partUploadQueueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "s3-part-upload-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    public void stopPartUploadExecutor(){
+        partUploadExecutor.shutdown();
+        if(diskImageCache != null){
+            diskImageCache.close();
+        }
+    }
+
     @Override
     @Async
     public String uploadFile(MultipartFile multipartFile, String folder) {
         LOGGER.info("Uploading File to S3 in progress");
         String fileName = null;
         try{
-            final File file = convertMultiPartFileToFile(multipartFile);
-            fileName = uploadFileToS3Bucket(bucketName, file, folder);
+            fileName = uploadFileToS3Bucket(bucketName, multipartFile, folder);
             LOGGER.info("Upload complete");
-            file.delete();
         }catch(AmazonServiceException exception){
             LOGGER.info("File upload is failed.");
             LOGGER.error("Error while uploading file = ", exception.getMessage());
+        }catch (IOException exception){
+            LOGGER.info("File upload is failed.");
+            LOGGER.error("Error reading the multi-part file = ", exception.getMessage());
         }
         return fileName;
     }
 
     @Override
-    @Async
-    public byte[] downloadFile(String fileName) {
+    public FileDownload openFile(String fileName, List<HttpRange> ranges) {
+        if(diskImageCache != null){
+            DiskImageCache.CachedFile cachedFile = diskImageCache.get(fileName);
+            if(cachedFile != null){
+                try {
+                    return openCachedFile(cachedFile, ranges);
+                } catch (IOException exception) {
+                    // dropped from the cache and deleted after it was looked up, S3 still has it
+                    LOGGER.error("Error opening cached file = " + fileName + ", " + exception.getMessage());
+                    diskImageCache.invalidate(fileName, cachedFile);
+                }
+            }
+        }
         LOGGER.info("Downloading File from S3");
-        byte[] content = null;
-        File file = new File(fileName);
-        final S3Object s3Object = amazonS3.getObject(bucketName, fileName);
-        final S3ObjectInputStream  s3ObjectInputStream = s3Object.getObjectContent();
-        try{
-            content = IOUtils.toByteArray(s3ObjectInputStream);
-            LOGGER.info("File Downloaded successfully");
-            s3Object.close();
-        }catch (IOException exception){
-            LOGGER.info("Error downloading file ="+ exception.getMessage());
+        if(ranges.size() != 1){
+            final S3Object s3Object = amazonS3.getObject(bucketName, fileName);
+            final ObjectMetadata metadata = s3Object.getObjectMetadata();
+            InputStream content = s3Object.getObjectContent();
+            if(diskImageCache != null && metadata.getContentLength() <= diskCacheMaxFileBytes){
+                // copied to the disk as it is sent so the response doesn't wait for the copy,
+                // ranges are sent from S3 until the whole file has been read once
+                content = diskImageCache.fillWhileReading(fileName, content, metadata.getContentLength(), metadata.getContentType(), metadata.getETag());
+            }
+            return new FileDownload(content, metadata.getContentLength(), metadata.getContentType(), metadata.getETag());
+        }
+        // the length of the file is needed to work out ranges like the last 500 bytes,
+        // files are never changed in place, every upload gets a new name, so it can't change before the range is read
+        final ObjectMetadata metadata = amazonS3.getObjectMetadata(bucketName, fileName);
+        final long fileLength = metadata.getContentLength();
+        final long[] range = resolveRange(ranges.get(0), fileLength);
+        final S3Object s3Object = amazonS3.getObject(new GetObjectRequest(bucketName, fileName).withRange(range[0], range[1]));
+        return new FileDownload(s3Object.getObjectContent(), fileLength, metadata.getContentType(), metadata.getETag(), range[0], range[1]);
+    }
+
+    private FileDownload openCachedFile(DiskImageCache.CachedFile cachedFile, List<HttpRange> ranges) throws IOException {
+        final long fileLength = cachedFile.getLength();
+        // the range is checked before the file is opened so a bad range doesn't leave a channel open
+        final long[] range = ranges.size() == 1 ? resolveRange(ranges.get(0), fileLength) : null;
+        final FileChannel channel = cachedFile.open();
+        if(range == null){
+            return new FileDownload(channel, fileLength, cachedFile.getContentType(), cachedFile.getETag(), null, null);
+        }
+        return new FileDownload(channel, fileLength, cachedFile.getContentType(), cachedFile.getETag(), range[0], range[1]);
+    }
+
+    private long[] resolveRange(HttpRange range, long fileLength){
+        try {
+            return new long[]{range.getRangeStart(fileLength), range.getRangeEnd(fileLength)};
+        } catch (IllegalArgumentException exception) {
+            throw new RangeNotSatisfiableException("The requested range is outside the file of " + fileLength + " bytes", fileLength);
         }
-        return content;
     }
 
     @Override
     @Async
     public void deleteFile(String fileName) {
         LOGGER.info("Deleting file with name = " + fileName);
+        // files are deleted when an image is replaced, the URL of the old one must not be handed out any more
+        presignedUrlCache.invalidate(fileName);
+        if(diskImageCache != null){
+            diskImageCache.invalidate(fileName);
+        }
         final DeleteObjectRequest deleteObjectRequest = new DeleteObjectRequest(bucketName, fileName);
         amazonS3.deleteObject(deleteObjectRequest);
         LOGGER.info("File deleted successfully");
@@ -76,32 +218,118 @@ public class AWSS3ServiceImpl implements AWSS3Service{
 
     @Override
     public URL getPreSignedUrl(String s3Key){
-        LocalDateTime expiration = LocalDateTime.now().plusHours(1);
+        URL url = presignedUrlCache.get(s3Key);
+        if(url != null){
+            return url;
+        }
+        Date expiration = java.sql.Timestamp.valueOf(LocalDateTime.now().plusHours(1));
         LOGGER.info("Generating pre-signed URL.");
         GeneratePresignedUrlRequest generatePresignedUrlRequest = new GeneratePresignedUrlRequest(bucketName, s3Key)
                 .withMethod(HttpMethod.GET)
-                .withExpiration(java.sql.Timestamp.valueOf(expiration));
-        URL url = amazonS3.generatePresignedUrl(generatePresignedUrlRequest);
+                .withExpiration(expiration);
+        url = amazonS3.generatePresignedUrl(generatePresignedUrlRequest);
+        presignedUrlCache.put(s3Key, url, expiration);
         return url;
     }
 
-    private File convertMultiPartFileToFile(final MultipartFile multipartFile) {
-        // create a new file with the same name as the multipart file
-        final File file = new File(multipartFile.getOriginalFilename());
-        try (final FileOutputStream outputStream = new FileOutputStream(file)) {
-            // write the contents of the multipart file to the new file
-            outputStream.write(multipartFile.getBytes());
-        } catch (final IOException exception) {
-            LOGGER.error("Error converting the multi-part file to file= ", exception.getMessage());
-        }
-        return file;
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("events.s3.presigned-url.cache.hits", presignedUrlCache, PresignedUrlCache::getHits)
+                .description("Pre-signed URLs handed out from the cache")
+                .register(registry);
+        FunctionCounter.builder("events.s3.presigned-url.cache.misses", presignedUrlCache, PresignedUrlCache::getMisses)
+                .description("Pre-signed URLs that had to be signed")
+                .register(registry);
+        Gauge.builder("events.s3.presigned-url.cache.hit-rate", presignedUrlCache, PresignedUrlCache::getHitRate)
+                .description("Share of pre-signed URLs handed out from the cache")
+                .register(registry);
+        Gauge.builder("events.s3.presigned-url.cache.size", presignedUrlCache, PresignedUrlCache::size)
+                .description("Pre-signed URLs in the cache")
+                .register(registry);
     }
 
-    private String uploadFileToS3Bucket(final String bucketName, final File file, final String folder) {
-        final String uniqueFileName = folder + "/" +LocalDateTime.now() + "_" + file.getName();
+    private String uploadFileToS3Bucket(final String bucketName, final MultipartFile multipartFile, final String folder) throws IOException {
+        final String uniqueFileName = folder + "/" + LocalDateTime.now() + "_" + UUID.randomUUID() + "_" + fileNameOf(multipartFile);
         LOGGER.info("Uploading file with name= " + uniqueFileName);
-        final PutObjectRequest putObjectRequest = new PutObjectRequest(bucketName, uniqueFileName, file);
-        amazonS3.putObject(putObjectRequest);
+        if(multipartFile.getSize() >= multipartThreshold){
+            uploadFileInParts(bucketName, multipartFile, uniqueFileName);
+            return uniqueFileName;
+        }
+        // the length is given up front so the client streams the upload instead of buffering it to work it out
+        final ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(multipartFile.getSize());
+        if(multipartFile.getContentType() != null){
+            metadata.setContentType(multipartFile.getContentType());
+        }
+        try (final InputStream inputStream = multipartFile.getInputStream()) {
+            final PutObjectRequest putObjectRequest = new PutObjectRequest(bucketName, uniqueFileName, inputStream, metadata);
+            amazonS3.putObject(putObjectRequest);
+        }
         return uniqueFileName;
     }
+
+    // large files are read a part at a time and the parts are uploaded in parallel,
+    // if any of them fails the upload is aborted so S3 doesn't keep the parts already uploaded
+    private void uploadFileInParts(final String bucketName, final MultipartFile multipartFile, final String fileName) throws IOException {
+        final ObjectMetadata metadata = new ObjectMetadata();
+        if(multipartFile.getContentType() != null){
+            metadata.setContentType(multipartFile.getContentType());
+        }
+        final String uploadId = amazonS3.initiateMultipartUpload(new InitiateMultipartUploadRequest(bucketName, fileName, metadata)).getUploadId();
+        LOGGER.info("Uploading file with name= " + fileName + " in parts");
+        final List<Future<PartETag>> parts = new ArrayList<>();
+        try (final DataInputStream inputStream = new DataInputStream(multipartFile.getInputStream())) {
+            long remaining = multipartFile.getSize();
+            for(int partNumber = 1; remaining > 0; partNumber++){
+                final byte[] part = new byte[(int) Math.min(partSize, remaining)];
+                inputStream.readFully(part);
+                remaining -= part.length;
+                final UploadPartRequest uploadPartRequest = new UploadPartRequest()
+                        .withBucketName(bucketName)
+                        .withKey(fileName)
+                        .withUploadId(uploadId)
+                        .withPartNumber(partNumber)
+                        .withPartSize(part.length)
+                        .withInputStream(new ByteArrayInputStream(part))
+                        .withLastPart(remaining == 0);
+                parts.add(partUploadExecutor.submit(() -> amazonS3.uploadPart(uploadPartRequest).getPartETag()));
+            }
+            final List<PartETag> partETags = new ArrayList<>();
+            for(Future<PartETag> part : parts){
+                partETags.add(part.get());
+            }
+            amazonS3.completeMultipartUpload(new CompleteMultipartUploadRequest(bucketName, fileName, uploadId, partETags));
+        } catch (IOException | RuntimeException exception) {
+            abortUpload(bucketName, fileName, uploadId, parts);
+            throw exception;
+        } catch (InterruptedException exception) {
+            abortUpload(bucketName, fileName, uploadId, parts);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while uploading file= " + fileName, exception);
+        } catch (ExecutionException exception) {
+            abortUpload(bucketName, fileName, uploadId, parts);
+            if(exception.getCause() instanceof RuntimeException){
+                throw (RuntimeException) exception.getCause();
+            }
+            throw new IOException("Error uploading a part of file= " + fileName, exception.getCause());
+        }
+    }
+
+    private void abortUpload(final String bucketName, final String fileName, final String uploadId, final List<Future<PartETag>> parts) {
+        for(Future<PartETag> part : parts){
+            part.cancel(true);
+        }
+        try {
+            amazonS3.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, fileName, uploadId));
+            LOGGER.info("Aborted the upload of file= " + fileName);
+        } catch (AmazonServiceException exception) {
+            LOGGER.error("Error aborting the upload of file= " + fileName + ", " + exception.getMessage());
+        }
+    }
+
+    // only the last part of the name the client sent, it can contain the path the file had on their machine
+    private String fileNameOf(final MultipartFile multipartFile) {
+        final String fileName = StringUtils.getFilename(StringUtils.cleanPath(String.valueOf(multipartFile.getOriginalFilename())));
+        return fileName == null || fileName.isEmpty() ? "file" : fileName;
+    }
 }
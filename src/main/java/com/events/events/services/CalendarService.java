@@ -0,0 +1,43 @@
+package com.events.events.services;
+
+import com.events.events.models.CalendarEntry;
+import com.events.events.models.Event;
+
+import java.util.Optional;
+
+public interface CalendarService {
+
+    /**
+     * This method returns another event the user created or attends that overlaps with the time of the event
+     * Cancelled events are not part of the calendar
+     * @param userId
+     * @param event
+     * @return
+     */
+    Optional<CalendarEntry> findConflict(int userId, Event event);
+
+    /**
+     * This method adds an event to the calendar of the user who created it or is attending it
+     * @param userId
+     * @param event
+     * @param created
+     */
+    void addEvent(int userId, Event event, boolean created);
+
+    /**
+     * This method moves the event to its new time in every calendar it is part of
+     * @param event
+     */
+    void updateEvent(Event event);
+
+    /**
+     * This method removes a cancelled or deleted event from every calendar
+     * @param eventId
+     */
+    void removeEvent(int eventId);
+
+    /**
+     * This method drops the cached calendars that were loaded longer ago than they are kept for
+     */
+    void purgeExpiredCalendars();
+}
@@ -0,0 +1,273 @@
+package com.events.events.services;
+
+import com.events.events.models.CalendarEntry;
+import com.events.events.models.Event;
+import com.events.events.models.EventStatus;
+import com.events.events.models.UserCalendar;
+import com.events.events.repository.EventRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+@Service
+public class CalendarServiceImpl implements CalendarService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CalendarServiceImpl.class);
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Value("${events.calendar.expire-after-minutes:30}")
+    private long expireAfterMinutes;
+
+    @Value("${events.calendar.max-calendars:10000}")
+    private int maxCalendars;
+
+    // kept in the order the calendars were loaded, which is also the order they expire in
+    private final LinkedHashMap<Integer, CachedCalendar> calendars = new LinkedHashMap<>();
+
+    // the users whose cached calendar has each event, so a change to an event only touches their calendars,
+    // guarded by the calendars like the calendars themselves
+    private final Map<Integer, Set<Integer>> usersByEvent = new HashMap<>();
+
+    // the calendars being read from the database for each user, the changes made while they are read may be
+    // missing from what is read so they are kept to be applied before the calendar is cached, guarded by the calendars
+    private final Map<Integer, List<Load>> loads = new HashMap<>();
+
+    @Override
+    public Optional<CalendarEntry> findConflict(int userId, Event event) {
+        return calendarOf(userId).findOverlap(event.getEventId(), event.getStartTime(), event.getEndTime());
+    }
+
+    @Override
+    public void addEvent(int userId, Event event, boolean created) {
+        CalendarEntry entry = created ? CalendarEntry.created(event) : CalendarEntry.attending(event);
+        synchronized (calendars){
+            CachedCalendar cached = calendars.get(userId);
+            List<Load> userLoads = loads.getOrDefault(userId, Collections.emptyList());
+            // calendars that are not loaded pick the event up from the database when they are
+            if(cached == null && userLoads.isEmpty()){
+                return;
+            }
+            for(Load load : userLoads){
+                load.changes.add(calendar -> calendar.with(entry));
+            }
+            if(cached != null){
+                calendars.put(userId, cached.with(cached.calendar.with(entry)));
+                usersByEvent.computeIfAbsent(event.getEventId(), id -> new HashSet<>()).add(userId);
+            }
+        }
+        evictOnRollback(Collections.singleton(userId));
+    }
+
+    @Override
+    public void updateEvent(Event event) {
+        Set<Integer> changed;
+        synchronized (calendars){
+            changed = new HashSet<>(usersByEvent.getOrDefault(event.getEventId(), Collections.emptySet()));
+            for(Integer userId : changed){
+                CachedCalendar cached = calendars.get(userId);
+                calendars.put(userId, cached.with(cached.calendar.rescheduled(event.getEventId(), event.getStartTime(), event.getEndTime())));
+            }
+            // calendars being read may have read the event before it changed, those without it are left as they are
+            changed.addAll(changeLoads(calendar -> calendar.rescheduled(event.getEventId(), event.getStartTime(), event.getEndTime())));
+        }
+        evictOnRollback(changed);
+    }
+
+    @Override
+    public void removeEvent(int eventId) {
+        Set<Integer> changed = new HashSet<>();
+        synchronized (calendars){
+            Set<Integer> userIds = usersByEvent.remove(eventId);
+            if(userIds != null){
+                changed.addAll(userIds);
+                for(Integer userId : userIds){
+                    CachedCalendar cached = calendars.get(userId);
+                    calendars.put(userId, cached.with(cached.calendar.without(eventId)));
+                }
+            }
+            changed.addAll(changeLoads(calendar -> calendar.without(eventId)));
+        }
+        evictOnRollback(changed);
+    }
+
+    @Override
+    public void purgeExpiredCalendars() {
+        long now = System.nanoTime();
+        synchronized (calendars){
+            Iterator<Map.Entry<Integer, CachedCalendar>> loadedFirst = calendars.entrySet().iterator();
+            while(loadedFirst.hasNext()){
+                Map.Entry<Integer, CachedCalendar> oldest = loadedFirst.next();
+                if(!oldest.getValue().isExpired(now, expireAfterNanos())){
+                    break;
+                }
+                loadedFirst.remove();
+                unindex(oldest.getKey(), oldest.getValue());
+            }
+        }
+    }
+
+    private UserCalendar calendarOf(int userId){
+        long now = System.nanoTime();
+        CachedCalendar cached;
+        synchronized (calendars){
+            cached = calendars.get(userId);
+        }
+        if(cached == null || cached.isExpired(now, expireAfterNanos())){
+            LOGGER.info("Loading calendar for user id: " + userId);
+            Load load = new Load();
+            synchronized (calendars){
+                loads.computeIfAbsent(userId, id -> new ArrayList<>()).add(load);
+            }
+            UserCalendar calendar;
+            try {
+                calendar = readCalendar(userId);
+            } catch (RuntimeException e) {
+                synchronized (calendars){
+                    endLoad(userId, load);
+                }
+                throw e;
+            }
+            synchronized (calendars){
+                endLoad(userId, load);
+                for(UnaryOperator<UserCalendar> change : load.changes){
+                    calendar = change.apply(calendar);
+                }
+                cached = new CachedCalendar(calendar, now);
+                // a change applied while reading that was rolled back since can't be taken out again,
+                // the calendar is only used for this check and read again next time
+                if(load.rolledBack){
+                    return cached.calendar;
+                }
+                // removed first so the calendar moves to the end of the load order
+                drop(userId);
+                calendars.put(userId, cached);
+                for(int eventId : cached.calendar.eventIds()){
+                    usersByEvent.computeIfAbsent(eventId, id -> new HashSet<>()).add(userId);
+                }
+                // the calendars loaded first are dropped to stay within the limit, they are the next to expire anyway
+                Iterator<Map.Entry<Integer, CachedCalendar>> loadedFirst = calendars.entrySet().iterator();
+                while(calendars.size() > maxCalendars){
+                    Map.Entry<Integer, CachedCalendar> oldest = loadedFirst.next();
+                    loadedFirst.remove();
+                    unindex(oldest.getKey(), oldest.getValue());
+                }
+            }
+        }
+        return cached.calendar;
+    }
+
+    private UserCalendar readCalendar(int userId){
+        List<CalendarEntry> entries = new ArrayList<>();
+        for(CalendarEntry entry : eventRepository.findCalendarEntriesCreatedBy(userId, EventStatus.CANCELLED)){
+            entries.add(entry.asCreated());
+        }
+        entries.addAll(eventRepository.findCalendarEntriesAttendedBy(userId, EventStatus.CANCELLED));
+        return UserCalendar.of(entries);
+    }
+
+    // callers hold the lock on the calendars, returns the users whose calendars are being read
+    private Set<Integer> changeLoads(UnaryOperator<UserCalendar> change){
+        for(List<Load> userLoads : loads.values()){
+            for(Load load : userLoads){
+                load.changes.add(change);
+            }
+        }
+        return new HashSet<>(loads.keySet());
+    }
+
+    // callers hold the lock on the calendars
+    private void endLoad(int userId, Load load){
+        List<Load> userLoads = loads.get(userId);
+        userLoads.remove(load);
+        if(userLoads.isEmpty()){
+            loads.remove(userId);
+        }
+    }
+
+    // callers hold the lock on the calendars
+    private void drop(int userId){
+        CachedCalendar removed = calendars.remove(userId);
+        if(removed != null){
+            unindex(userId, removed);
+        }
+    }
+
+    // callers hold the lock on the calendars
+    private void unindex(int userId, CachedCalendar cached){
+        for(int eventId : cached.calendar.eventIds()){
+            Set<Integer> userIds = usersByEvent.get(eventId);
+            if(userIds != null && userIds.remove(userId) && userIds.isEmpty()){
+                usersByEvent.remove(eventId);
+            }
+        }
+    }
+
+    private long expireAfterNanos(){
+        return TimeUnit.MINUTES.toNanos(expireAfterMinutes);
+    }
+
+    // calendars are changed straight away so requests in flight see the change, a rolled back change
+    // is dropped by loading the calendars again
+    private void evictOnRollback(Set<Integer> userIds){
+        if(userIds.isEmpty() || !TransactionSynchronizationManager.isSynchronizationActive()){
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int status) {
+                if(status != TransactionSynchronization.STATUS_COMMITTED){
+                    synchronized (calendars){
+                        for(Integer userId : userIds){
+                            drop(userId);
+                            for(Load load : loads.getOrDefault(userId, Collections.emptyList())){
+                                load.rolledBack = true;
+                            }
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * A calendar being read from the database and the changes made to it since the read started
+     */
+    private static class Load {
+
+        private final List<UnaryOperator<UserCalendar>> changes = new ArrayList<>();
+
+        private boolean rolledBack;
+    }
+
+    private static class CachedCalendar {
+
+        private final UserCalendar calendar;
+
+        private final long loadedAt;
+
+        private CachedCalendar(UserCalendar calendar, long loadedAt) {
+            this.calendar = calendar;
+            this.loadedAt = loadedAt;
+        }
+
+        // a changed calendar keeps the time it was loaded at so it is still reloaded from the database in time
+        private CachedCalendar with(UserCalendar calendar){
+            return new CachedCalendar(calendar, loadedAt);
+        }
+
+        private boolean isExpired(long now, long expireAfterNanos){
+            return now - loadedAt > expireAfterNanos;
+        }
+    }
+}
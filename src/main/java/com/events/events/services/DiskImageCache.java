@@ -0,0 +1,324 @@
+package com.events.events.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps copies of files from S3 in a directory on the local disk, up to a total size, dropping the least recently
+ * read files first when it is full. The files themselves are deleted on a background thread, readers that opened a
+ * file before it was dropped keep reading it. Which files are cached isn't kept across restarts, so the copies left
+ * in the directory are deleted when the cache is created, anything else in it is left alone.
+ */
+public class DiskImageCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DiskImageCache.class);
+
+    private static final String PREFIX = "image";
+
+    private static final String SUFFIX = ".cache";
+
+    private final Path directory;
+
+    private final long maxBytes;
+
+    // kept in access order, the first file is the least recently read one
+    private final LinkedHashMap<String, CachedFile> files = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long sizeBytes;
+
+    // the files being copied to the disk as they are read, so a file is only copied by one reader at a time
+    private final Map<String, FillingInputStream> filling = new ConcurrentHashMap<>();
+
+    private final ExecutorService deleter = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "disk-image-cache-deleter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param directory the directory the files are kept in, they are named image*.cache
+     * @param maxBytes the most bytes kept at once
+     */
+    public DiskImageCache(Path directory, long maxBytes) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.maxBytes = maxBytes;
+        try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(this.directory, PREFIX + "*" + SUFFIX)) {
+            for(Path leftover : leftovers){
+                if(Files.isRegularFile(leftover)){
+                    Files.deleteIfExists(leftover);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the cached copy of the file, null when it isn't cached
+     */
+    public synchronized CachedFile get(String fileName){
+        return files.get(fileName);
+    }
+
+    /**
+     * Returns a stream of the content that copies it to the disk as it is read, once all of its length has been read
+     * the copy is cached as the file. A stream closed before the end leaves nothing cached, and the content is handed
+     * back as it is when another reader is already copying the file or the copy can't be written.
+     */
+    public InputStream fillWhileReading(String fileName, InputStream content, long length, String contentType, String eTag){
+        if(filling.containsKey(fileName)){
+            return content;
+        }
+        FillingInputStream fillingStream;
+        try {
+            fillingStream = new FillingInputStream(fileName, content, length, contentType, eTag);
+        } catch (IOException e) {
+            LOGGER.error("Error creating the disk copy of file = " + fileName + ", " + e.getMessage());
+            return content;
+        }
+        if(filling.putIfAbsent(fileName, fillingStream) != null){
+            fillingStream.abandon();
+            return content;
+        }
+        return fillingStream;
+    }
+
+    // makes room for the file by dropping the least recently read ones
+    private void add(String fileName, CachedFile cachedFile){
+        synchronized (this){
+            CachedFile replaced = files.put(fileName, cachedFile);
+            sizeBytes += cachedFile.length;
+            if(replaced != null){
+                sizeBytes -= replaced.length;
+                delete(replaced.path);
+            }
+            Iterator<CachedFile> leastRecentlyRead = files.values().iterator();
+            while (sizeBytes > maxBytes && leastRecentlyRead.hasNext()){
+                CachedFile evicted = leastRecentlyRead.next();
+                if(evicted == cachedFile){
+                    continue;
+                }
+                leastRecentlyRead.remove();
+                sizeBytes -= evicted.length;
+                delete(evicted.path);
+            }
+        }
+    }
+
+    /**
+     * Stops handing out the cached copy of the file straight away, the copy is deleted in the background.
+     * A copy still being made as the file is read is not cached when it is done.
+     */
+    public synchronized void invalidate(String fileName){
+        filling.remove(fileName);
+        CachedFile removed = files.remove(fileName);
+        if(removed != null){
+            sizeBytes -= removed.length;
+            delete(removed.path);
+        }
+    }
+
+    /**
+     * Stops handing out the given copy of the file, leaving a newer copy cached since it was handed out alone
+     */
+    public synchronized void invalidate(String fileName, CachedFile cachedFile){
+        if(files.remove(fileName, cachedFile)){
+            sizeBytes -= cachedFile.length;
+            delete(cachedFile.path);
+        }
+    }
+
+    public synchronized int size(){
+        return files.size();
+    }
+
+    public synchronized long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public void close(){
+        deleter.shutdown();
+    }
+
+    private void delete(Path path){
+        deleter.execute(() -> {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                LOGGER.error("Error deleting cached file = " + path + ", " + e.getMessage());
+            }
+        });
+    }
+
+    private class FillingInputStream extends FilterInputStream {
+
+        private final String fileName;
+
+        private final long length;
+
+        private final String contentType;
+
+        private final String eTag;
+
+        private final Path path;
+
+        // null once the copy is finished or abandoned
+        private OutputStream copy;
+
+        private long copied;
+
+        private FillingInputStream(String fileName, InputStream content, long length, String contentType, String eTag) throws IOException {
+            super(content);
+            this.fileName = fileName;
+            this.length = length;
+            this.contentType = contentType;
+            this.eTag = eTag;
+            this.path = Files.createTempFile(directory, PREFIX, SUFFIX);
+            this.copy = Files.newOutputStream(path);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            if(read == -1){
+                finish();
+            }else{
+                write(new byte[]{(byte) read}, 0, 1);
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if(read == -1){
+                finish();
+            }else{
+                write(buffer, offset, read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+            // skipped bytes would be missing from the copy
+            abandon();
+            return super.skip(count);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                abandon();
+            }
+        }
+
+        // a failing disk only stops the copy, the reader still gets the content
+        private void write(byte[] buffer, int offset, int count){
+            if(copy == null){
+                return;
+            }
+            try {
+                copy.write(buffer, offset, count);
+                copied += count;
+            } catch (IOException e) {
+                LOGGER.error("Error writing the disk copy of file = " + fileName + ", " + e.getMessage());
+                abandon();
+            }
+        }
+
+        private void finish(){
+            if(copy == null){
+                return;
+            }
+            try {
+                copy.close();
+                copy = null;
+            } catch (IOException e) {
+                LOGGER.error("Error writing the disk copy of file = " + fileName + ", " + e.getMessage());
+                abandon();
+                return;
+            }
+            // invalidating the file while it was copied takes it out of the files being filled, under the same lock
+            synchronized (DiskImageCache.this){
+                if(filling.remove(fileName, this) && copied == length){
+                    add(fileName, new CachedFile(path, length, contentType, eTag));
+                    return;
+                }
+            }
+            delete(path);
+        }
+
+        private void abandon(){
+            if(copy == null){
+                return;
+            }
+            try {
+                copy.close();
+            } catch (IOException e) {
+                LOGGER.error("Error closing the disk copy of file = " + fileName + ", " + e.getMessage());
+            }
+            copy = null;
+            filling.remove(fileName, this);
+            delete(path);
+        }
+    }
+
+    public static class CachedFile {
+
+        private final Path path;
+
+        private final long length;
+
+        private final String contentType;
+
+        private final String eTag;
+
+        private CachedFile(Path path, long length, String contentType, String eTag) {
+            this.path = path;
+            this.length = length;
+            this.contentType = contentType;
+            this.eTag = eTag;
+        }
+
+        /**
+         * Opens the copy for reading, fails when it was dropped and deleted since it was handed out
+         */
+        public FileChannel open() throws IOException {
+            return FileChannel.open(path, StandardOpenOption.READ);
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getETag() {
+            return eTag;
+        }
+    }
+}
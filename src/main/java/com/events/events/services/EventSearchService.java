@@ -0,0 +1,44 @@
+package com.events.events.services;
+
+import com.events.events.models.Event;
+import com.events.events.models.EventSearchPage;
+import com.events.events.models.EventStatus;
+import com.events.events.models.SearchCursor;
+
+import java.time.LocalDateTime;
+
+public interface EventSearchService {
+
+    /**
+     * This method returns a page of the events with words of the query in their title, description or location
+     * The best matches come first, the date range filter is left out when null and cancelled events are only
+     * returned when they are the status asked for
+     * The pages following a cursor are cut from the ranking the first page was taken from, for as long as that
+     * ranking is kept, so events saved or rescored in between do not move results between the pages
+     * @param query
+     * @param dateFrom
+     * @param dateTo
+     * @param status
+     * @param cursor
+     * @param size
+     * @return
+     */
+    EventSearchPage searchEvents(String query, LocalDateTime dateFrom, LocalDateTime dateTo, EventStatus status, SearchCursor cursor, int size);
+
+    /**
+     * This method adds the event to the search index or updates it
+     * @param event
+     */
+    void indexEvent(Event event);
+
+    /**
+     * This method removes the event from the search index
+     * @param eventId
+     */
+    void removeEvent(int eventId);
+
+    /**
+     * This method reloads the search index from the events table
+     */
+    void rebuildIndex();
+}
@@ -0,0 +1,209 @@
+package com.events.events.services;
+
+import com.events.events.models.*;
+import com.events.events.repository.EventRepository;
+import com.events.events.search.InvertedIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+
+@Service
+public class EventSearchServiceImpl extends InMemoryIndex<EventSearchServiceImpl.Index> implements EventSearchService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventSearchServiceImpl.class);
+
+    // a word in the title says more about the event than one in the location, and that more than one in the description
+    private static final double TITLE_WEIGHT = 3;
+
+    private static final double LOCATION_WEIGHT = 2;
+
+    private static final double DESCRIPTION_WEIGHT = 1;
+
+    private static final Comparator<Map.Entry<Integer, Double>> BEST_MATCH_FIRST =
+            Map.Entry.<Integer, Double>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey());
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Value("${events.search.max-snapshots:1000}")
+    private int maxSnapshots;
+
+    @Value("${events.search.max-snapshot-results:1000}")
+    private int maxSnapshotResults;
+
+    @Value("${events.search.snapshot-expire-after-minutes:10}")
+    private long snapshotExpireAfterMinutes;
+
+    // the rankings recent searches were paged from, kept in the order they were taken
+    private final LinkedHashMap<Long, Snapshot> snapshots = new LinkedHashMap<>();
+
+    @Override
+    public EventSearchPage searchEvents(String query, LocalDateTime dateFrom, LocalDateTime dateTo, EventStatus status, SearchCursor cursor, int size) {
+        String key = query + "|" + dateFrom + "|" + dateTo + "|" + status;
+        Snapshot snapshot = cursor == null ? null : findSnapshot(cursor.getSnapshotId(), key);
+        int from = cursor == null ? 0 : cursor.getRank();
+        if(snapshot == null || (from >= snapshot.eventIds.length && !snapshot.complete)){
+            // a first page, or a cursor whose snapshot is gone or ran out, carries on after its score with the scores
+            // as they are now, so results can move between the pages from there on
+            snapshot = takeSnapshot(key, query, dateFrom, dateTo, status, cursor);
+            from = 0;
+        }
+        int to = Math.min(from + size, snapshot.eventIds.length);
+        if(from >= to){
+            return EventSearchPage.empty();
+        }
+        SearchCursor next = null;
+        if(to < snapshot.eventIds.length || !snapshot.complete){
+            next = new SearchCursor(snapshot.id, to, snapshot.scores[to - 1], snapshot.eventIds[to - 1]);
+        }
+        List<Integer> eventIds = new ArrayList<>(to - from);
+        for(int i = from; i < to; i++){
+            eventIds.add(snapshot.eventIds[i]);
+        }
+        // events deleted since the snapshot was taken are left out of their page
+        Map<Integer, Event> events = eventRepository.findAllById(eventIds).stream()
+                .collect(Collectors.toMap(Event::getEventId, Function.identity()));
+        return new EventSearchPage(eventIds.stream().map(events::get).filter(Objects::nonNull).collect(Collectors.toList()), next);
+    }
+
+    @Override
+    public void indexEvent(Event event) {
+        EventSearchDocument document = EventSearchDocument.of(event);
+        update(index -> put(index, document));
+    }
+
+    @Override
+    public void removeEvent(int eventId) {
+        update(index -> {
+            index.words.remove(eventId);
+            index.documents.remove(eventId);
+        });
+    }
+
+    @Override
+    protected Index load() {
+        List<EventSearchDocument> documents = eventRepository.findSearchDocuments();
+        Index loaded = new Index();
+        for(EventSearchDocument document : documents){
+            put(loaded, document);
+        }
+        LOGGER.info("Loaded " + documents.size() + " events into the search index");
+        return loaded;
+    }
+
+    // ranks the matches after the cursor, keeping the best of them so the following pages are cut from the same ranking
+    private Snapshot takeSnapshot(String key, String query, LocalDateTime dateFrom, LocalDateTime dateTo, EventStatus status, SearchCursor after){
+        List<Map.Entry<Integer, Double>> ranked = read(index -> {
+            IntPredicate filter = eventId -> {
+                EventSearchDocument document = index.documents.get(eventId);
+                // cancelled events are only found when they are asked for
+                return (status == null ? document.getEventStatus() != EventStatus.CANCELLED : document.getEventStatus() == status)
+                        && (dateFrom == null || !document.getStartTime().isBefore(dateFrom))
+                        && (dateTo == null || !document.getStartTime().isAfter(dateTo));
+            };
+            // only the kept results are sorted out of the scores, with a heap holding the best of them seen so far
+            PriorityQueue<Map.Entry<Integer, Double>> best = new PriorityQueue<>(BEST_MATCH_FIRST.reversed());
+            for(Map.Entry<Integer, Double> match : index.words.search(query, filter).entrySet()){
+                if(after != null && !after.isBefore(match.getValue(), match.getKey())){
+                    continue;
+                }
+                best.add(match);
+                if(best.size() > maxSnapshotResults + 1){
+                    best.poll();
+                }
+            }
+            return new ArrayList<>(best);
+        });
+        ranked.sort(BEST_MATCH_FIRST);
+        // the extra result only tells whether there are more results than the snapshot keeps
+        boolean complete = ranked.size() <= maxSnapshotResults;
+        Snapshot snapshot = new Snapshot(ThreadLocalRandom.current().nextLong(), key, ranked.subList(0, Math.min(ranked.size(), maxSnapshotResults)), complete, System.nanoTime());
+        synchronized (snapshots){
+            dropExpiredSnapshots(snapshot.takenAt);
+            snapshots.put(snapshot.id, snapshot);
+            Iterator<Snapshot> takenFirst = snapshots.values().iterator();
+            while(snapshots.size() > maxSnapshots){
+                takenFirst.next();
+                takenFirst.remove();
+            }
+        }
+        return snapshot;
+    }
+
+    // a snapshot is only used for the search it was taken for
+    private Snapshot findSnapshot(long snapshotId, String key){
+        synchronized (snapshots){
+            dropExpiredSnapshots(System.nanoTime());
+            Snapshot snapshot = snapshots.get(snapshotId);
+            return snapshot != null && snapshot.key.equals(key) ? snapshot : null;
+        }
+    }
+
+    // callers hold the lock on the snapshots, which are kept in the order they were taken and so expire in
+    private void dropExpiredSnapshots(long now){
+        long expireAfterNanos = TimeUnit.MINUTES.toNanos(snapshotExpireAfterMinutes);
+        Iterator<Snapshot> takenFirst = snapshots.values().iterator();
+        while(takenFirst.hasNext() && now - takenFirst.next().takenAt > expireAfterNanos){
+            takenFirst.remove();
+        }
+    }
+
+    private void put(Index index, EventSearchDocument document){
+        index.words.put(document.getEventId(), document.getTitle(), document.getLocation(), document.getDescription());
+        index.documents.put(document.getEventId(), document);
+    }
+
+    private static InvertedIndex newIndex(){
+        return new InvertedIndex(TITLE_WEIGHT, LOCATION_WEIGHT, DESCRIPTION_WEIGHT);
+    }
+
+    /**
+     * The ranked results of a search when its first page was served, the ids and scores of the best of them in order
+     */
+    private static class Snapshot {
+
+        private final long id;
+
+        private final String key;
+
+        private final int[] eventIds;
+
+        private final double[] scores;
+
+        // false when there were more results than the snapshot keeps
+        private final boolean complete;
+
+        private final long takenAt;
+
+        private Snapshot(long id, String key, List<Map.Entry<Integer, Double>> ranked, boolean complete, long takenAt) {
+            this.id = id;
+            this.key = key;
+            this.eventIds = new int[ranked.size()];
+            this.scores = new double[ranked.size()];
+            for(int i = 0; i < ranked.size(); i++){
+                eventIds[i] = ranked.get(i).getKey();
+                scores[i] = ranked.get(i).getValue();
+            }
+            this.complete = complete;
+            this.takenAt = takenAt;
+        }
+    }
+
+    static class Index {
+
+        private final InvertedIndex words = newIndex();
+
+        // the fields results are filtered on, kept next to the index so filtering doesn't need the events loaded
+        private final Map<Integer, EventSearchDocument> documents = new HashMap<>();
+    }
+}
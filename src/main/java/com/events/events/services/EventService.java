@@ -1,13 +1,23 @@
 package com.events.events.services;
 
+import com.events.events.models.AuthenticatedUser;
 import com.events.events.models.Event;
-import org.springframework.core.io.ByteArrayResource;
+import com.events.events.models.EventCursor;
+import com.events.events.models.EventPage;
+import com.events.events.models.EventSearchPage;
+import com.events.events.models.EventStatus;
+import com.events.events.models.FileDownload;
+import com.events.events.models.ParticipationResult;
+import com.events.events.models.SearchCursor;
+import org.springframework.http.HttpRange;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public interface EventService {
     /**
@@ -42,12 +52,13 @@ public interface EventService {
     Event uploadEventImage(int eventId, int userId, MultipartFile multipartFile);
 
     /**
-     * This method should return the image associated with an event
+     * This method should return the image associated with an event, only the requested range of it when one is given
      * @param eventId
      * @param userId
+     * @param ranges
      * @return
      */
-    ByteArrayResource downloadEventImage(int eventId, int userId);
+    FileDownload downloadEventImage(int eventId, int userId, List<HttpRange> ranges);
 
     /**
      * This is a method that deletes and event based on the id
@@ -64,18 +75,29 @@ public interface EventService {
     Event getEventById(int eventId, int userId);
 
     /**
-     * This is a method to return all the events
-     * @return List of Events
+     * This is a method to return a page of all the events ordered by start time
+     * @param cursor position of the last event of the previous page, null for the first page
+     * @param size
+     * @return EventPage
      */
-    List<Event> getAllEvents();
+    EventPage getAllEvents(EventCursor cursor, int size);
 
     /**
-     * This method returns all events that the user should be able to see
+     * This method passes every event ordered by start time to the consumer one at a time
+     * The events are detached once consumed so memory use does not grow with the number of events
+     * @param consumer
+     */
+    void streamAllEvents(Consumer<Event> consumer);
+
+    /**
+     * This method returns a page of the events that the user should be able to see
      * From friends and their own events
      * @param username
+     * @param cursor position of the last event of the previous page, null for the first page
+     * @param size
      * @return
      */
-    List<Event> getAllEventsForUser(String username);
+    EventPage getAllEventsForUser(String username, EventCursor cursor, int size);
 
     /**
      * This method returns all events that are created by the user
@@ -89,24 +111,25 @@ public interface EventService {
      * @param userId
      * @return
      */
-    @PreAuthorize("#username == authentication.principal.username")
-    List<Event> getAllEventsUserIsAttending(int userId, String username);
+    @PreAuthorize("#currentUser.username == authentication.principal.username")
+    List<Event> getAllEventsUserIsAttending(int userId, AuthenticatedUser currentUser);
 
     /**
      * This method returns all the events that a user has been invited to
      * @param userId
      * @return
      */
-    @PreAuthorize("#username == authentication.principal.username")
-    List<Event> getAllEventsUserIsInvitedTo(int userId, String username);
+    @PreAuthorize("#currentUser.username == authentication.principal.username")
+    List<Event> getAllEventsUserIsInvitedTo(int userId, AuthenticatedUser currentUser);
 
     /**
      * This is a method that adds a number of users to an event
+     * Users that do not exist, already attend or have another event at the same time are skipped
      * @param eventId
      * @param participants
-     * @return Event
+     * @return the result for each of the user ids supplied
      */
-    Event addMultipleParticipantsToEvent(int eventId, int[] participants);
+    Map<Integer, ParticipationResult> addMultipleParticipantsToEvent(int eventId, int[] participants);
 
     /**
      * This is a method that adds a single user to the event
@@ -132,18 +155,35 @@ public interface EventService {
      * @param inviteeId
      * @return
      */
-    @PreAuthorize("#username == authentication.principal.username")
-    Event deleteInviteeFromEvent(int userId, int eventId, int inviteeId, String username);
+    @PreAuthorize("#currentUser.username == authentication.principal.username")
+    Event deleteInviteeFromEvent(int userId, int eventId, int inviteeId, AuthenticatedUser currentUser);
 
     /**
-     * This is a method that returns all events happening on a given date
+     * This is a method that returns a page of the events happening on a given date
+     * The date filter methods page through the events ordered by start time starting after the cursor
      * @param date
-     * @return List
-     */
-    List<Event> getEventsByDate(LocalDateTime date);
-    List<Event> getEventsBetweenDates(LocalDateTime dateFrom, LocalDateTime dateTo);
-    List<Event> getEventsAfterDate(LocalDateTime date);
-    List<Event> getEventsBeforeDate(LocalDateTime date);
+     * @param cursor position of the last event of the previous page, null for the first page
+     * @param size
+     * @return EventPage
+     */
+    EventPage getEventsByDate(LocalDateTime date, EventCursor cursor, int size);
+    EventPage getEventsBetweenDates(LocalDateTime dateFrom, LocalDateTime dateTo, EventCursor cursor, int size);
+    EventPage getEventsAfterDate(LocalDateTime date, EventCursor cursor, int size);
+    EventPage getEventsBeforeDate(LocalDateTime date, EventCursor cursor, int size);
+
+    /**
+     * This method returns a page of the events with the words of the query in their title, description or location
+     * The best matches come first, the date filters are left out when they are null and cancelled events are left
+     * out unless the status asked for is cancelled
+     * @param query
+     * @param dateFrom
+     * @param dateTo
+     * @param status
+     * @param cursor position of the last event of the previous page, null for the first page
+     * @param size
+     * @return EventSearchPage
+     */
+    EventSearchPage searchEvents(String query, LocalDateTime dateFrom, LocalDateTime dateTo, EventStatus status, SearchCursor cursor, int size);
 
     /**
      * This is a method to cancel an event by the user
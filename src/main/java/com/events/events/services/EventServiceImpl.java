@@ -8,7 +8,9 @@ import com.events.events.repository.UserRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpRange;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -16,16 +18,23 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 import sun.rmi.runtime.Log;
 
+import javax.persistence.EntityManager;
 import javax.transaction.Transactional;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class EventServiceImpl implements EventService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(EventServiceImpl.class);
 
+    private static final int MAX_PAGE_SIZE = 200;
+
+    private static final int STREAM_CLEAR_INTERVAL = Integer.parseInt(EventRepository.STREAM_FETCH_SIZE);
+
     @Autowired
     private EventRepository eventRepository;
 
@@ -38,6 +47,21 @@ public class EventServiceImpl implements EventService {
     @Autowired
     private AWSS3Service awss3Service;
 
+    @Autowired
+    private FeedService feedService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private CalendarService calendarService;
+
+    @Autowired
+    private EventSearchService eventSearchService;
+
+    @Autowired
+    private EventTimeIndexService eventTimeIndexService;
+
     @Override
     @Transactional
     public Event saveEvent(Event event) {
@@ -47,7 +71,17 @@ public class EventServiceImpl implements EventService {
             LOGGER.error("Event was not in the acceptable range ");
             throw new InvalidDateException("Event date must be at least a day from now");
         }
-        return eventRepository.save(event);
+        if(event.getCreator() != null){
+            event.setFannedOut(feedService.shouldFanOut(event.getCreator().getUserId()));
+        }
+        Event savedEvent = eventRepository.save(event);
+        feedService.addEvent(savedEvent);
+        eventSearchService.indexEvent(savedEvent);
+        eventTimeIndexService.putEvent(savedEvent);
+        if(savedEvent.getCreator() != null){
+            calendarService.addEvent(savedEvent.getCreator().getUserId(), savedEvent, true);
+        }
+        return savedEvent;
     }
 
     @Override
@@ -55,7 +89,7 @@ public class EventServiceImpl implements EventService {
     public Event saveEvent(Event event, int userId) {
         User user = verifyAndReturnUser(userId);
         event.setCreator(user);
-        checkUserDoesNotHaveEventAtTheSameTime(user, event.getStartTime());
+        checkUserDoesNotHaveEventAtTheSameTime(user, event);
         return saveEvent(event);
     }
 
@@ -70,13 +104,25 @@ public class EventServiceImpl implements EventService {
             throw new NotFoundException("Event with id: "+eventId+" not found");
         }
         // check if the event was created by the person trying to update it
-        if(!eventRepository.findById(eventId).get().getCreator().equals(user)){
+        Event existingEvent = eventRepository.findById(eventId).get();
+        if(!existingEvent.getCreator().equals(user)){
             LOGGER.info("Updating event failed");
             LOGGER.error("User does not have permission to update the event");
             throw new AuthorisationException("You do not have the required permission to complete this operation");
         }
         event.setEventId(eventId);
-        return eventRepository.save(event);
+        // keep how the event is delivered to feeds, it is decided when the event is created
+        event.setFannedOut(existingEvent.isFannedOut());
+        Event savedEvent = eventRepository.save(event);
+        // the merged event holds the participants, invitees and creation date sent with the update,
+        // they are read back as they are stored so the event is indexed as the other endpoints return it
+        entityManager.flush();
+        entityManager.refresh(savedEvent);
+        feedService.updateEvent(savedEvent);
+        eventSearchService.indexEvent(savedEvent);
+        eventTimeIndexService.putEvent(savedEvent);
+        calendarService.updateEvent(savedEvent);
+        return savedEvent;
     }
 
     @Override
@@ -93,14 +139,18 @@ public class EventServiceImpl implements EventService {
         }
         String fileName = awss3Service.uploadFile(multipartFile, "eventImages");
         event.setImageKey(fileName);
-        return eventRepository.save(event);
+        Event savedEvent = eventRepository.save(event);
+        eventTimeIndexService.putEvent(savedEvent);
+        return savedEvent;
     }
 
     @Override
-    public ByteArrayResource downloadEventImage(int eventId, int userId){
+    public FileDownload downloadEventImage(int eventId, int userId, List<HttpRange> ranges){
         Event event = verifyAndReturnEvent(eventId);
-        byte[] imageFile = awss3Service.downloadFile(event.getImageKey());
-        return new ByteArrayResource(imageFile);
+        if(event.getImageKey() == null || event.getImageKey().isEmpty()){
+            throw new NotFoundException("Event does not have an image for this id");
+        }
+        return awss3Service.openFile(event.getImageKey(), ranges);
     }
 
     @Override
@@ -114,6 +164,10 @@ public class EventServiceImpl implements EventService {
             LOGGER.error("User does not have permission to delete the event");
             throw new AuthorisationException("You do not have the required permission to complete this operation");
         }
+        feedService.removeEvent(eventId);
+        eventSearchService.removeEvent(eventId);
+        eventTimeIndexService.removeEvent(eventId);
+        calendarService.removeEvent(eventId);
         eventRepository.delete(event);
     }
 
@@ -134,18 +188,39 @@ public class EventServiceImpl implements EventService {
 
     @Override
     @Transactional
-    public List<Event> getAllEvents() {
+    public EventPage getAllEvents(EventCursor cursor, int size) {
         LOGGER.info("Get All events started");
-        List<Event> events = eventRepository.findAll();
-        if(events.isEmpty()){
+        EventCursor after = cursor != null ? cursor : EventCursor.first();
+        List<Event> events = eventRepository.findPageAfter(after.getStartTime(), after.getEventId(), pageOf(size));
+        if(events.isEmpty() && cursor == null){
             throw new EmptyListException("There are no available events");
         }
-        return events;
+        return EventPage.of(events, pageSize(size));
+    }
+
+    @Override
+    @Transactional
+    public void streamAllEvents(Consumer<Event> consumer) {
+        LOGGER.info("Stream All events started");
+        int streamed = 0;
+        try(Stream<Event> events = eventRepository.streamAll()){
+            Iterator<Event> iterator = events.iterator();
+            while(iterator.hasNext()){
+                Event event = iterator.next();
+                consumer.accept(event);
+                entityManager.detach(event);
+                // creators and participants loaded while writing the events stay managed, let them go with every fetch
+                if(++streamed % STREAM_CLEAR_INTERVAL == 0){
+                    entityManager.clear();
+                }
+            }
+        }
+        LOGGER.info(String.format("Streamed %d events", streamed));
     }
 
     @Override
     @Transactional
-    public List<Event> getAllEventsForUser(String username){
+    public EventPage getAllEventsForUser(String username, EventCursor cursor, int size){
         LOGGER.info(String.format("Getting all events for user: %s started", username));
         Optional<User> user = userRepository.findByUsername(username);
         if(!user.isPresent()){
@@ -153,20 +228,14 @@ public class EventServiceImpl implements EventService {
             LOGGER.error("User with username: "+username+ " does not exist" );
             throw new UsernameNotFoundException("User with username: "+username+" does not exist");
         }
-        //set a check to make sure that the friend is active
-        Set<Friend> friends = user.get().getFriends();
-        //get the user ids for all the friends
-        List<Integer> friendsUserIds = friends.stream().filter(friend -> friend.isActive()).map(friend -> friend.getFriend().getUserId()).collect(Collectors.toList());
-        // user should also get the events that they have created
-        friendsUserIds.add(user.get().getUserId());
-        List<Event> events = eventRepository.findAllEventsByFriends(friendsUserIds);
-        //return events that are public or private ones where they have been invited
-        events = events.stream().filter(event -> event.getEventPermission().equals(EventPermission.PUBLIC) || event.getInvitees().contains(user)).collect(Collectors.toList());
-        if(events.isEmpty()){
+        // the feed holds the user's own events and those of the users they actively follow
+        // that are public or private ones where they have been invited
+        List<Event> events = feedService.getFeedForUser(user.get().getUserId(), cursor != null ? cursor : EventCursor.first(), pageSize(size));
+        if(events.isEmpty() && cursor == null){
             throw new EmptyListException("There are no available events");
         }
         LOGGER.info("Get All Events for user completed");
-        return events;
+        return EventPage.of(events, pageSize(size));
     }
 
     @Override
@@ -183,9 +252,10 @@ public class EventServiceImpl implements EventService {
 
     @Override
     @Transactional
-    public List<Event> getAllEventsUserIsAttending(int userId, String username) {
+    public List<Event> getAllEventsUserIsAttending(int userId, AuthenticatedUser currentUser) {
         LOGGER.info("Get All Events User id: "+userId+" is attending started");
-        User user = checkUserIdBelongsToCurrentUser(userId, username);
+        checkUserIdBelongsToCurrentUser(userId, currentUser);
+        User user = verifyAndReturnUser(userId);
         if(user.getAttending().isEmpty()){
             throw new EmptyListException("The user: "+userId+" is not attending any events");
         }
@@ -194,9 +264,10 @@ public class EventServiceImpl implements EventService {
     }
 
     @Override
-    public List<Event> getAllEventsUserIsInvitedTo(int userId, String username) {
+    public List<Event> getAllEventsUserIsInvitedTo(int userId, AuthenticatedUser currentUser) {
         LOGGER.info("Get All Events User id: "+userId+" is invited to started");
-        User user = checkUserIdBelongsToCurrentUser(userId, username);
+        checkUserIdBelongsToCurrentUser(userId, currentUser);
+        User user = verifyAndReturnUser(userId);
         if(user.getInvites().isEmpty()){
             throw new EmptyListException("The user: "+userId+" has no invites");
         }
@@ -206,39 +277,52 @@ public class EventServiceImpl implements EventService {
 
     @Override
     @Transactional
-    public Event addMultipleParticipantsToEvent(int eventId, int[] participants) {
-        LOGGER.info(String.format("Add participants: %s to event, event id: %d started", participants.toString(), eventId));
-        // retrieve the users and event
-        Integer[] userIds = Arrays.stream(participants).boxed().toArray(Integer[]::new);
-        List<User> users = userRepository.findAllById(new ArrayList<>(Arrays.asList(userIds)));
-
-        //check the returned objects are not empty
-        if(users.isEmpty()){
+    public Map<Integer, ParticipationResult> addMultipleParticipantsToEvent(int eventId, int[] participants) {
+        LOGGER.info(String.format("Add participants: %s to event, event id: %d started", Arrays.toString(participants), eventId));
+        Event event = verifyAndReturnEvent(eventId);
+        // check that the event date has not passed
+        checkEventDateHasNotPassedAndEventIsOpen(event);
+
+        Set<Integer> userIds = Arrays.stream(participants).boxed().collect(Collectors.toCollection(LinkedHashSet::new));
+        Set<Integer> existingUserIds = userIds.isEmpty() ? Collections.emptySet() : new HashSet<>(userRepository.findExistingIds(userIds));
+        if(existingUserIds.isEmpty()){
             LOGGER.info("Add participants to event failed");
             LOGGER.error("Users with the supplied ids do not exist" );
 
             throw new NotFoundException("No users with the provided ids");
-        }else if(!eventRepository.findById(eventId).isPresent()){
-            LOGGER.info("Add participants to event failed");
-            LOGGER.error("Event with the id: "+eventId+"not found" );
-
-            throw new NotFoundException("Event with id: "+eventId+" not found");
         }
 
-        Event event = eventRepository.findById(eventId).get();
-
-        // check that the event date has not passed
-        checkEventDateHasNotPassedAndEventIsOpen(event);
-        for(User user : users){
-            checkUserDoesNotHaveEventAtTheSameTime(user, event.getStartTime());
+        // one query each for the users already attending and the users with an overlapping event
+        Set<Integer> participantIds = new HashSet<>(eventRepository.findParticipantIds(eventId, existingUserIds));
+        CalendarEntry window = CalendarEntry.attending(event);
+        Set<Integer> conflictingUserIds = new HashSet<>(eventRepository.findUsersWithEventsOverlapping(
+                existingUserIds, eventId, EventStatus.CANCELLED.ordinal(), window.getStartTime(), window.getEndTime()));
+
+        Map<Integer, ParticipationResult> results = new LinkedHashMap<>();
+        List<Integer> addedUserIds = new ArrayList<>();
+        for(Integer userId : userIds){
+            if(!existingUserIds.contains(userId)){
+                results.put(userId, ParticipationResult.USER_NOT_FOUND);
+            }else if(participantIds.contains(userId)){
+                results.put(userId, ParticipationResult.ALREADY_PARTICIPANT);
+            }else if(conflictingUserIds.contains(userId)){
+                results.put(userId, ParticipationResult.SCHEDULE_CONFLICT);
+            }else{
+                results.put(userId, ParticipationResult.ADDED);
+                addedUserIds.add(userId);
+            }
         }
 
-        Set<User> newParticipantsList = event.getParticipants();
-        newParticipantsList.addAll(users);
-        event.setParticipants(newParticipantsList);
-
-        LOGGER.info(String.format("Add participants: %s to event, event id: %d completed", participants.toString(), eventId));
-        return eventRepository.save(event);
+        if(!addedUserIds.isEmpty()){
+            eventRepository.addParticipants(eventId, addedUserIds);
+            for(Integer userId : addedUserIds){
+                calendarService.addEvent(userId, event, false);
+            }
+            // the participants were only added in the database, the event is read again to index them
+            eventTimeIndexService.putEvent(verifyAndReturnEvent(eventId));
+        }
+        LOGGER.info(String.format("Add participants: %s to event, event id: %d completed, %d added", Arrays.toString(participants), eventId, addedUserIds.size()));
+        return results;
     }
 
     @Override
@@ -249,7 +333,7 @@ public class EventServiceImpl implements EventService {
         Event event = verifyAndReturnEvent(eventId);
         // check that the event date has not passed
         checkEventDateHasNotPassedAndEventIsOpen(event);
-        checkUserDoesNotHaveEventAtTheSameTime(user, event.getStartTime());
+        checkUserDoesNotHaveEventAtTheSameTime(user, event);
         // check that the user does not exist in the set
         Set<User> participants = event.getParticipants();
         if(!participants.contains(user)){
@@ -261,7 +345,9 @@ public class EventServiceImpl implements EventService {
             throw new DuplicateCreationException("User with id: "+userId+" is already a participant");
         }
         LOGGER.info(String.format("Add participant: %d to event, event id: %d completed", userId, eventId));
-        return eventRepository.save(event);
+        Event savedEvent = eventRepository.save(event);
+        calendarService.addEvent(userId, event, false);
+        return savedEvent;
     }
 
     @Override
@@ -292,12 +378,12 @@ public class EventServiceImpl implements EventService {
 
     @Override
     @Transactional
-    public Event deleteInviteeFromEvent(int userId, int eventId, int inviteeId, String username) {
+    public Event deleteInviteeFromEvent(int userId, int eventId, int inviteeId, AuthenticatedUser currentUser) {
         LOGGER.info("Deleting user id: "+inviteeId+ " from invites for event id: "+eventId);
-        User user = checkUserIdBelongsToCurrentUser(userId, username);
+        checkUserIdBelongsToCurrentUser(userId, currentUser);
         Event event = verifyAndReturnEvent(eventId);
 
-        if(!event.getCreator().equals(user)){
+        if(event.getCreator() == null || event.getCreator().getUserId() != userId){
             LOGGER.info("Adding invitees failed");
             LOGGER.error("User does not have permission to add invitees to the event");
             throw new AuthorisationException("You do not have the required permission to complete this operation");
@@ -314,57 +400,78 @@ public class EventServiceImpl implements EventService {
         invitee.getInvites().remove(event);
         LOGGER.info("Invitee deleted successfully");
         userRepository.save(invitee);
-        return eventRepository.save(event);
+        Event savedEvent = eventRepository.save(event);
+        eventTimeIndexService.putEvent(savedEvent);
+        return savedEvent;
     }
 
     @Override
     @Transactional
-    public List<Event> getEventsByDate(LocalDateTime date) {
+    public EventPage getEventsByDate(LocalDateTime date, EventCursor cursor, int size) {
         LOGGER.info(String.format("Get events by date: %s started", date.toString()));
-
-        List<Event> events = eventRepository.findByStartTimeOrderByStartTimeAsc(date);
-        if(events.isEmpty()){
+        int eventId = cursor != null ? cursor.getEventId() : -1;
+        List<Event> events = eventTimeIndexService.findPage(new EventCursor(date, eventId), EventCursor.after(date), pageSize(size))
+                .orElseGet(() -> eventRepository.findPageByStartTime(date, eventId, pageOf(size)));
+        if(events.isEmpty() && cursor == null){
             throw new EmptyListException("There are no available events for the date: "+ date);
         }
 
         LOGGER.info(String.format("Get events by date: %s completed", date.toString()));
-        return events;
+        return EventPage.of(events, pageSize(size));
     }
 
     @Override
     @Transactional
-    public List<Event> getEventsBetweenDates(LocalDateTime dateFrom, LocalDateTime dateTo) {
+    public EventPage getEventsBetweenDates(LocalDateTime dateFrom, LocalDateTime dateTo, EventCursor cursor, int size) {
         LOGGER.info(String.format("Get events between date: %s and date: %s started", dateFrom.toString(), dateTo.toString()));
-        List<Event> events = eventRepository.findByStartTimeBetweenOrderByStartTimeAsc(dateFrom, dateTo);
-        if(events.isEmpty()){
+        EventCursor after = notBefore(cursor, EventCursor.startingAt(dateFrom));
+        List<Event> events = eventTimeIndexService.findPage(after, EventCursor.after(dateTo), pageSize(size))
+                .orElseGet(() -> eventRepository.findPageAfterAndStartTimeLessThanEqual(after.getStartTime(), after.getEventId(), dateTo, pageOf(size)));
+        if(events.isEmpty() && cursor == null){
             throw new EmptyListException("There are no available events for between the dates: "+ dateFrom + " and "+ dateTo);
         }
         LOGGER.info(String.format("Get events between date: %s and date: %s completed", dateFrom.toString(), dateTo.toString()));
-        return events;
+        return EventPage.of(events, pageSize(size));
     }
 
     @Override
     @Transactional
-    public List<Event> getEventsAfterDate(LocalDateTime date) {
+    public EventPage getEventsAfterDate(LocalDateTime date, EventCursor cursor, int size) {
         LOGGER.info(String.format("Get events after date: %s started", date.toString()));
-        List<Event> events = eventRepository.findByStartTimeGreaterThanOrderByStartTimeAsc(date);
-        if(events.isEmpty()){
+        EventCursor after = notBefore(cursor, EventCursor.after(date));
+        List<Event> events = eventTimeIndexService.findPage(after, null, pageSize(size))
+                .orElseGet(() -> eventRepository.findPageAfter(after.getStartTime(), after.getEventId(), pageOf(size)));
+        if(events.isEmpty() && cursor == null){
             throw new EmptyListException("There are no available events after the date: "+ date);
         }
         LOGGER.info(String.format("Get events after date: %s completed", date.toString()));
-        return events;
+        return EventPage.of(events, pageSize(size));
     }
 
     @Override
     @Transactional
-    public List<Event> getEventsBeforeDate(LocalDateTime date) {
+    public EventPage getEventsBeforeDate(LocalDateTime date, EventCursor cursor, int size) {
         LOGGER.info(String.format("Get events before date: %s started", date.toString()));
-        List<Event> events = eventRepository.findByStartTimeLessThanOrderByStartTimeAsc(date);
-        if(events.isEmpty()){
+        EventCursor after = cursor != null ? cursor : EventCursor.first();
+        List<Event> events = eventTimeIndexService.findPage(after, EventCursor.startingAt(date), pageSize(size))
+                .orElseGet(() -> eventRepository.findPageAfterAndStartTimeLessThan(after.getStartTime(), after.getEventId(), date, pageOf(size)));
+        if(events.isEmpty() && cursor == null){
             throw new EmptyListException("There are no available events before the date: "+ date);
         }
         LOGGER.info(String.format("Get events by date: %s completed", date.toString()));
-        return events;
+        return EventPage.of(events, pageSize(size));
+    }
+
+    @Override
+    public EventSearchPage searchEvents(String query, LocalDateTime dateFrom, LocalDateTime dateTo, EventStatus status, SearchCursor cursor, int size) {
+        LOGGER.info("Searching for events: "+ query);
+        EventSearchPage page = eventSearchService.searchEvents(query, dateFrom, dateTo, status, cursor, pageSize(size));
+        if(page.getEvents().isEmpty() && cursor == null){
+            LOGGER.info("Searching for events: "+ query + " completed");
+            throw new EmptyListException("There are no events that fit the search term: "+ query);
+        }
+        LOGGER.info("Searching for events: "+ query + " completed");
+        return page;
     }
 
     @Override
@@ -381,6 +488,10 @@ public class EventServiceImpl implements EventService {
         }
         LOGGER.info(String.format("Cancel event, eventId: %d completed", eventId));
         eventRepository.save(event);
+        feedService.removeEvent(eventId);
+        eventSearchService.indexEvent(event);
+        eventTimeIndexService.putEvent(event);
+        calendarService.removeEvent(eventId);
     }
 
     @Override
@@ -392,6 +503,19 @@ public class EventServiceImpl implements EventService {
         javaMailSender.send(message);
     }
 
+    private int pageSize(int size){
+        return Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+    }
+
+    private Pageable pageOf(int size){
+        return PageRequest.of(0, pageSize(size));
+    }
+
+    // cursors come from clients, one from before the start of the requested range must not page through events outside it
+    private EventCursor notBefore(EventCursor cursor, EventCursor start){
+        return cursor != null && cursor.compareTo(start) > 0 ? cursor : start;
+    }
+
     private Event verifyAndReturnEvent(int eventId){
         Optional<Event> event = eventRepository.findById(eventId);
         if(!event.isPresent()){
@@ -410,14 +534,15 @@ public class EventServiceImpl implements EventService {
         return user.get();
     }
 
-    private User checkUserIdBelongsToCurrentUser(int userId, String username){
-        // check that the user id and username belong to the same user
-        User user = verifyAndReturnUser(userId);
-        if(!user.getUsername().equals(username)){
+    private void checkUserIdBelongsToCurrentUser(int userId, AuthenticatedUser currentUser){
+        // the id in the token is compared directly, tokens without one are checked against the user's username
+        boolean belongs = currentUser.hasUserId()
+                ? currentUser.getUserId() == userId
+                : verifyAndReturnUser(userId).getUsername().equals(currentUser.getUsername());
+        if(!belongs){
             LOGGER.error("User Id does not belong to current user");
             throw new AuthorisationException("You do not have the required permission to complete this operation");
         }
-        return user;
     }
 
     private void checkEventDateHasNotPassedAndEventIsOpen(Event event){
@@ -431,20 +556,15 @@ public class EventServiceImpl implements EventService {
         }
     }
 
-    private void checkUserDoesNotHaveEventAtTheSameTime(User user, LocalDateTime date){
-        // check that they do not have an event created for that day
-        for(Event event : user.getCreatedEvents()){
-            if(event.getStartTime().equals(date) && event.getEventStatus() != EventStatus.CANCELLED){
-                LOGGER.error("User trying to join event on conflicting day");
+    private void checkUserDoesNotHaveEventAtTheSameTime(User user, Event event){
+        // check that none of the events they created or are attending overlap with the event
+        Optional<CalendarEntry> conflict = calendarService.findConflict(user.getUserId(), event);
+        if(conflict.isPresent()){
+            LOGGER.error("User trying to join event on conflicting day");
+            if(conflict.get().isCreated()){
                 throw new InvalidDateException("User has an event scheduled for this day");
             }
-        }
-        // check that they are not attending an event that day
-        for(Event event : user.getAttending()){
-            if(event.getStartTime().equals(date) && event.getEventStatus() != EventStatus.CANCELLED){
-                LOGGER.error("User trying to join event on conflicting day");
-                throw new InvalidDateException("User is already attending an event on this day");
-            }
+            throw new InvalidDateException("User is already attending an event on this day");
         }
     }
 }
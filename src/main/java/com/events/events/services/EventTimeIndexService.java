@@ -0,0 +1,39 @@
+package com.events.events.services;
+
+import com.events.events.models.Event;
+import com.events.events.models.EventCursor;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface EventTimeIndexService {
+
+    /**
+     * This method adds the event to the index or replaces the copy it holds, events starting outside the indexed
+     * window are left out. The event is copied straight away, its participants and invitees have to be loadable
+     * @param event
+     */
+    void putEvent(Event event);
+
+    /**
+     * This method removes the event from the index
+     * @param eventId
+     */
+    void removeEvent(int eventId);
+
+    /**
+     * This method returns at most size events ordered by start time that come strictly after the first cursor
+     * and strictly before the second one, a null upper bound means there is no upper bound
+     * Nothing is returned when the range is not covered by the indexed window and has to be read from the database
+     * @param after
+     * @param before
+     * @param size
+     * @return
+     */
+    Optional<List<Event>> findPage(EventCursor after, EventCursor before, int size);
+
+    /**
+     * This method reloads the index with the events starting from today up to the end of the window
+     */
+    void rebuildIndex();
+}
@@ -0,0 +1,128 @@
+package com.events.events.services;
+
+import com.events.events.models.Event;
+import com.events.events.models.EventCursor;
+import com.events.events.models.EventSnapshot;
+import com.events.events.models.User;
+import com.events.events.repository.EventRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps snapshots of the events starting from today up to a number of days ahead ordered by (startTime, eventId),
+ * which is where almost every date query falls. Pages inside that window are answered without the database,
+ * ranges reaching outside of it are left to the keyset queries.
+ */
+@Service
+public class EventTimeIndexServiceImpl extends InMemoryIndex<EventTimeIndexServiceImpl.Index> implements EventTimeIndexService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventTimeIndexServiceImpl.class);
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Value("${events.time-index.horizon-days:60}")
+    private int horizonDays;
+
+    @Override
+    public void putEvent(Event event) {
+        EventSnapshot snapshot = EventSnapshot.of(event);
+        update(index -> put(index, snapshot));
+    }
+
+    @Override
+    public void removeEvent(int eventId) {
+        update(index -> remove(index, eventId));
+    }
+
+    @Override
+    public Optional<List<Event>> findPage(EventCursor after, EventCursor before, int size) {
+        Optional<List<EventSnapshot>> page = read(index -> {
+            if(after.getStartTime().isBefore(index.from)){
+                return Optional.empty();
+            }
+            List<EventSnapshot> snapshots = new ArrayList<>(size);
+            for(Map.Entry<EventCursor, EventSnapshot> entry : index.events.tailMap(after, false).entrySet()){
+                if((before != null && entry.getKey().compareTo(before) >= 0) || snapshots.size() == size){
+                    return Optional.of(snapshots);
+                }
+                snapshots.add(entry.getValue());
+            }
+            // running out of indexed events only answers the query when the range ends inside the window
+            if(snapshots.size() < size && (before == null || before.compareTo(EventCursor.startingAt(index.until)) > 0)){
+                return Optional.empty();
+            }
+            return Optional.of(snapshots);
+        });
+        return page.map(snapshots -> snapshots.stream().map(EventSnapshot::toEvent).collect(Collectors.toList()));
+    }
+
+    @Override
+    protected Index load() {
+        LocalDateTime from = LocalDate.now().atStartOfDay();
+        LocalDateTime until = from.plusDays(horizonDays);
+        Map<Integer, List<User>> participants = groupByEvent(eventRepository.findParticipantsOfEventsStartingBetween(from, until));
+        Map<Integer, List<User>> invitees = groupByEvent(eventRepository.findInviteesOfEventsStartingBetween(from, until));
+        Index loaded = new Index(from, until);
+        for(Event event : eventRepository.findStartingBetween(from, until)){
+            put(loaded, EventSnapshot.of(event, participants.getOrDefault(event.getEventId(), Collections.emptyList()), invitees.getOrDefault(event.getEventId(), Collections.emptyList())));
+        }
+        LOGGER.info(String.format("Indexed %d events starting between %s and %s", loaded.events.size(), from, until));
+        return loaded;
+    }
+
+    private static Map<Integer, List<User>> groupByEvent(List<Object[]> rows){
+        Map<Integer, List<User>> users = new HashMap<>();
+        for(Object[] row : rows){
+            users.computeIfAbsent((Integer) row[0], eventId -> new ArrayList<>()).add((User) row[1]);
+        }
+        return users;
+    }
+
+    // an event moved out of the window by an update is dropped from where it was
+    private static void put(Index index, EventSnapshot snapshot){
+        remove(index, snapshot.getEventId());
+        if(!snapshot.getStartTime().isBefore(index.from) && snapshot.getStartTime().isBefore(index.until)){
+            EventCursor position = new EventCursor(snapshot.getStartTime(), snapshot.getEventId());
+            index.positions.put(snapshot.getEventId(), position);
+            index.events.put(position, snapshot);
+        }
+    }
+
+    private static void remove(Index index, int eventId){
+        EventCursor position = index.positions.remove(eventId);
+        if(position != null){
+            index.events.remove(position);
+        }
+    }
+
+    /**
+     * The snapshots of the events starting in [from, until)
+     */
+    static class Index {
+
+        private final LocalDateTime from;
+
+        private final LocalDateTime until;
+
+        private final ConcurrentNavigableMap<EventCursor, EventSnapshot> events = new ConcurrentSkipListMap<>();
+
+        // where each event is in the ordering, to find it again when it moves or goes
+        private final Map<Integer, EventCursor> positions = new HashMap<>();
+
+        private Index(LocalDateTime from, LocalDateTime until) {
+            this.from = from;
+            this.until = until;
+        }
+    }
+}
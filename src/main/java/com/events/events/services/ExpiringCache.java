@@ -0,0 +1,110 @@
+package com.events.events.services;
+
+import java.time.Clock;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A map of values that each stop being returned at their own expiry time, holding a bounded number of them.
+ * When it is full expired values are dropped first and then arbitrary ones, which suits values that are cheap to
+ * make again, the next get of a dropped value just misses. Safe to use from several threads at once.
+ */
+public class ExpiringCache<K, V> {
+
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+
+    private final int maxSize;
+
+    private final Clock clock;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param maxSize the most values kept at once
+     * @param clock tells the time expiry times are compared against
+     */
+    public ExpiringCache(int maxSize, Clock clock) {
+        this.maxSize = maxSize;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the value stored under the key if it hasn't expired, null otherwise
+     */
+    public V get(K key){
+        Entry<V> entry = entries.get(key);
+        if(entry == null){
+            misses.increment();
+            return null;
+        }
+        if(entry.expiresAt <= clock.millis()){
+            entries.remove(key, entry);
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.value;
+    }
+
+    /**
+     * Stores the value until the given time in milliseconds since the epoch, a value that has already expired isn't stored
+     */
+    public void put(K key, V value, long expiresAt){
+        long now = clock.millis();
+        if(expiresAt <= now){
+            return;
+        }
+        if(entries.size() >= maxSize){
+            evict(now);
+        }
+        entries.put(key, new Entry<>(value, expiresAt));
+    }
+
+    public void invalidate(K key){
+        entries.remove(key);
+    }
+
+    public int size(){
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public double getHitRate(){
+        long hits = getHits();
+        long total = hits + getMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    private void evict(long now){
+        entries.values().removeIf(entry -> entry.expiresAt <= now);
+        // still full of live values, make room for a tenth of them so the next puts don't have to evict again
+        Iterator<Entry<V>> iterator = entries.values().iterator();
+        for(int excess = entries.size() - maxSize + Math.max(1, maxSize / 10); excess > 0 && iterator.hasNext(); excess--){
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private static class Entry<V> {
+
+        private final V value;
+
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
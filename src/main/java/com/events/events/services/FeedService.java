@@ -0,0 +1,76 @@
+package com.events.events.services;
+
+import com.events.events.models.Event;
+import com.events.events.models.EventCursor;
+
+import java.util.List;
+
+public interface FeedService {
+
+    /**
+     * This method decides whether events by the creator are pushed into their followers' feeds on write
+     * Creators switched to having their events pulled when feeds are read get false
+     * @param creatorId
+     * @return
+     */
+    boolean shouldFanOut(int creatorId);
+
+    /**
+     * This method switches creators whose number of followers went over the configured limit to having their events
+     * pulled when feeds are read, and pushes the events of pulled creators whose followers dropped back below it
+     */
+    void updateFanOutModes();
+
+    /**
+     * This method loads the creators whose events are pulled again, picking up switches made by other instances
+     */
+    void loadPulledCreators();
+
+    /**
+     * This method pushes a newly created event into the feeds of the creator and their followers
+     * @param event
+     */
+    void addEvent(Event event);
+
+    /**
+     * This method updates the feed entries of an event after it has been changed
+     * @param event
+     */
+    void updateEvent(Event event);
+
+    /**
+     * This method removes an event from every feed it was pushed to
+     * @param eventId
+     */
+    void removeEvent(int eventId);
+
+    /**
+     * This method adds the events of the followee to the follower's feed
+     * @param followerId
+     * @param followeeId
+     */
+    void addFollowee(int followerId, int followeeId);
+
+    /**
+     * This method removes the events of the followee from the follower's feed
+     * @param followerId
+     * @param followeeId
+     */
+    void removeFollowee(int followerId, int followeeId);
+
+    /**
+     * This method returns the events in the materialized feed of the user merged with the events pulled
+     * from followed creators that are not fanned out, ordered by start time
+     * Only events the user can see are returned, at most size of them that come after the cursor
+     * @param userId
+     * @param cursor
+     * @param size
+     * @return
+     */
+    List<Event> getFeedForUser(int userId, EventCursor cursor, int size);
+
+    /**
+     * This method fills in any feed entries missing for the events and friendships already in the database
+     */
+    void rebuildFeeds();
+}
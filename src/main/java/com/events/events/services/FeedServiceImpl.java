@@ -0,0 +1,152 @@
+package com.events.events.services;
+
+import com.events.events.models.Event;
+import com.events.events.models.EventCursor;
+import com.events.events.models.EventPermission;
+import com.events.events.models.EventStatus;
+import com.events.events.repository.EventRepository;
+import com.events.events.repository.FeedEntryRepository;
+import com.events.events.repository.FriendRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.transaction.Transactional;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+@Service
+public class FeedServiceImpl implements FeedService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FeedServiceImpl.class);
+
+    @Autowired
+    private FeedEntryRepository feedEntryRepository;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private FriendRepository friendRepository;
+
+    // the feeds are backfilled once by the V2 migration, this is only for repairing them by hand
+    @Value("${events.feed.rebuild-on-startup:false}")
+    private boolean rebuildOnStartup;
+
+    @Value("${events.feed.fan-out-follower-limit:10000}")
+    private long fanOutFollowerLimit;
+
+    // the creators whose events are pulled into feeds on read, only a few so every feed read can look them all up
+    private volatile Set<Integer> pulledCreators = Collections.emptySet();
+
+    @Override
+    public boolean shouldFanOut(int creatorId) {
+        return !pulledCreators.contains(creatorId);
+    }
+
+    @Override
+    @Transactional
+    public void updateFanOutModes() {
+        loadPulledCreators();
+        Set<Integer> overLimit = new HashSet<>(friendRepository.findUserIdsWithMoreFollowersThan(fanOutFollowerLimit));
+        // creators only go back to being pushed well below the limit, so one crossing back and forth isn't pushed over and over
+        Set<Integer> stillPulled = new HashSet<>(friendRepository.findUserIdsWithMoreFollowersThan(fanOutFollowerLimit * 9 / 10));
+        for(int creatorId : overLimit){
+            if(!pulledCreators.contains(creatorId)){
+                // the entries already pushed stay in the feeds, reading the feed drops the copies pulled for them
+                int events = eventRepository.setFannedOutOfCreator(creatorId, false);
+                LOGGER.info(String.format("Creator id: %d has too many followers, %d events will be pulled into feeds", creatorId, events));
+            }
+        }
+        for(int creatorId : pulledCreators){
+            if(!stillPulled.contains(creatorId)){
+                int entries = feedEntryRepository.fanOutEventsOfCreator(creatorId, EventStatus.CANCELLED.ordinal());
+                eventRepository.setFannedOutOfCreator(creatorId, true);
+                LOGGER.info(String.format("Creator id: %d is pushed into feeds again, %d entries added", creatorId, entries));
+            }
+        }
+        loadPulledCreators();
+    }
+
+    @Override
+    public void loadPulledCreators() {
+        pulledCreators = new HashSet<>(eventRepository.findPulledCreatorIds());
+    }
+
+    @Override
+    @Transactional
+    public void addEvent(Event event) {
+        if(event.getCreator() == null){
+            return;
+        }
+        if(!event.isFannedOut()){
+            // only the creator's own feed gets the event, followers pull it when they read their feeds
+            feedEntryRepository.addEntry(event.getCreator().getUserId(), event.getEventId(), event.getStartTime());
+            LOGGER.info(String.format("Event id: %d will be pulled into follower feeds", event.getEventId()));
+            return;
+        }
+        int entries = feedEntryRepository.fanOutEvent(event.getEventId(), event.getCreator().getUserId(), event.getStartTime());
+        LOGGER.info(String.format("Event id: %d pushed to %d feeds", event.getEventId(), entries));
+    }
+
+    @Override
+    @Transactional
+    public void updateEvent(Event event) {
+        if(event.getEventStatus() == EventStatus.CANCELLED){
+            removeEvent(event.getEventId());
+            return;
+        }
+        feedEntryRepository.updateStartTime(event.getEventId(), event.getStartTime());
+    }
+
+    @Override
+    @Transactional
+    public void removeEvent(int eventId) {
+        int entries = feedEntryRepository.deleteByEventId(eventId);
+        LOGGER.info(String.format("Event id: %d removed from %d feeds", eventId, entries));
+    }
+
+    @Override
+    @Transactional
+    public void addFollowee(int followerId, int followeeId) {
+        feedEntryRepository.copyEventsOfFollowee(followerId, followeeId, EventStatus.CANCELLED.ordinal());
+    }
+
+    @Override
+    @Transactional
+    public void removeFollowee(int followerId, int followeeId) {
+        feedEntryRepository.deleteEventsOfFollowee(followerId, followeeId);
+    }
+
+    @Override
+    public List<Event> getFeedForUser(int userId, EventCursor cursor, int size) {
+        Set<Integer> pulled = pulledCreators;
+        if(pulled.isEmpty()){
+            return feedEntryRepository.findPushedFeedForUser(userId, EventPermission.PUBLIC.ordinal(), cursor.getStartTime(), cursor.getEventId(), size);
+        }
+        return feedEntryRepository.findFeedForUser(userId, pulled, EventPermission.PUBLIC.ordinal(), EventStatus.CANCELLED.ordinal(), cursor.getStartTime(), cursor.getEventId(), size);
+    }
+
+    @Override
+    @Transactional
+    public void rebuildFeeds() {
+        LOGGER.info("Rebuilding user feeds started");
+        int entries = feedEntryRepository.rebuildAllFeeds(EventStatus.CANCELLED.ordinal());
+        LOGGER.info(String.format("Rebuilding user feeds completed, %d entries added", entries));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void rebuildFeedsOnStartup() {
+        loadPulledCreators();
+        if(rebuildOnStartup){
+            rebuildFeeds();
+        }
+    }
+}
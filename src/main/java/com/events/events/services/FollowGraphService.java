@@ -0,0 +1,69 @@
+package com.events.events.services;
+
+public interface FollowGraphService {
+
+    /**
+     * This method returns the ids of the users the user actively follows in ascending order
+     * The returned array is shared and must not be modified
+     * @param userId
+     * @return
+     */
+    int[] getFollowing(int userId);
+
+    /**
+     * This method returns the ids of the users actively following the user in ascending order
+     * The returned array is shared and must not be modified
+     * @param userId
+     * @return
+     */
+    int[] getFollowers(int userId);
+
+    /**
+     * This method returns the number of users actively following the user
+     * @param userId
+     * @return
+     */
+    int countFollowers(int userId);
+
+    /**
+     * This method checks whether the owner actively follows the friend
+     * @param ownerId
+     * @param friendId
+     * @return
+     */
+    boolean isFollowing(int ownerId, int friendId);
+
+    /**
+     * This method checks whether the owner has asked to follow the friend and is waiting for them to accept
+     * @param ownerId
+     * @param friendId
+     * @return
+     */
+    boolean hasRequestedToFollow(int ownerId, int friendId);
+
+    /**
+     * This method records a follow request from the owner to the friend
+     * @param ownerId
+     * @param friendId
+     */
+    void addFollowRequest(int ownerId, int friendId);
+
+    /**
+     * This method turns the follow request from the owner to the friend into an active follow
+     * @param ownerId
+     * @param friendId
+     */
+    void acceptFollowRequest(int ownerId, int friendId);
+
+    /**
+     * This method removes the follow or follow request from the owner to the friend
+     * @param ownerId
+     * @param friendId
+     */
+    void removeFollow(int ownerId, int friendId);
+
+    /**
+     * This method loads the graph again from the friends table
+     */
+    void rebuildGraph();
+}
@@ -0,0 +1,256 @@
+package com.events.events.services;
+
+import com.events.events.repository.FriendRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+@Service
+public class FollowGraphServiceImpl extends InMemoryIndex<FollowGraphServiceImpl.Graph> implements FollowGraphService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FollowGraphServiceImpl.class);
+
+    private static final int[] NONE = new int[0];
+
+    @Autowired
+    private FriendRepository friendRepository;
+
+    @Override
+    public int[] getFollowing(int userId) {
+        return read(graph -> graph.get(graph.following, userId));
+    }
+
+    @Override
+    public int[] getFollowers(int userId) {
+        return read(graph -> graph.get(graph.followers, userId));
+    }
+
+    @Override
+    public int countFollowers(int userId) {
+        return getFollowers(userId).length;
+    }
+
+    @Override
+    public boolean isFollowing(int ownerId, int friendId) {
+        return Arrays.binarySearch(getFollowing(ownerId), friendId) >= 0;
+    }
+
+    @Override
+    public boolean hasRequestedToFollow(int ownerId, int friendId) {
+        return read(graph -> Arrays.binarySearch(graph.get(graph.requested, ownerId), friendId) >= 0);
+    }
+
+    @Override
+    public void addFollowRequest(int ownerId, int friendId) {
+        update(graph -> graph.set(graph.requested, ownerId, with(graph.get(graph.requested, ownerId), friendId)));
+    }
+
+    @Override
+    public void acceptFollowRequest(int ownerId, int friendId) {
+        update(graph -> {
+            graph.set(graph.requested, ownerId, without(graph.get(graph.requested, ownerId), friendId));
+            graph.set(graph.following, ownerId, with(graph.get(graph.following, ownerId), friendId));
+            graph.set(graph.followers, friendId, with(graph.get(graph.followers, friendId), ownerId));
+        });
+    }
+
+    @Override
+    public void removeFollow(int ownerId, int friendId) {
+        update(graph -> {
+            graph.set(graph.requested, ownerId, without(graph.get(graph.requested, ownerId), friendId));
+            graph.set(graph.following, ownerId, without(graph.get(graph.following, ownerId), friendId));
+            graph.set(graph.followers, friendId, without(graph.get(graph.followers, friendId), ownerId));
+        });
+    }
+
+    @Override
+    public void rebuildGraph() {
+        rebuildIndex();
+    }
+
+    // groups the rows of the friends table by user into sorted adjacency arrays for both directions
+    @Override
+    protected Graph load(){
+        List<Object[]> rows = friendRepository.findAllFollows();
+        int[] userIds = distinctUserIds(rows);
+        // the adjacency arrays are indexed by the position of the user in the sorted ids rather than by the user id
+        int[] owners = new int[rows.size()];
+        int[] friends = new int[rows.size()];
+        for(int i = 0; i < rows.size(); i++){
+            owners[i] = Arrays.binarySearch(userIds, ((Number) rows.get(i)[0]).intValue());
+            friends[i] = Arrays.binarySearch(userIds, ((Number) rows.get(i)[1]).intValue());
+        }
+        int[] followingCounts = new int[userIds.length];
+        int[] followerCounts = new int[userIds.length];
+        int[] requestedCounts = new int[userIds.length];
+        for(int i = 0; i < rows.size(); i++){
+            if((Boolean) rows.get(i)[2]){
+                followingCounts[owners[i]]++;
+                followerCounts[friends[i]]++;
+            }else{
+                requestedCounts[owners[i]]++;
+            }
+        }
+        int[][] following = allocate(followingCounts);
+        int[][] followers = allocate(followerCounts);
+        int[][] requested = allocate(requestedCounts);
+        int requests = 0;
+        // the counts are used again as the next free position in each array
+        for(int i = 0; i < rows.size(); i++){
+            int owner = owners[i];
+            int friend = friends[i];
+            if((Boolean) rows.get(i)[2]){
+                following[owner][--followingCounts[owner]] = userIds[friend];
+                followers[friend][--followerCounts[friend]] = userIds[owner];
+            }else{
+                requested[owner][--requestedCounts[owner]] = userIds[friend];
+                requests++;
+            }
+        }
+        for(int[][] adjacency : Arrays.asList(following, followers, requested)){
+            for(int[] ids : adjacency){
+                if(ids != null){
+                    Arrays.sort(ids);
+                }
+            }
+        }
+        LOGGER.info(String.format("Loaded follow graph with %d follows and %d pending requests", rows.size() - requests, requests));
+        return new Graph(userIds, new Adjacency(following), new Adjacency(followers), new Adjacency(requested));
+    }
+
+    private static int[] distinctUserIds(List<Object[]> rows){
+        int[] userIds = new int[rows.size() * 2];
+        for(int i = 0; i < rows.size(); i++){
+            userIds[2 * i] = ((Number) rows.get(i)[0]).intValue();
+            userIds[2 * i + 1] = ((Number) rows.get(i)[1]).intValue();
+        }
+        Arrays.sort(userIds);
+        int distinct = 0;
+        for(int i = 0; i < userIds.length; i++){
+            if(i == 0 || userIds[i] != userIds[i - 1]){
+                userIds[distinct++] = userIds[i];
+            }
+        }
+        return Arrays.copyOf(userIds, distinct);
+    }
+
+    private static int[][] allocate(int[] counts){
+        int[][] ids = new int[counts.length][];
+        for(int row = 0; row < counts.length; row++){
+            ids[row] = counts[row] == 0 ? null : new int[counts[row]];
+        }
+        return ids;
+    }
+
+    private static int[] with(int[] ids, int id){
+        int index = Arrays.binarySearch(ids, id);
+        if(index >= 0){
+            return ids;
+        }
+        int insertAt = -index - 1;
+        int[] updated = new int[ids.length + 1];
+        System.arraycopy(ids, 0, updated, 0, insertAt);
+        updated[insertAt] = id;
+        System.arraycopy(ids, insertAt, updated, insertAt + 1, ids.length - insertAt);
+        return updated;
+    }
+
+    // returning null frees the slot of the user once they have no neighbours left
+    private static int[] without(int[] ids, int id){
+        int index = Arrays.binarySearch(ids, id);
+        if(index < 0){
+            return ids.length == 0 ? null : ids;
+        }
+        if(ids.length == 1){
+            return null;
+        }
+        int[] updated = new int[ids.length - 1];
+        System.arraycopy(ids, 0, updated, 0, index);
+        System.arraycopy(ids, index + 1, updated, index, ids.length - index - 1);
+        return updated;
+    }
+
+    /**
+     * Sorted ids of the users each user follows, is followed by and has asked to follow, arrays are replaced
+     * rather than changed so they can be handed out.
+     * Every user with a follow or a request has a row in the adjacency arrays. User ids are shared with the events
+     * and tokens through one sequence, so rows are numbered densely instead of using the ids: the users loaded
+     * with the graph find their row by a binary search of their sorted ids, which keeps no boxed keys or map
+     * entries for them, the users who follow or are followed for the first time since get the next rows.
+     */
+    static class Graph {
+
+        private final int[] loadedUserIds;
+
+        private final Map<Integer, Integer> addedRows = new HashMap<>();
+
+        private final Adjacency following;
+
+        private final Adjacency followers;
+
+        private final Adjacency requested;
+
+        private Graph(int[] loadedUserIds, Adjacency following, Adjacency followers, Adjacency requested) {
+            this.loadedUserIds = loadedUserIds;
+            this.following = following;
+            this.followers = followers;
+            this.requested = requested;
+        }
+
+        private int[] get(Adjacency adjacency, int userId){
+            return adjacency.get(rowOf(userId));
+        }
+
+        private void set(Adjacency adjacency, int userId, int[] neighbours){
+            int row = rowOf(userId);
+            if(row < 0){
+                if(neighbours == null){
+                    return;
+                }
+                row = loadedUserIds.length + addedRows.size();
+                addedRows.put(userId, row);
+            }
+            adjacency.set(row, neighbours);
+        }
+
+        // -1 when the user has no row
+        private int rowOf(int userId){
+            int row = Arrays.binarySearch(loadedUserIds, userId);
+            if(row >= 0){
+                return row;
+            }
+            Integer added = addedRows.get(userId);
+            return added == null ? -1 : added;
+        }
+    }
+
+    /**
+     * The neighbours of every user in the row of the user
+     */
+    private static class Adjacency {
+
+        private int[][] ids;
+
+        private Adjacency(int[][] ids) {
+            this.ids = ids;
+        }
+
+        private int[] get(int row){
+            int[] found = row >= 0 && row < ids.length ? ids[row] : null;
+            return found == null ? NONE : found;
+        }
+
+        private void set(int row, int[] neighbours){
+            if(row >= ids.length){
+                if(neighbours == null){
+                    return;
+                }
+                ids = Arrays.copyOf(ids, Math.max(row + 1, ids.length + (ids.length >> 1)));
+            }
+            ids[row] = neighbours;
+        }
+    }
+}
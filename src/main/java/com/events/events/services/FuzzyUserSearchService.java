@@ -0,0 +1,17 @@
+package com.events.events.services;
+
+import com.events.events.models.User;
+
+import java.util.List;
+
+public interface FuzzyUserSearchService {
+
+    /**
+     * This method returns at most size users with names within a couple of typos of each word of the term
+     * The closest matches come first
+     * @param term
+     * @param size
+     * @return
+     */
+    List<User> searchUsers(String term, int size);
+}
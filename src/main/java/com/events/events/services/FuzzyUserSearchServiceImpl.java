@@ -0,0 +1,51 @@
+package com.events.events.services;
+
+import com.events.events.models.User;
+import com.events.events.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.events.events.search.TextNormalizer.normalize;
+
+@Service
+public class FuzzyUserSearchServiceImpl implements FuzzyUserSearchService {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserNameIndex userNameIndex;
+
+    @Override
+    public List<User> searchUsers(String term, int size) {
+        String[] tokens = normalize(term).split(" ");
+        if(tokens[0].isEmpty()){
+            return new ArrayList<>();
+        }
+        // with more than one word a user has to match all of them, the closest match being the smallest total
+        Map<Integer, Integer> distances = userNameIndex.findByWords(tokens, this::tolerance);
+        List<Integer> userIds = distances.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Integer>comparingByValue().thenComparing(Map.Entry.comparingByKey()))
+                .limit(size)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+        if(userIds.isEmpty()){
+            return new ArrayList<>();
+        }
+        Map<Integer, User> users = userRepository.findAllById(userIds).stream()
+                .collect(Collectors.toMap(User::getUserId, Function.identity()));
+        return userIds.stream().map(users::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    // short words allow fewer typos, otherwise almost every short name would be within two edits of the term
+    private int tolerance(String token){
+        if(token.length() <= 2){
+            return 0;
+        }
+        return token.length() <= 5 ? 1 : 2;
+    }
+}
@@ -0,0 +1,128 @@
+package com.events.events.services;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Base for the services that answer reads from an index kept in memory instead of querying the database.
+ * The index is built from the database once the application is ready, or on first use if that comes sooner,
+ * and built again whenever rebuildIndex is called. Reads share a lock, changes take it for themselves and
+ * only reach the index once the transaction that made them commits. The database is read without holding the
+ * lock, so changes committed while an index is being built are replayed onto it before it replaces the old one,
+ * changes must be safe to apply to an index that already has them.
+ */
+public abstract class InMemoryIndex<I> {
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // null until the index is first built
+    private I index;
+
+    // the changes applied while an index is being built, null when none is
+    private List<Consumer<I>> changedDuringLoad;
+
+    private volatile boolean loaded;
+
+    /**
+     * Reads everything the index holds from the database and builds a new index out of it
+     */
+    protected abstract I load();
+
+    public synchronized void rebuildIndex() {
+        lock.writeLock().lock();
+        try {
+            changedDuringLoad = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        I rebuilt = null;
+        try {
+            rebuilt = load();
+        } finally {
+            lock.writeLock().lock();
+            try {
+                if(rebuilt != null){
+                    // changes committed after the database was read are missing from what was read
+                    for(Consumer<I> change : changedDuringLoad){
+                        change.accept(rebuilt);
+                    }
+                    index = rebuilt;
+                    loaded = true;
+                }
+                changedDuringLoad = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadIndexOnStartup() {
+        ensureLoaded();
+    }
+
+    /**
+     * Runs the reader against the index, building the index first if it hasn't been yet
+     */
+    protected <R> R read(Function<I, R> reader){
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            return reader.apply(index);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Applies the change to the index once the current transaction commits, straight away outside of one
+     */
+    protected void update(Consumer<I> change){
+        afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                if(index != null){
+                    change.accept(index);
+                }
+                if(changedDuringLoad != null){
+                    changedDuringLoad.add(change);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    private void ensureLoaded(){
+        if(!loaded){
+            synchronized (this){
+                if(!loaded){
+                    rebuildIndex();
+                }
+            }
+        }
+    }
+
+    // changes only reach the index once the transaction that made them commits
+    private static void afterCommit(Runnable change){
+        if(TransactionSynchronizationManager.isSynchronizationActive()){
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    change.run();
+                }
+            });
+        }else{
+            change.run();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.events.events.services;
+
+import java.net.URL;
+import java.time.Clock;
+import java.util.Date;
+
+/**
+ * Remembers the pre-signed URLs handed out for files so a file sent in many responses is only signed once.
+ * A URL is handed out again until a margin before it expires, so clients always get a URL that stays usable for
+ * at least that long. The number of URLs is bounded, dropping a URL only costs its file a new signature.
+ */
+public class PresignedUrlCache {
+
+    private final ExpiringCache<String, URL> urls;
+
+    private final long refreshMarginMillis;
+
+    /**
+     * @param maxSize the most URLs kept at once
+     * @param refreshMarginMillis how long before it expires a URL is signed again instead of handed out
+     */
+    public PresignedUrlCache(int maxSize, long refreshMarginMillis) {
+        this(maxSize, refreshMarginMillis, Clock.systemUTC());
+    }
+
+    /**
+     * @param clock tells the time URLs are compared against
+     */
+    public PresignedUrlCache(int maxSize, long refreshMarginMillis, Clock clock) {
+        this.urls = new ExpiringCache<>(maxSize, clock);
+        this.refreshMarginMillis = refreshMarginMillis;
+    }
+
+    /**
+     * Returns the URL of the file if one was signed that stays usable for longer than the margin, null otherwise
+     */
+    public URL get(String fileName){
+        return urls.get(fileName);
+    }
+
+    public void put(String fileName, URL url, Date expiration){
+        urls.put(fileName, url, expiration.getTime() - refreshMarginMillis);
+    }
+
+    public void invalidate(String fileName){
+        urls.invalidate(fileName);
+    }
+
+    public int size(){
+        return urls.size();
+    }
+
+    public long getHits() {
+        return urls.getHits();
+    }
+
+    public long getMisses() {
+        return urls.getMisses();
+    }
+
+    public double getHitRate(){
+        return urls.getHitRate();
+    }
+}
@@ -0,0 +1,41 @@
+package com.events.events.services;
+
+import com.events.events.models.AuthenticatedUser;
+
+import java.util.Date;
+
+public interface TokenRevocationService {
+
+    /**
+     * This method revokes a single token so it can't be used again, like when its user logs out
+     * @param token
+     */
+    void revokeToken(String token);
+
+    /**
+     * This method revokes every token of the user issued up to now, like when they change their password
+     * @param userId
+     */
+    void revokeTokensOfUser(int userId);
+
+    /**
+     * This method checks whether the token was revoked, either by itself or along with the other tokens of its user
+     * Tokens that were never revoked are answered from memory, the database is only read when the token might be revoked
+     * Tokens without the id of their user can't be checked against the revocations of their user and count as revoked
+     * @param tokenHash the hash of the token made by TokenHashes
+     * @param user the user the token belongs to
+     * @param issuedAt when the token was issued, null when it isn't known
+     * @return
+     */
+    boolean isRevoked(byte[] tokenHash, AuthenticatedUser user, Date issuedAt);
+
+    /**
+     * This method adds the revocations made since they were last loaded, including those made by other instances
+     */
+    void loadNewRevocations();
+
+    /**
+     * This method deletes the revocations of tokens that have all expired and rebuilds the filter without them
+     */
+    void deleteExpiredRevocations();
+}
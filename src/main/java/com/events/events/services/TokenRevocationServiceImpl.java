@@ -0,0 +1,208 @@
+package com.events.events.services;
+
+import com.events.events.config.security.BloomFilter;
+import com.events.events.config.security.SecurityConstants;
+import com.events.events.config.security.TokenHashes;
+import com.events.events.models.AuthenticatedUser;
+import com.events.events.models.RevokedToken;
+import com.events.events.repository.RevokedTokenRepository;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.transaction.Transactional;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the revocations in memory in front of the revocations in the database.
+ * Single tokens go into a Bloom filter: almost every token checked was never revoked, the filter answers those
+ * without a query, only tokens it reports as possibly revoked are looked up to tell real revocations from false
+ * positives. The tokens of a user are revoked by the time they were revoked at, which is kept for every such user,
+ * so checking them never needs a query.
+ */
+@Service
+public class TokenRevocationServiceImpl implements TokenRevocationService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TokenRevocationServiceImpl.class);
+
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @Value("${events.security.revocation.expected-revocations:10000}")
+    private int expectedRevocations;
+
+    @Value("${events.security.revocation.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    @Value("${events.security.revocation.poll-overlap-seconds:300}")
+    private long pollOverlapSeconds;
+
+    private final JwtParser jwtParser = Jwts.parser().setSigningKey(SecurityConstants.SECRETKEY.getConstant());
+
+    private volatile BloomFilter filter;
+
+    // when the tokens of each user were last revoked
+    private volatile Map<Integer, Instant> userRevocations;
+
+    // when the revocations were last read from the database, the next poll reads back a little further than this
+    // to pick up revocations that committed late
+    private LocalDateTime lastPolledAt;
+
+    @Override
+    @Transactional
+    public void revokeToken(String token) {
+        Claims claims = jwtParser.parseClaimsJws(token).getBody();
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expiresAt = claims.getExpiration() == null
+                ? now.plus(SecurityConstants.expirationTimeMillis(), ChronoUnit.MILLIS)
+                : LocalDateTime.ofInstant(claims.getExpiration().toInstant(), ZoneId.systemDefault());
+        byte[] tokenHash = TokenHashes.hash(token);
+        revokedTokenRepository.save(new RevokedToken(TokenHashes.toHex(tokenHash), now, expiresAt));
+        // added straight away so the revocation holds on this instance even before it is committed,
+        // until then the lookup behind the filter finds nothing and the token is still accepted
+        ensureLoaded();
+        synchronized (this){
+            filter.put(tokenHash);
+        }
+        LOGGER.info("Revoked a token of user: " + claims.getSubject());
+    }
+
+    @Override
+    @Transactional
+    public void revokeTokensOfUser(int userId) {
+        // tokens only carry the second they were issued at, tokens issued within this second are kept
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        revokedTokenRepository.save(new RevokedToken(RevokedToken.userKey(userId), now, now.plus(SecurityConstants.expirationTimeMillis(), ChronoUnit.MILLIS)));
+        ensureLoaded();
+        synchronized (this){
+            userRevocations.merge(userId, toInstant(now), TokenRevocationServiceImpl::latest);
+        }
+        LOGGER.info("Revoked the tokens of user with id: " + userId);
+    }
+
+    @Override
+    public boolean isRevoked(byte[] tokenHash, AuthenticatedUser user, Date issuedAt) {
+        ensureLoaded();
+        if(filter.mightContain(tokenHash) && revokedTokenRepository.findFirstByRevocationKeyOrderByRevokedAtDesc(TokenHashes.toHex(tokenHash)).isPresent()){
+            return true;
+        }
+        if(user == null){
+            return false;
+        }
+        // tokens issued before the user id was added to them stay valid for their whole lifetime but can't be matched
+        // to the revocations of their user, so they are turned away rather than outliving a password change, their
+        // users log in again to get a token with the id
+        if(!user.hasUserId()){
+            return true;
+        }
+        Instant revokedAt = userRevocations.get(user.getUserId());
+        return revokedAt != null && (issuedAt == null || issuedAt.toInstant().isBefore(revokedAt));
+    }
+
+    @Override
+    public synchronized void loadNewRevocations() {
+        if(filter == null){
+            reload();
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> keys = revokedTokenRepository.findKeysRevokedSince(lastPolledAt.minusSeconds(pollOverlapSeconds), now);
+        lastPolledAt = now;
+        if(keys.isEmpty()){
+            return;
+        }
+        if(filter.getInsertions() + keys.size() > filter.getExpectedInsertions()){
+            // a fuller filter gives more false positives, size a new one for the current revocations instead
+            reload();
+            return;
+        }
+        int added = addKeys(filter, userRevocations, keys);
+        if(added > 0){
+            LOGGER.info("Loaded " + added + " new token revocations");
+        }
+    }
+
+    @Override
+    @Transactional
+    public void deleteExpiredRevocations() {
+        int deleted = revokedTokenRepository.deleteExpired(LocalDateTime.now());
+        LOGGER.info("Deleted " + deleted + " expired token revocations");
+        synchronized (this){
+            reload();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadFilterOnStartup() {
+        ensureLoaded();
+    }
+
+    private void ensureLoaded(){
+        if(filter == null){
+            synchronized (this){
+                if(filter == null){
+                    reload();
+                }
+            }
+        }
+    }
+
+    // callers hold the lock on this service
+    private void reload(){
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> keys = revokedTokenRepository.findKeysNotExpired(now);
+        BloomFilter rebuilt = new BloomFilter(Math.max(expectedRevocations, keys.size() * 2), falsePositiveRate);
+        Map<Integer, Instant> reloadedUsers = new ConcurrentHashMap<>();
+        addKeys(rebuilt, reloadedUsers, keys);
+        userRevocations = reloadedUsers;
+        filter = rebuilt;
+        lastPolledAt = now;
+        LOGGER.info("Loaded " + keys.size() + " token revocations into the revocation filter");
+    }
+
+    // keys already loaded are read again by the polls that overlap, they are only counted the first time
+    private static int addKeys(BloomFilter target, Map<Integer, Instant> users, List<Object[]> keys){
+        int added = 0;
+        for(Object[] key : keys){
+            String revocationKey = (String) key[0];
+            if(RevokedToken.isUserKey(revocationKey)){
+                int userId = RevokedToken.userIdOf(revocationKey);
+                Instant revokedAt = toInstant((LocalDateTime) key[1]);
+                Instant previous = users.get(userId);
+                if(previous == null || previous.isBefore(revokedAt)){
+                    users.put(userId, revokedAt);
+                    added++;
+                }
+            }else{
+                byte[] tokenHash = TokenHashes.fromHex(revocationKey);
+                if(!target.mightContain(tokenHash)){
+                    target.put(tokenHash);
+                    added++;
+                }
+            }
+        }
+        return added;
+    }
+
+    private static Instant toInstant(LocalDateTime time){
+        return time.atZone(ZoneId.systemDefault()).toInstant();
+    }
+
+    private static Instant latest(Instant first, Instant second){
+        return first.isAfter(second) ? first : second;
+    }
+}
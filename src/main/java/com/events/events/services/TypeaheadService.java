@@ -0,0 +1,17 @@
+package com.events.events.services;
+
+import com.events.events.models.UserSuggestion;
+
+import java.util.List;
+
+public interface TypeaheadService {
+
+    /**
+     * This method returns at most size users whose username, first name, last name or full name starts with the prefix
+     * An empty list is returned when no user matches
+     * @param prefix
+     * @param size
+     * @return
+     */
+    List<UserSuggestion> suggestUsers(String prefix, int size);
+}
@@ -0,0 +1,26 @@
+package com.events.events.services;
+
+import com.events.events.models.UserSuggestion;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.events.events.search.TextNormalizer.normalize;
+
+@Service
+public class TypeaheadServiceImpl implements TypeaheadService {
+
+    @Autowired
+    private UserNameIndex userNameIndex;
+
+    @Override
+    public List<UserSuggestion> suggestUsers(String prefix, int size) {
+        String key = normalize(prefix);
+        if(key.isEmpty()){
+            return new ArrayList<>();
+        }
+        return userNameIndex.suggest(key, size);
+    }
+}
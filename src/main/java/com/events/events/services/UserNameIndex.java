@@ -0,0 +1,155 @@
+package com.events.events.services;
+
+import com.events.events.models.User;
+import com.events.events.models.UserSuggestion;
+import com.events.events.repository.UserRepository;
+import com.events.events.search.BKTree;
+import com.events.events.search.RadixTrie;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.function.ToIntFunction;
+
+import static com.events.events.search.TextNormalizer.normalize;
+
+/**
+ * The names of every user held once in memory, with the trie the typeahead reads prefixes from and the BK-tree the
+ * fuzzy search reads words within a few typos from. Both are built from the same load of the users table and kept
+ * up to date by the same changes, the names of each user are kept to take their old keys out again.
+ */
+@Component
+public class UserNameIndex extends InMemoryIndex<UserNameIndex.Index> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(UserNameIndex.class);
+
+    @Autowired
+    private UserRepository userRepository;
+
+    /**
+     * Returns at most size users with a key starting with the normalized prefix
+     */
+    public List<UserSuggestion> suggest(String prefix, int size){
+        return read(index -> {
+            List<UserSuggestion> found = new ArrayList<>();
+            for(Integer userId : index.trie.findByPrefix(prefix, size)){
+                found.add(new UserSuggestion(userId, index.users.get(userId).displayName()));
+            }
+            return found;
+        });
+    }
+
+    /**
+     * Returns the users with a name within the tolerated number of typos of every one of the normalized words,
+     * with the sum of the typos across the words
+     */
+    public Map<Integer, Integer> findByWords(String[] words, ToIntFunction<String> tolerance){
+        return read(index -> {
+            Map<Integer, Integer> distances = index.tree.search(words[0], tolerance.applyAsInt(words[0]));
+            for(int i = 1; i < words.length && !distances.isEmpty(); i++){
+                Map<Integer, Integer> matches = index.tree.search(words[i], tolerance.applyAsInt(words[i]));
+                distances.keySet().retainAll(matches.keySet());
+                distances.replaceAll((userId, distance) -> distance + matches.get(userId));
+            }
+            return distances;
+        });
+    }
+
+    public void addUser(User user){
+        Names names = new Names(user.getUsername(), user.getFirstName(), user.getLastName());
+        update(index -> put(index, user.getUserId(), names));
+    }
+
+    public void removeUser(int userId){
+        update(index -> remove(index, userId));
+    }
+
+    @Override
+    protected Index load() {
+        List<Object[]> users = userRepository.findNames();
+        Index loaded = new Index();
+        for(Object[] user : users){
+            put(loaded, (Integer) user[0], new Names((String) user[1], (String) user[2], (String) user[3]));
+        }
+        LOGGER.info("Loaded " + users.size() + " users into the typeahead and fuzzy search indexes");
+        return loaded;
+    }
+
+    private void put(Index index, int userId, Names names){
+        remove(index, userId);
+        for(String key : names.keys()){
+            index.trie.put(key, userId);
+        }
+        for(String word : names.words()){
+            index.tree.put(word, userId);
+        }
+        index.users.put(userId, names);
+    }
+
+    private void remove(Index index, int userId){
+        Names names = index.users.remove(userId);
+        if(names != null){
+            for(String key : names.keys()){
+                index.trie.remove(key, userId);
+            }
+            for(String word : names.words()){
+                index.tree.remove(word, userId);
+            }
+        }
+    }
+
+    static class Index {
+
+        private final Map<Integer, Names> users = new HashMap<>();
+
+        private final RadixTrie trie = new RadixTrie();
+
+        private final BKTree tree = new BKTree();
+    }
+
+    private static class Names {
+
+        private final String username;
+
+        private final String firstName;
+
+        private final String lastName;
+
+        private Names(String username, String firstName, String lastName) {
+            this.username = username;
+            this.firstName = firstName;
+            this.lastName = lastName;
+        }
+
+        private String displayName(){
+            String displayName = ((firstName == null ? "" : firstName.trim()) + " " + (lastName == null ? "" : lastName.trim())).trim();
+            return displayName.isEmpty() ? username : displayName;
+        }
+
+        // a user can be suggested by the start of their username, either of their names or their full name
+        private Set<String> keys(){
+            Set<String> keys = new LinkedHashSet<>();
+            keys.add(normalize(username));
+            keys.add(normalize(firstName));
+            keys.add(normalize(lastName));
+            keys.add(normalize(displayName()));
+            keys.remove("");
+            return keys;
+        }
+
+        // a user is found by the fuzzy search through every word of their names
+        private Set<String> words(){
+            Set<String> words = new HashSet<>();
+            for(String name : Arrays.asList(username, firstName, lastName)){
+                for(String word : normalize(name).split(" ")){
+                    if(!word.isEmpty()){
+                        words.add(word);
+                    }
+                }
+            }
+            return words;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.events.events.services;
+
+import com.events.events.models.User;
+
+import java.util.List;
+
+public interface UserSearchService {
+
+    /**
+     * This method returns at most size users with the term in their firstName lastName or username, best match first
+     * @param term
+     * @param size
+     * @return
+     */
+    List<User> searchUsers(String term, int size);
+}
@@ -0,0 +1,31 @@
+package com.events.events.services;
+
+import com.events.events.models.User;
+import com.events.events.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Searches users with the pg_trgm indexes created by the schema migrations,
+ * the database keeps its indexes up to date so there is nothing to do when users change.
+ */
+@Service
+public class UserSearchServiceImpl implements UserSearchService {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Override
+    public List<User> searchUsers(String term, int size) {
+        String normalized = term.trim().toLowerCase(Locale.ROOT);
+        return userRepository.searchBySimilarity(normalized, "%" + escapeLikePattern(normalized) + "%", size);
+    }
+
+    // the term is matched literally, % and _ in it are not wildcards
+    private String escapeLikePattern(String term){
+        return term.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
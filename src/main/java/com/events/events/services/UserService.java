@@ -1,16 +1,19 @@
 package com.events.events.services;
 
+import com.events.events.models.AuthenticatedUser;
 import com.events.events.models.Event;
+import com.events.events.models.FileDownload;
 import com.events.events.models.User;
-import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpRange;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.util.List;
 import java.util.Map;
 
-public interface UserService extends UserDetailsService {
+public interface UserService extends UserDetailsService, UserDetailsPasswordService {
 
     /**
      * This method is used to save a user into the system
@@ -60,11 +63,12 @@ public interface UserService extends UserDetailsService {
     User uploadUserImage(int userId, MultipartFile multipartFile);
 
     /**
-     * This method downloads the user's image given the user's id
+     * This method opens the user's image given the user's id, only the requested range of it when one is given
      * @param userId
+     * @param ranges
      * @return
      */
-    ByteArrayResource downloadUserImage(int userId);
+    FileDownload downloadUserImage(int userId, List<HttpRange> ranges);
 
     /**
      * This method changes the password of the user to the new one provided
@@ -78,9 +82,9 @@ public interface UserService extends UserDetailsService {
      * This method is used to add a friend to user
      * @param userId
      * @param friendId
-     * @param username
+     * @param currentUser
      */
-    void addFriend(int userId, int friendId, String username);
+    void addFriend(int userId, int friendId, AuthenticatedUser currentUser);
 
     /**
      * This method returns all the users that this particular user is following"
@@ -97,43 +101,54 @@ public interface UserService extends UserDetailsService {
 
     /**
      * This method returns users that have the search term in their firstName lastName or username
+     * The best matches come first and at most size users are returned
+     * @param searchTerm
+     * @param size
+     * @return
+     */
+    List<User> searchUsers(String searchTerm, int size);
+
+    /**
+     * This method returns users with names that are within one or two typos of the words in the search term
+     * The closest matches come first and at most size users are returned
      * @param searchTerm
+     * @param size
      * @return
      */
-    List<User> searchUsers(String searchTerm);
+    List<User> fuzzySearchUsers(String searchTerm, int size);
 
     /**
      * This method returns the connections between the user and the user id they provide
      * Connections include, followed, followedBy, pendingRequest
      * @param userIds
-     * @param username
+     * @param currentUser
      * @return
      */
-    List<Map<String, Object>> userConnections(int[] userIds, int userId, String username);
+    List<Map<String, Object>> userConnections(int[] userIds, int userId, AuthenticatedUser currentUser);
 
     /**
      * This method that accepts a follow request from the user with the given id
      * @param userId
      * @param followerId
-     * @param username
+     * @param currentUser
      */
-    void acceptFollowRequest(int userId, int followerId, String username);
+    void acceptFollowRequest(int userId, int followerId, AuthenticatedUser currentUser);
 
     /**
      * This is a method to reject a follow request from the user with the given id
      * @param userId
      * @param followerId
-     * @param username
+     * @param currentUser
      */
-    void rejectFollowRequest(int userId, int followerId, String username);
+    void rejectFollowRequest(int userId, int followerId, AuthenticatedUser currentUser);
 
     /**
      * This is a method to stop following someone
      * @param userId
      * @param friendId
-     * @param username
+     * @param currentUser
      */
-    void unFollowUser(int userId, int friendId, String username);
+    void unFollowUser(int userId, int friendId, AuthenticatedUser currentUser);
 
     /**
      * This method takes the facebook token, requests the user's id and then stores the user's facebook id and token
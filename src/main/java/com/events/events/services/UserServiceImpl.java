@@ -2,20 +2,24 @@ package com.events.events.services;
 
 import com.amazonaws.services.s3.AmazonS3;
 import com.events.events.error.*;
+import com.events.events.models.AuthenticatedUser;
 import com.events.events.models.ConfirmationToken;
 import com.events.events.models.Event;
+import com.events.events.models.FileDownload;
 import com.events.events.models.Friend;
 import com.events.events.models.User;
+import com.events.events.models.UserAccountDetails;
 import com.events.events.repository.ConfirmationTokenRepository;
 import com.events.events.repository.FriendRepository;
 import com.events.events.repository.UserRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.ByteArrayResource;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpRange;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.social.ExpiredAuthorizationException;
 import org.springframework.social.InvalidAuthorizationException;
 import org.springframework.social.facebook.api.Facebook;
@@ -46,7 +50,27 @@ public class UserServiceImpl implements UserService {
     private ConfirmationTokenRepository confirmationTokenRepository;
 
     @Autowired
-    private BCryptPasswordEncoder bCryptPasswordEncoder;
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private FeedService feedService;
+
+    @Autowired
+    private FollowGraphService followGraphService;
+
+    @Autowired
+    private UserSearchService userSearchService;
+
+    @Autowired
+    private UserNameIndex userNameIndex;
+
+    @Autowired
+    private FuzzyUserSearchService fuzzyUserSearchService;
+
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
+    private static final int MAX_SEARCH_SIZE = 100;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(UserServiceImpl.class);
 
@@ -58,14 +82,22 @@ public class UserServiceImpl implements UserService {
             throw new UsernameNotFoundException("There is no user with the username: "+ username);
         }
 
-        return new org.springframework.security.core.userdetails.User(
-                user.get().getUsername(),
-                user.get().getPassword(),
-                user.get().isEnabled(),
-                true,
-                true,
-                true,
-                Collections.emptyList());
+        return new UserAccountDetails(user.get());
+    }
+
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        // called on a successful login when the stored hash was made with another BCrypt strength
+        // the user read at login is detached, saving it would write back every field it had then over any change
+        // committed since, so only the password is set on the user as it is now
+        int userId = ((UserAccountDetails) userDetails).getUser().getUserId();
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new UsernameNotFoundException("There is no user with the id: " + userId));
+        user.setPassword(newPassword);
+        user = userRepository.save(user);
+        LOGGER.info("Rehashed the password of user with id: " + user.getUserId());
+        return new UserAccountDetails(user);
     }
 
     @Transactional
@@ -76,9 +108,10 @@ public class UserServiceImpl implements UserService {
         }else if(user.getPassword().trim().length() < 5){
             throw new AuthenticationException("New Password must be more than 5");
         }
-        user.setPassword(bCryptPasswordEncoder.encode(user.getPassword()));
+        user.setPassword(passwordEncoder.encode(user.getPassword()));
 
         user = userRepository.save(user);
+        userNameIndex.addUser(user);
         // create a confirmation token for the user and save it
         ConfirmationToken confirmationToken = new ConfirmationToken(user);
         confirmationTokenRepository.save(confirmationToken);
@@ -121,6 +154,7 @@ public class UserServiceImpl implements UserService {
     public void deleteUser(int userId) {
         User user = verifyAndReturnUser(userId);
         userRepository.delete(user);
+        userNameIndex.removeUser(userId);
     }
 
     @Override
@@ -139,84 +173,78 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
-    public ByteArrayResource downloadUserImage(int userId) {
+    public FileDownload downloadUserImage(int userId, List<HttpRange> ranges) {
         LOGGER.info("Downloading image for user with id: "+ userId +" started");
         User user = verifyAndReturnUser(userId);
         if(user.getImageKey() == null){
             LOGGER.error("User with id: " + userId + " doesn't have an image uploaded");
             throw new NotFoundException("User does not have an image for this id");
         }
-        byte[] imageFile = awss3Service.downloadFile(user.getImageKey());
-        LOGGER.info("Downloading image for user with id: "+ userId + " completed");
-        return new ByteArrayResource(imageFile);
+        FileDownload imageFile = awss3Service.openFile(user.getImageKey(), ranges);
+        LOGGER.info("Opened image for user with id: "+ userId);
+        return imageFile;
     }
 
     @Override
     @Transactional
     public void changePassword(String oldPassword, String newPassword, String username) {
         User user = verifyAndReturnUser(username);
-        if(!bCryptPasswordEncoder.matches(oldPassword, user.getPassword())){
+        if(!passwordEncoder.matches(oldPassword, user.getPassword())){
             throw new AuthenticationException("Password does not match current password");
-        } else if(bCryptPasswordEncoder.matches(newPassword, user.getPassword())){
+        } else if(passwordEncoder.matches(newPassword, user.getPassword())){
             throw new AuthenticationException("New Password can't be the same as the old password");
         } else if(newPassword.trim().length() < 5){
             throw new AuthenticationException("New Password must be more than 5");
         }
-        user.setPassword(bCryptPasswordEncoder.encode(newPassword));
+        user.setPassword(passwordEncoder.encode(newPassword));
         userRepository.save(user);
+        // tokens handed out for the old password stop working, the user logs in again with the new one
+        tokenRevocationService.revokeTokensOfUser(user.getUserId());
     }
 
     @Override
     @Transactional
-    public void addFriend(int userId, int friendId, String username) {
+    public void addFriend(int userId, int friendId, AuthenticatedUser currentUser) {
         User friend = verifyAndReturnUser(friendId);
-        User user = verifyAndReturnUser(userId);
-        // check that the user returned is the same user accessing the system
-        if(!user.getUsername().equals(username)){
-            throw new AuthorisationException("You do not have the required permission to complete this operation");
-        }
-        if(user.equals(friend)){
+        // check that the user is the same user accessing the system
+        checkUserIdBelongsToCurrentUser(userId, currentUser);
+        if(userId == friendId){
             throw new IllegalFriendActionException("Can't add self as a friend");
         }
-        // check if the user is already following this person
-        Friend newFriend = new Friend(user, friend);
-        for(Friend singleFriend: user.getFriends()){
-            if(singleFriend.equals(newFriend)){
-                throw new IllegalFriendActionException("User is already following or requested to follow user with Id: " + friendId);
-            }
+        // checked against the database rather than the graph, saving over an existing follow would make it a request again
+        if(friendRepository.existsFollowOrRequest(userId, friendId)){
+            throw new IllegalFriendActionException("User is already following or requested to follow user with Id: " + friendId);
+        }
+        // the user only needs to be referenced for the row to be written, a user of a valid token deleted since it
+        // was issued is caught by the foreign key when the row is flushed
+        try {
+            friendRepository.saveAndFlush(new Friend(userRepository.getOne(userId), friend));
+        } catch (DataIntegrityViolationException e){
+            throw new NotFoundException("User with id: "+userId+" not found");
         }
-        // add the friend to the user
-        friendRepository.save(newFriend);
+        followGraphService.addFollowRequest(userId, friendId);
     }
 
     @Override
     public List<User> getAllFollowing(int userId) {
-        User user = verifyAndReturnUser(userId);
-        List<User> friends = new ArrayList<>();
-        for(Friend friend : user.getFriends()){
-            friends.add(friend.getFriend());
-        }
-        return friends;
+        verifyAndReturnUser(userId);
+        return findUsersInOrder(followGraphService.getFollowing(userId));
     }
 
     @Override
     public List<User> getAllFollowers(int userId){
-        User user = verifyAndReturnUser(userId);
-        List<Friend> friendList = friendRepository.getAllFollowers(user.getUserId());
-        List<User> followers = new ArrayList<>();
-        if(friendList.isEmpty()){
+        verifyAndReturnUser(userId);
+        int[] followerIds = followGraphService.getFollowers(userId);
+        if(followerIds.length == 0){
             throw new EmptyListException("There are no followers for the user: "+userId);
         }
-        for(Friend friend : friendList){
-            followers.add(friend.getOwner());
-        }
-        return followers;
+        return findUsersInOrder(followerIds);
     }
 
     @Override
-    public List<User> searchUsers(String searchTerm) {
+    public List<User> searchUsers(String searchTerm, int size) {
         LOGGER.info("Searching for user: "+ searchTerm);
-        List<User> users =  userRepository.findBySearchTerm(searchTerm);
+        List<User> users =  userSearchService.searchUsers(searchTerm, Math.max(1, Math.min(size, MAX_SEARCH_SIZE)));
         if(users.isEmpty()){
             LOGGER.info("Searching for user: "+ searchTerm + " completed");
             throw new EmptyListException("There are no users who fit the search term: "+ searchTerm);
@@ -226,41 +254,60 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
-    public List<Map<String, Object>> userConnections(int[] userIds, int userId, String username) {
+    public List<User> fuzzySearchUsers(String searchTerm, int size) {
+        LOGGER.info("Fuzzy searching for user: "+ searchTerm);
+        List<User> users =  fuzzyUserSearchService.searchUsers(searchTerm, Math.max(1, Math.min(size, MAX_SEARCH_SIZE)));
+        if(users.isEmpty()){
+            LOGGER.info("Fuzzy searching for user: "+ searchTerm + " completed");
+            throw new EmptyListException("There are no users who fit the search term: "+ searchTerm);
+        }
+        LOGGER.info("Fuzzy searching for user: "+ searchTerm + " completed");
+        return users;
+    }
+
+    @Override
+    public List<Map<String, Object>> userConnections(int[] userIds, int userId, AuthenticatedUser currentUser) {
         LOGGER.info("Generating user connections");
-        User currentUser = verifyAndReturnUser(userId);
-        // check that the user returned is the same user accessing the system
-        if(!currentUser.getUsername().equals(username)){
-            throw new AuthorisationException("You do not have the required permission to complete this operation");
+        // check that the user is the same user accessing the system
+        checkUserIdBelongsToCurrentUser(userId, currentUser);
+        Set<Integer> requestedIds = Arrays.stream(userIds).boxed().collect(Collectors.toCollection(LinkedHashSet::new));
+        // the looked up users that exist with the friends rows between them and the current user, in one query
+        Set<Integer> existingIds = new HashSet<>();
+        Map<Integer, Boolean> following = new HashMap<>();
+        Map<Integer, Boolean> followedBy = new HashMap<>();
+        List<Object[]> rows = requestedIds.isEmpty() ? Collections.emptyList() : friendRepository.findConnections(userId, requestedIds);
+        for(Object[] row : rows){
+            int id = ((Number) row[0]).intValue();
+            existingIds.add(id);
+            if(row[1] != null){
+                following.put(id, (Boolean) row[1]);
+            }
+            if(row[2] != null){
+                followedBy.put(id, (Boolean) row[2]);
+            }
         }
-        List<User> searchedUsers = userRepository.findAllById(Arrays.stream(userIds).boxed().collect(Collectors.toList()));
 
-        if(searchedUsers.isEmpty()){
+        if(existingIds.isEmpty()){
             LOGGER.error("Ids provided do not exist");
             throw new BadRequestException("UserIDs provided do not match any in the system");
         }
 
         List<Map<String, Object>> userConnections = new ArrayList<>();
 
-        for(User user : searchedUsers){
+        for(Integer id : requestedIds){
+            if(!existingIds.contains(id)){
+                continue;
+            }
             Map<String, Object> userMap = new HashMap<>();
             List<String> connections = new ArrayList<>();
-            userMap.put("id", user.getUserId());
-            // check if the user is following them and it is active
-            if(currentUser.getFriends().contains(new Friend(currentUser, user)) && friendRepository.findById(new Friend.Key(currentUser, user)).get().isActive()){
-                connections.add("following");
+            userMap.put("id", id);
+            // check if the user is following them, whether it is active or not yet accepted
+            if(following.containsKey(id)){
+                connections.add(following.get(id) ? "following" : "requestedFollow");
             }
-            // check if the user is following them and it is not yet active
-            if(currentUser.getFriends().contains(new Friend(currentUser, user)) && !friendRepository.findById(new Friend.Key(currentUser, user)).get().isActive()){
-                connections.add("requestedFollow");
-            }
-            // check if they are following the user and it is active
-            if(user.getFriends().contains(new Friend(user, currentUser)) && friendRepository.findById(new Friend.Key(user, currentUser)).get().isActive()){
-                connections.add("followedBy");
-            }
-            // check if they are following the user and it is not yet active
-            if(user.getFriends().contains(new Friend(user, currentUser)) && !friendRepository.findById(new Friend.Key(user, currentUser)).get().isActive()){
-                connections.add("pendingRequest");
+            // check if they are following the user, whether it is active or not yet accepted
+            if(followedBy.containsKey(id)){
+                connections.add(followedBy.get(id) ? "followedBy" : "pendingRequest");
             }
 
             userMap.put("connections", connections);
@@ -272,15 +319,12 @@ public class UserServiceImpl implements UserService {
 
     @Override
     @Transactional
-    public void acceptFollowRequest(int userId, int followerId, String username) {
-        // check that the person cancelling the request exists
-        User user = verifyAndReturnUser(userId);
+    public void acceptFollowRequest(int userId, int followerId, AuthenticatedUser currentUser) {
+        // check that the user id belongs to the person accepting the request
+        checkUserIdBelongsToCurrentUser(userId, currentUser);
+        User user = userRepository.getOne(userId);
         // check that the user that requested exists
         User follower = verifyAndReturnUser(followerId);
-        // check that the user id and username belong to the same user
-        if(!user.getUsername().equals(username)){
-            throw new AuthorisationException("You do not have the required permission to complete this operation");
-        }
 
         //check to see if that follow relationship exists
         Optional<Friend> friend = friendRepository.findById(new Friend.Key(follower, user));
@@ -292,19 +336,18 @@ public class UserServiceImpl implements UserService {
         }
         friend.get().setActive(true);
         friendRepository.save(friend.get());
+        followGraphService.acceptFollowRequest(followerId, userId);
+        feedService.addFollowee(followerId, userId);
     }
 
     @Override
     @Transactional
-    public void rejectFollowRequest(int userId, int followerId, String username) {
-        // check that the person cancelling the request exists
-        User user = verifyAndReturnUser(userId);
+    public void rejectFollowRequest(int userId, int followerId, AuthenticatedUser currentUser) {
+        // check that the user id belongs to the person rejecting the request
+        checkUserIdBelongsToCurrentUser(userId, currentUser);
+        User user = userRepository.getOne(userId);
         // check that the user that requested exists
         User follower = verifyAndReturnUser(followerId);
-        // check that the user id and username belong to the same user
-        if(!user.getUsername().equals(username)){
-            throw new AuthorisationException("You do not have the required permission to complete this operation");
-        }
         //check to see if that follow relationship exists
         Optional<Friend> friendship = friendRepository.findById(new Friend.Key(follower, user));
         if(!friendship.isPresent()){
@@ -313,20 +356,18 @@ public class UserServiceImpl implements UserService {
 
         // delete the friend relationship from the database, whether friends or not
         friendRepository.delete(friendship.get());
-
+        followGraphService.removeFollow(followerId, userId);
+        feedService.removeFollowee(followerId, userId);
     }
 
     @Override
     @Transactional
-    public void unFollowUser(int userId, int friendId, String username) {
-        // check that the person cancelling the request exists
-        User user = verifyAndReturnUser(userId);
-        // check that the user that requested exists
+    public void unFollowUser(int userId, int friendId, AuthenticatedUser currentUser) {
+        // check that the user id belongs to the person unfollowing
+        checkUserIdBelongsToCurrentUser(userId, currentUser);
+        User user = userRepository.getOne(userId);
+        // check that the user being unfollowed exists
         User friend = verifyAndReturnUser(friendId);
-        // check that the user id and username belong to the same user
-        if(!user.getUsername().equals(username)){
-            throw new AuthorisationException("You do not have the required permission to complete this operation");
-        }
 
         //check to see if that follow relationship exists
         Optional<Friend> friendship = friendRepository.findById(new Friend.Key(user, friend));
@@ -336,6 +377,8 @@ public class UserServiceImpl implements UserService {
 
         // delete the friend relationship from the database, whether friends or not
         friendRepository.delete(friendship.get());
+        followGraphService.removeFollow(userId, friendId);
+        feedService.removeFollowee(userId, friendId);
     }
 
     @Override
@@ -360,6 +403,25 @@ public class UserServiceImpl implements UserService {
 
     //Helper methods to get users below here
 
+    // loads the users in one query and keeps them in the order of the ids
+    private List<User> findUsersInOrder(int[] userIds){
+        if(userIds.length == 0){
+            return new ArrayList<>();
+        }
+        Map<Integer, User> users = new HashMap<>();
+        for(User user : userRepository.findAllById(Arrays.stream(userIds).boxed().collect(Collectors.toList()))){
+            users.put(user.getUserId(), user);
+        }
+        List<User> ordered = new ArrayList<>(userIds.length);
+        for(int userId : userIds){
+            User user = users.get(userId);
+            if(user != null){
+                ordered.add(user);
+            }
+        }
+        return ordered;
+    }
+
     private User verifyAndReturnUser(int userId){
         Optional<User> user = userRepository.findById(userId);
         if(!user.isPresent()){
@@ -368,6 +430,17 @@ public class UserServiceImpl implements UserService {
         return user.get();
     }
 
+    private void checkUserIdBelongsToCurrentUser(int userId, AuthenticatedUser currentUser){
+        // the id in the token is compared directly, tokens without one are checked against the user's username
+        boolean belongs = currentUser.hasUserId()
+                ? currentUser.getUserId() == userId
+                : verifyAndReturnUser(userId).getUsername().equals(currentUser.getUsername());
+        if(!belongs){
+            LOGGER.error("User Id does not belong to current user");
+            throw new AuthorisationException("You do not have the required permission to complete this operation");
+        }
+    }
+
     private User verifyAndReturnUser(String username){
         Optional<User> user = userRepository.findByUsername(username);
         if (!user.isPresent()){
@@ -0,0 +1,12 @@
+-- one-off backfill of the materialized feeds from the friends and events tables, for the data that existed before them
+-- the marker row makes it run on the first startup only, an instance starting at the same time waits on the row and skips it
+CREATE TABLE IF NOT EXISTS schema_backfills (name varchar(100) PRIMARY KEY, completed_at timestamp NOT NULL);
+WITH backfill AS (
+    INSERT INTO schema_backfills (name, completed_at) VALUES ('user_feed', now()) ON CONFLICT DO NOTHING RETURNING name
+)
+INSERT INTO user_feed (user_id, event_id, start_time)
+SELECT f.owner_user_id, e.event_id, e.start_time FROM friends f JOIN events e ON e.user_id = f.friend_user_id
+WHERE EXISTS (SELECT 1 FROM backfill) AND f.is_active = true AND e.fanned_out = true AND e.event_status <> 2
+UNION SELECT e.user_id, e.event_id, e.start_time FROM events e
+WHERE EXISTS (SELECT 1 FROM backfill) AND e.user_id IS NOT NULL AND e.event_status <> 2
+ON CONFLICT DO NOTHING;
@@ -0,0 +1,2 @@
+-- the few creators whose events are pulled into feeds on read are looked up often, a partial index keeps that cheap
+CREATE INDEX IF NOT EXISTS events_pulled_creator_idx ON events (user_id) WHERE fanned_out = false;
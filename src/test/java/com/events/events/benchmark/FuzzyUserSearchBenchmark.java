@@ -0,0 +1,108 @@
+package com.events.events.benchmark;
+
+import com.events.events.search.BKTree;
+
+import java.util.*;
+
+/**
+ * Measures how the latency of the fuzzy user search grows with the number of users.
+ * Builds the BK-tree the fuzzy search uses over generated names for each user count and times searches for names
+ * with one and two typos against a scan computing the distance to every word.
+ * Not a unit test, run it on its own with a large heap, for example:
+ * java -Xmx4g -cp target/classes:target/test-classes com.events.events.benchmark.FuzzyUserSearchBenchmark 10000 100000 1000000
+ */
+public class FuzzyUserSearchBenchmark {
+
+    private static final String[] SYLLABLES = {"ka", "mu", "wa", "sa", "na", "ge", "ri", "to", "be", "lo", "zi", "ya",
+            "ne", "di", "ba", "mo", "ku", "le", "ha", "po", "se", "ju", "fa", "ti"};
+
+    private static final int QUERIES = 200;
+
+    public static void main(String[] args) {
+        int[] userCounts = args.length == 0 ? new int[]{10_000, 100_000, 1_000_000} : Arrays.stream(args).mapToInt(Integer::parseInt).toArray();
+        Random random = new Random(42);
+        for(int userCount : userCounts){
+            BKTree tree = new BKTree();
+            List<String> words = new ArrayList<>();
+            long buildStart = System.nanoTime();
+            for(int userId = 0; userId < userCount; userId++){
+                // a first name, a last name and a username made of both like the users table holds
+                String firstName = name(random, 2 + random.nextInt(2));
+                String lastName = name(random, 3 + random.nextInt(2));
+                String username = firstName.charAt(0) + lastName;
+                for(String word : new String[]{firstName, lastName, username}){
+                    tree.put(word, userId);
+                    words.add(word);
+                }
+            }
+            long buildMillis = (System.nanoTime() - buildStart) / 1_000_000;
+            System.out.println(userCount + " users, " + tree.size() + " distinct words, built in " + buildMillis + " ms");
+            for(int typos = 1; typos <= 2; typos++){
+                long[] treeLatencies = new long[QUERIES];
+                long[] scanLatencies = new long[QUERIES];
+                long matches = 0;
+                for(int i = 0; i < QUERIES; i++){
+                    String term = misspell(random, words.get(random.nextInt(words.size())), typos);
+                    long start = System.nanoTime();
+                    matches += tree.search(term, typos).size();
+                    treeLatencies[i] = System.nanoTime() - start;
+                    // the scan is only timed on a sample of the queries to keep the run short at a million users
+                    if(i < QUERIES / 10){
+                        start = System.nanoTime();
+                        matches += scan(words, term, typos);
+                        scanLatencies[i] = System.nanoTime() - start;
+                    }
+                }
+                System.out.println(String.format("  %d typo(s): bk-tree p50 %.3f ms p99 %.3f ms, full scan p50 %.3f ms (%d matches)",
+                        typos, percentile(treeLatencies, QUERIES, 50), percentile(treeLatencies, QUERIES, 99),
+                        percentile(scanLatencies, QUERIES / 10, 50), matches));
+            }
+        }
+    }
+
+    private static String name(Random random, int syllables){
+        StringBuilder name = new StringBuilder();
+        for(int i = 0; i < syllables; i++){
+            name.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        return name.toString();
+    }
+
+    // substitutes, drops or inserts a letter at random positions
+    private static String misspell(Random random, String word, int typos){
+        StringBuilder misspelled = new StringBuilder(word);
+        for(int i = 0; i < typos; i++){
+            int position = random.nextInt(misspelled.length());
+            char letter = (char) ('a' + random.nextInt(26));
+            switch (random.nextInt(3)){
+                case 0:
+                    misspelled.setCharAt(position, letter);
+                    break;
+                case 1:
+                    if(misspelled.length() > 1){
+                        misspelled.deleteCharAt(position);
+                    }
+                    break;
+                default:
+                    misspelled.insert(position, letter);
+            }
+        }
+        return misspelled.toString();
+    }
+
+    private static int scan(List<String> words, String term, int maxDistance){
+        int matches = 0;
+        for(String word : words){
+            if(BKTree.distance(word, term) <= maxDistance){
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    private static double percentile(long[] latencies, int count, int percentile){
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        return sorted[Math.min(count - 1, count * percentile / 100)] / 1_000_000.0;
+    }
+}
@@ -3,6 +3,7 @@ package com.events.events.repository;
 import com.events.events.EventsApplication;
 import com.events.events.config.database.JPAConfiguration;
 import com.events.events.models.Event;
+import com.events.events.models.EventCursor;
 import com.events.events.models.EventStatus;
 import com.events.events.models.User;
 import org.junit.Assert;
@@ -13,12 +14,15 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @RunWith(SpringRunner.class)
 @DataJpaTest
@@ -82,8 +86,8 @@ public class EventRepositoryTest {
         entityManager.persist(jumping);
         entityManager.persist(cinemaMovie);
 
-        Assert.assertEquals(eventRepository.findByStartTimeBetweenOrderByStartTimeAsc(LocalDateTime.now().truncatedTo(ChronoUnit.HOURS), LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(2)).size(), 4);
-        Assert.assertEquals(eventRepository.findByStartTimeBetweenOrderByStartTimeAsc(LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).minusDays(1), LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(1)).size(), 2);
+        Assert.assertEquals(eventsBetween(LocalDateTime.now().truncatedTo(ChronoUnit.HOURS), LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(2)).size(), 4);
+        Assert.assertEquals(eventsBetween(LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).minusDays(1), LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(1)).size(), 2);
     }
 
     @Test
@@ -96,8 +100,8 @@ public class EventRepositoryTest {
         entityManager.persist(jumping);
         entityManager.persist(cinemaMovie);
 
-        Assert.assertEquals(eventRepository.findByStartTimeGreaterThanOrderByStartTimeAsc(LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(1)).size(), 10);
-        Assert.assertEquals(eventRepository.findByStartTimeGreaterThanOrderByStartTimeAsc(LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).minusDays(1)).size(), 12);
+        Assert.assertEquals(eventsAfter(LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(1)).size(), 10);
+        Assert.assertEquals(eventsAfter(LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).minusDays(1)).size(), 12);
     }
 
     @Test
@@ -110,9 +114,9 @@ public class EventRepositoryTest {
         entityManager.persist(jumping);
         entityManager.persist(cinemaMovie);
 
-        Assert.assertEquals(eventRepository.findByStartTimeLessThanOrderByStartTimeAsc(LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(1)).size(), 1);
-        Assert.assertEquals(eventRepository.findByStartTimeLessThanOrderByStartTimeAsc(LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).minusDays(1)).size(), 0);
-        Assert.assertEquals(eventRepository.findByStartTimeLessThanOrderByStartTimeAsc(LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(4)).size(), 6);
+        Assert.assertEquals(eventsBefore(LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(1)).size(), 1);
+        Assert.assertEquals(eventsBefore(LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).minusDays(1)).size(), 0);
+        Assert.assertEquals(eventsBefore(LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(4)).size(), 6);
     }
 
     @Test
@@ -150,4 +154,89 @@ public class EventRepositoryTest {
         Assert.assertEquals(eventRepository.findAllEventsByFriends(Arrays.asList(samuel.getUserId(), male.getUserId())).size(), 4);
     }
 
+    @Test
+    public void canPageEventsAfterCursor(){
+        Event beach = new Event("beach", "Entebbe", LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(2), LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(2).plusHours(2), samuel);
+        Event jumping = new Event("jumping", "Jinja", LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(2), LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(2).plusHours(2), samuel);
+
+        entityManager.persist(beach);
+        entityManager.persist(jumping);
+
+        // both events start at the same time so the event id decides the order
+        EventCursor cursor = EventCursor.startingAt(beach.getStartTime());
+        List<Event> firstPage = eventRepository.findPageAfterAndStartTimeLessThanEqual(cursor.getStartTime(), cursor.getEventId(), beach.getStartTime(), PageRequest.of(0, 1));
+        Assert.assertEquals(1, firstPage.size());
+        Assert.assertEquals(beach, firstPage.get(0));
+
+        cursor = EventCursor.of(firstPage.get(0));
+        List<Event> secondPage = eventRepository.findPageAfterAndStartTimeLessThanEqual(cursor.getStartTime(), cursor.getEventId(), beach.getStartTime(), PageRequest.of(0, 1));
+        Assert.assertEquals(1, secondPage.size());
+        Assert.assertEquals(jumping, secondPage.get(0));
+
+        cursor = EventCursor.of(secondPage.get(0));
+        Assert.assertEquals(0, eventRepository.findPageAfterAndStartTimeLessThanEqual(cursor.getStartTime(), cursor.getEventId(), beach.getStartTime(), PageRequest.of(0, 1)).size());
+    }
+
+    @Test
+    public void canStreamEventsOrderedByStartTime(){
+        Event beach = new Event("beach", "Entebbe", LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(3), LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(3).plusHours(2), samuel);
+        Event jumping = new Event("jumping", "Jinja", LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(2), LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(2).plusHours(2), samuel);
+
+        entityManager.persist(beach);
+        entityManager.persist(jumping);
+        entityManager.flush();
+
+        List<Event> streamed;
+        try(Stream<Event> events = eventRepository.streamAll()){
+            streamed = events.collect(Collectors.toList());
+        }
+        Assert.assertEquals(eventRepository.count(), streamed.size());
+        Assert.assertTrue(streamed.indexOf(jumping) < streamed.indexOf(beach));
+        for(int i = 1; i < streamed.size(); i++){
+            Assert.assertFalse(streamed.get(i).getStartTime().isBefore(streamed.get(i - 1).getStartTime()));
+        }
+    }
+
+    @Test
+    public void canFindUsersWithOverlappingEventsAndAddParticipantsInOneStatement(){
+        LocalDateTime start = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(3);
+        Event lunch = new Event("lunch", "Kampala", start, start.plusHours(2), samuel);
+        Event meeting = new Event("meeting", "Kampala", start.plusHours(1), start.plusHours(3), bruce);
+        Event dinner = new Event("dinner", "Kampala", start.plusHours(2), start.plusHours(4), samuel);
+        entityManager.persist(lunch);
+        entityManager.persist(meeting);
+        entityManager.persist(dinner);
+        entityManager.flush();
+        eventRepository.addParticipants(lunch.getEventId(), Collections.singletonList(male.getUserId()));
+
+        List<Integer> candidates = Arrays.asList(samuel.getUserId(), male.getUserId(), bruce.getUserId());
+        List<Integer> conflicting = eventRepository.findUsersWithEventsOverlapping(candidates, meeting.getEventId(), EventStatus.CANCELLED.ordinal(), meeting.getStartTime(), meeting.getEndTime());
+        // samuel created an overlapping event, male attends one and the meeting itself does not count for bruce
+        Assert.assertEquals(new HashSet<>(Arrays.asList(samuel.getUserId(), male.getUserId())), new HashSet<>(conflicting));
+
+        // events that only touch at their ends do not overlap
+        Assert.assertTrue(eventRepository.findUsersWithEventsOverlapping(candidates, dinner.getEventId(), EventStatus.CANCELLED.ordinal(), start.plusHours(4), start.plusHours(5)).isEmpty());
+
+        Assert.assertEquals(2, eventRepository.addParticipants(meeting.getEventId(), Arrays.asList(male.getUserId(), bruce.getUserId())));
+        Assert.assertEquals(0, eventRepository.addParticipants(meeting.getEventId(), Collections.singletonList(bruce.getUserId())));
+        Assert.assertEquals(new HashSet<>(Arrays.asList(male.getUserId(), bruce.getUserId())), new HashSet<>(eventRepository.findParticipantIds(meeting.getEventId(), candidates)));
+    }
+
+    // the date queries as the service runs them, in one page large enough for every event in the tests
+
+    private List<Event> eventsBetween(LocalDateTime dateFrom, LocalDateTime dateTo){
+        EventCursor cursor = EventCursor.startingAt(dateFrom);
+        return eventRepository.findPageAfterAndStartTimeLessThanEqual(cursor.getStartTime(), cursor.getEventId(), dateTo, PageRequest.of(0, 100));
+    }
+
+    private List<Event> eventsAfter(LocalDateTime date){
+        EventCursor cursor = EventCursor.after(date);
+        return eventRepository.findPageAfter(cursor.getStartTime(), cursor.getEventId(), PageRequest.of(0, 100));
+    }
+
+    private List<Event> eventsBefore(LocalDateTime date){
+        EventCursor cursor = EventCursor.first();
+        return eventRepository.findPageAfterAndStartTimeLessThan(cursor.getStartTime(), cursor.getEventId(), date, PageRequest.of(0, 100));
+    }
+
 }
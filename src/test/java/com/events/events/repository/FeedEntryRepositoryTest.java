@@ -0,0 +1,310 @@
+package com.events.events.repository;
+
+import com.events.events.EventsApplication;
+import com.events.events.config.database.JPAConfiguration;
+import com.events.events.models.Event;
+import com.events.events.models.EventCursor;
+import com.events.events.models.EventPermission;
+import com.events.events.models.EventStatus;
+import com.events.events.models.Friend;
+import com.events.events.models.User;
+import com.events.events.services.AWSS3Service;
+import com.events.events.services.CalendarService;
+import com.events.events.services.EventSearchService;
+import com.events.events.services.EventService;
+import com.events.events.services.EventServiceImpl;
+import com.events.events.services.EventTimeIndexService;
+import com.events.events.services.FeedService;
+import com.events.events.services.FeedServiceImpl;
+import org.hibernate.Session;
+import org.hibernate.stat.Statistics;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ContextConfiguration(classes = {EventsApplication.class, JPAConfiguration.class})
+@Import(FeedEntryRepositoryTest.FeedEntryRepositoryTestContextConfiguration.class)
+public class FeedEntryRepositoryTest {
+
+    // the services reading the feed run against the database, the ones it doesn't touch are mocked
+    @TestConfiguration
+    static class FeedEntryRepositoryTestContextConfiguration {
+
+        @Bean
+        public FeedService feedService() {
+            return new FeedServiceImpl();
+        }
+
+        @Bean
+        public EventService eventService() {
+            return new EventServiceImpl();
+        }
+    }
+
+    @Autowired
+    private EventService eventService;
+
+    @MockBean
+    private JavaMailSender javaMailSender;
+
+    @MockBean
+    private AWSS3Service awss3Service;
+
+    @MockBean
+    private CalendarService calendarService;
+
+    @MockBean
+    private EventSearchService eventSearchService;
+
+    @MockBean
+    private EventTimeIndexService eventTimeIndexService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private FeedEntryRepository feedEntryRepository;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    private User samuel = new User("samuel", "gaamuwa", "sgaamuwa", "pass123", "sgaamuwa@email.com");
+    private User male = new User("michael", "male", "mmale", "pass123", "mmale@email.com");
+    private User bruce = new User("bruce", "bigirwenyka", "bbigirwenkya", "pass123", "bbigirwenkya@email.com");
+
+    @Before
+    public void setup(){
+        entityManager.persist(samuel);
+        entityManager.persist(male);
+        entityManager.persist(bruce);
+
+        // male follows samuel, bruce has only requested to follow samuel
+        Friend friend1 = new Friend(male, samuel);
+        friend1.setActive(true);
+        Friend friend2 = new Friend(bruce, samuel);
+
+        entityManager.persist(friend1);
+        entityManager.persist(friend2);
+        entityManager.flush();
+    }
+
+    @Test
+    public void testFanOutPushesEventToCreatorAndActiveFollowers(){
+        Event beach = new Event("beach", "Entebbe", LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(2), LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(2).plusHours(2), samuel);
+        entityManager.persist(beach);
+        entityManager.flush();
+
+        feedEntryRepository.fanOutEvent(beach.getEventId(), samuel.getUserId(), beach.getStartTime());
+
+        Assert.assertEquals(1, feedOf(samuel.getUserId()).size());
+        Assert.assertEquals(1, feedOf(male.getUserId()).size());
+        Assert.assertEquals(0, feedOf(bruce.getUserId()).size());
+    }
+
+    @Test
+    public void testFeedIsOrderedByStartTime(){
+        Event jumping = new Event("jumping", "Jinja", LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(3), LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(3).plusHours(2), samuel);
+        Event beach = new Event("beach", "Entebbe", LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(2), LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(2).plusHours(2), samuel);
+        entityManager.persist(jumping);
+        entityManager.persist(beach);
+        entityManager.flush();
+
+        feedEntryRepository.fanOutEvent(jumping.getEventId(), samuel.getUserId(), jumping.getStartTime());
+        feedEntryRepository.fanOutEvent(beach.getEventId(), samuel.getUserId(), beach.getStartTime());
+
+        List<Event> feed = feedOf(male.getUserId());
+        Assert.assertEquals(2, feed.size());
+        Assert.assertEquals("beach", feed.get(0).getTitle());
+        Assert.assertEquals("jumping", feed.get(1).getTitle());
+    }
+
+    @Test
+    public void testCanCopyAndRemoveEventsOfFollowee(){
+        Event beach = new Event("beach", "Entebbe", LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(2), LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(2).plusHours(2), samuel);
+        Event jumping = new Event("jumping", "Jinja", LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(3), LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(3).plusHours(2), samuel);
+        jumping.setEventStatus(EventStatus.CANCELLED);
+        entityManager.persist(beach);
+        entityManager.persist(jumping);
+        entityManager.flush();
+
+        feedEntryRepository.copyEventsOfFollowee(bruce.getUserId(), samuel.getUserId(), EventStatus.CANCELLED.ordinal());
+        // cancelled events are not copied into the feed
+        Assert.assertEquals(1, feedOf(bruce.getUserId()).size());
+
+        feedEntryRepository.deleteEventsOfFollowee(bruce.getUserId(), samuel.getUserId());
+        Assert.assertEquals(0, feedOf(bruce.getUserId()).size());
+    }
+
+    @Test
+    public void testEventsNotFannedOutArePulledForActiveFollowers(){
+        Event concert = new Event("concert", "Kololo", LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(2), LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(2).plusHours(2), samuel);
+        concert.setFannedOut(false);
+        entityManager.persist(concert);
+        entityManager.flush();
+
+        feedEntryRepository.addEntry(samuel.getUserId(), concert.getEventId(), concert.getStartTime());
+
+        Assert.assertEquals(1, feedOf(samuel.getUserId()).size());
+        // male actively follows samuel so the event is pulled into his feed, bruce's request is still pending
+        Assert.assertEquals(1, feedOf(male.getUserId()).size());
+        Assert.assertEquals(0, feedOf(bruce.getUserId()).size());
+    }
+
+    @Test
+    public void testOnlyEventsOfThePulledCreatorsArePulled(){
+        Event concert = new Event("concert", "Kololo", LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(2), LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(2).plusHours(2), samuel);
+        concert.setFannedOut(false);
+        entityManager.persist(concert);
+        entityManager.flush();
+
+        EventCursor cursor = EventCursor.first();
+        List<Event> feed = feedEntryRepository.findFeedForUser(male.getUserId(), Collections.singletonList(bruce.getUserId()), EventPermission.PUBLIC.ordinal(),
+                EventStatus.CANCELLED.ordinal(), cursor.getStartTime(), cursor.getEventId(), 200);
+        Assert.assertEquals(0, feed.size());
+    }
+
+    @Test
+    public void testEventPushedBeforeItsCreatorWasPulledIsReadOnce(){
+        Event concert = new Event("concert", "Kololo", LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(2), LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(2).plusHours(2), samuel);
+        entityManager.persist(concert);
+        entityManager.flush();
+        feedEntryRepository.fanOutEvent(concert.getEventId(), samuel.getUserId(), concert.getStartTime());
+
+        Assert.assertEquals(1, eventRepository.setFannedOutOfCreator(samuel.getUserId(), false));
+        entityManager.clear();
+
+        Assert.assertEquals(Collections.singletonList(samuel.getUserId()), eventRepository.findPulledCreatorIds());
+        Assert.assertEquals(1, feedOf(male.getUserId()).size());
+    }
+
+    @Test
+    public void testEventsOfCreatorArePushedToActiveFollowersWhenNoLongerPulled(){
+        Event concert = new Event("concert", "Kololo", LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(2), LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(2).plusHours(2), samuel);
+        concert.setFannedOut(false);
+        entityManager.persist(concert);
+        entityManager.flush();
+
+        Assert.assertEquals(1, feedEntryRepository.fanOutEventsOfCreator(samuel.getUserId(), EventStatus.CANCELLED.ordinal()));
+        eventRepository.setFannedOutOfCreator(samuel.getUserId(), true);
+
+        EventCursor cursor = EventCursor.first();
+        List<Event> feed = feedEntryRepository.findPushedFeedForUser(male.getUserId(), EventPermission.PUBLIC.ordinal(), cursor.getStartTime(), cursor.getEventId(), 200);
+        Assert.assertEquals(1, feed.size());
+        Assert.assertTrue(eventRepository.findPulledCreatorIds().isEmpty());
+    }
+
+    @Test
+    public void testFeedPagesStartAfterTheCursor(){
+        Event jumping = new Event("jumping", "Jinja", LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(3), LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(3).plusHours(2), samuel);
+        Event beach = new Event("beach", "Entebbe", LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(2), LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(2).plusHours(2), samuel);
+        entityManager.persist(jumping);
+        entityManager.persist(beach);
+        entityManager.flush();
+
+        feedEntryRepository.fanOutEvent(jumping.getEventId(), samuel.getUserId(), jumping.getStartTime());
+        feedEntryRepository.fanOutEvent(beach.getEventId(), samuel.getUserId(), beach.getStartTime());
+
+        EventCursor first = EventCursor.first();
+        List<Event> firstPage = feedEntryRepository.findPushedFeedForUser(male.getUserId(), EventPermission.PUBLIC.ordinal(), first.getStartTime(), first.getEventId(), 1);
+        Assert.assertEquals(1, firstPage.size());
+        Assert.assertEquals("beach", firstPage.get(0).getTitle());
+
+        EventCursor next = EventCursor.of(firstPage.get(0));
+        List<Event> secondPage = feedEntryRepository.findPushedFeedForUser(male.getUserId(), EventPermission.PUBLIC.ordinal(), next.getStartTime(), next.getEventId(), 1);
+        Assert.assertEquals(1, secondPage.size());
+        Assert.assertEquals("jumping", secondPage.get(0).getTitle());
+    }
+
+    @Test
+    public void testFeedOnlyHasPrivateEventsTheUserIsInvitedTo(){
+        Event dinner = new Event("dinner", "Kampala", LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(2), LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(2).plusHours(2), samuel);
+        Event party = new Event("party", "Kampala", LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(3), LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(3).plusHours(2), samuel);
+        dinner.setEventPermission(EventPermission.PRIVATE);
+        party.setEventPermission(EventPermission.PRIVATE);
+        entityManager.persist(dinner);
+        entityManager.persist(party);
+        male.setInvites(new ArrayList<>(Arrays.asList(dinner)));
+        entityManager.persist(male);
+        entityManager.flush();
+
+        feedEntryRepository.fanOutEvent(dinner.getEventId(), samuel.getUserId(), dinner.getStartTime());
+        feedEntryRepository.fanOutEvent(party.getEventId(), samuel.getUserId(), party.getStartTime());
+
+        List<Event> feed = feedOf(male.getUserId());
+        Assert.assertEquals(1, feed.size());
+        Assert.assertEquals("dinner", feed.get(0).getTitle());
+        // the creator always sees their own private events
+        Assert.assertEquals(2, feedOf(samuel.getUserId()).size());
+    }
+
+    @Test
+    public void testStatementsToReadAndWriteOutAFeedPageDoNotGrowWithTheNumberOfEvents(){
+        // both pages stay within one association batch, a statement per event would still show up as a difference
+        Assert.assertEquals(statementsToReadAndWriteOutFeed(5), statementsToReadAndWriteOutFeed(40));
+    }
+
+    private long statementsToReadAndWriteOutFeed(int numberOfEvents){
+        List<Event> invites = new ArrayList<>();
+        List<Event> attending = new ArrayList<>();
+        for(int i = 0; i < numberOfEvents; i++){
+            Event event = new Event("event " + i, "Kampala", LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(2).plusMinutes(i), LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(2).plusHours(2), samuel);
+            event.setEventPermission(i % 2 == 0 ? EventPermission.PRIVATE : EventPermission.PUBLIC);
+            entityManager.persist(event);
+            entityManager.flush();
+            feedEntryRepository.fanOutEvent(event.getEventId(), samuel.getUserId(), event.getStartTime());
+            invites.add(event);
+            attending.add(event);
+        }
+        // male is invited to every event and bruce attends them, so every event has participants and invitees to load
+        User invitee = entityManager.find(User.class, male.getUserId());
+        invitee.setInvites(invites);
+        User participant = entityManager.find(User.class, bruce.getUserId());
+        participant.setAttending(attending);
+        entityManager.flush();
+        entityManager.clear();
+
+        Statistics statistics = entityManager.getEntityManager().unwrap(Session.class).getSessionFactory().getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+        List<Event> feed = eventService.getAllEventsForUser(male.getUsername(), null, 200).getEvents();
+        // everything the JSON of a feed page reads from each event
+        for(Event event : feed){
+            event.getCreator().getUsername();
+            event.getParticipants().size();
+            event.getInvitees().size();
+        }
+        long statements = statistics.getPrepareStatementCount();
+        statistics.setStatisticsEnabled(false);
+        Assert.assertFalse(feed.isEmpty());
+        return statements;
+    }
+
+    private List<Event> feedOf(int userId){
+        EventCursor cursor = EventCursor.first();
+        // samuel's events are pulled when they aren't fanned out
+        return feedEntryRepository.findFeedForUser(userId, Collections.singletonList(samuel.getUserId()), EventPermission.PUBLIC.ordinal(),
+                EventStatus.CANCELLED.ordinal(), cursor.getStartTime(), cursor.getEventId(), 200);
+    }
+}
@@ -15,6 +15,7 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import java.util.Arrays;
 import java.util.List;
 
 @RunWith(SpringRunner.class)
@@ -112,4 +113,56 @@ public class FriendRepositoryTest {
         Assert.assertEquals(returnedFriends.size(), 0);
     }
 
+    @Test
+    public void testCanRetrieveConnectionsBetweenUserAndOthersInBothDirections(){
+        Friend friend1 = new Friend(samuel, male);
+        Friend friend2 = new Friend(male, samuel);
+        Friend friend3 = new Friend(bruce, samuel);
+        Friend friend4 = new Friend(peace, joy);
+
+        friend1.setActive(true);
+        friend2.setActive(true);
+
+        entityManager.persist(friend1);
+        entityManager.persist(friend2);
+        entityManager.persist(friend3);
+        entityManager.persist(friend4);
+        entityManager.flush();
+
+        List<Object[]> connections = friendRepository.findConnections(samuel.getUserId(), Arrays.asList(male.getUserId(), bruce.getUserId(), peace.getUserId(), -1));
+
+        // one row for each user that exists, the row between peace and joy does not involve samuel
+        Assert.assertEquals(3, connections.size());
+        for(Object[] connection : connections){
+            int id = ((Number) connection[0]).intValue();
+            if(id == male.getUserId()){
+                Assert.assertEquals(true, connection[1]);
+                Assert.assertEquals(true, connection[2]);
+            }else if(id == bruce.getUserId()){
+                Assert.assertNull(connection[1]);
+                Assert.assertEquals(false, connection[2]);
+            }else{
+                Assert.assertEquals(peace.getUserId(), id);
+                Assert.assertNull(connection[1]);
+                Assert.assertNull(connection[2]);
+            }
+        }
+    }
+
+    @Test
+    public void testFollowOrRequestExistsOnlyInItsDirection(){
+        Friend friend1 = new Friend(samuel, male);
+        Friend friend2 = new Friend(bruce, samuel);
+        friend1.setActive(true);
+
+        entityManager.persist(friend1);
+        entityManager.persist(friend2);
+        entityManager.flush();
+
+        Assert.assertTrue(friendRepository.existsFollowOrRequest(samuel.getUserId(), male.getUserId()));
+        // a pending request counts as well
+        Assert.assertTrue(friendRepository.existsFollowOrRequest(bruce.getUserId(), samuel.getUserId()));
+        Assert.assertFalse(friendRepository.existsFollowOrRequest(male.getUserId(), samuel.getUserId()));
+    }
+
 }
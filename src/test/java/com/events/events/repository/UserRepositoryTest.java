@@ -2,6 +2,7 @@ package com.events.events.repository;
 
 import com.events.events.EventsApplication;
 import com.events.events.config.database.JPAConfiguration;
+import com.events.events.config.database.SchemaMigrationConfiguration;
 import com.events.events.models.User;
 import org.junit.Assert;
 import org.junit.Test;
@@ -13,13 +14,15 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 @RunWith(SpringRunner.class)
 @DataJpaTest
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
-@ContextConfiguration(classes = {EventsApplication.class, JPAConfiguration.class})
+@ContextConfiguration(classes = {EventsApplication.class, JPAConfiguration.class, SchemaMigrationConfiguration.class})
 public class UserRepositoryTest {
 
     @Autowired
@@ -40,9 +43,27 @@ public class UserRepositoryTest {
     }
 
     @Test
-    public void testFindBySearchTerm(){
-        List<User> users = userRepository.findBySearchTerm("aamu");
-        Assert.assertEquals(3, users.size());
+    public void testSearchBySimilarity(){
+        List<User> users = userRepository.searchBySimilarity("aamu", "%aamu%", 20);
+        Assert.assertEquals(Arrays.asList(91, 94, 95), users.stream().map(User::getUserId).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testSearchBySimilarityRanksTheClosestMatchFirst(){
+        User furthest = new User("merabinski", "nantale", "tnantale", "pass123", "tnantale@email.com");
+        User closer = new User("merabu", "kato", "jkato", "pass123", "jkato@email.com");
+        entityManager.persist(furthest);
+        entityManager.persist(closer);
+        entityManager.flush();
+
+        List<User> users = userRepository.searchBySimilarity("merab", "%merab%", 20);
+        Assert.assertEquals(Arrays.asList(94, closer.getUserId(), furthest.getUserId()), users.stream().map(User::getUserId).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testSearchBySimilarityLimitsTheResults(){
+        List<User> users = userRepository.searchBySimilarity("aamu", "%aamu%", 2);
+        Assert.assertEquals(Arrays.asList(91, 94), users.stream().map(User::getUserId).collect(Collectors.toList()));
     }
 
 }
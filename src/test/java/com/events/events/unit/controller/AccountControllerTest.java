@@ -2,23 +2,36 @@ package com.events.events.unit.controller;
 
 import com.events.events.EventsApplication;
 import com.events.events.config.security.SecurityConfiguration;
+import com.events.events.config.security.SecurityConstants;
+import com.events.events.config.security.TokenHashes;
 import com.events.events.controllers.AccountController;
 import com.events.events.models.User;
+import com.events.events.models.UserAccountDetails;
+import com.events.events.services.TokenRevocationService;
 import com.events.events.services.UserService;
+import com.jayway.jsonpath.JsonPath;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatchers;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -35,6 +48,12 @@ public class AccountControllerTest {
     @MockBean
     private UserService userService;
 
+    @MockBean
+    private TokenRevocationService tokenRevocationService;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
     private User user, user2;
 
 
@@ -102,4 +121,90 @@ public class AccountControllerTest {
                 .andDo(print())
                 .andExpect(status().isBadRequest());
     }
+
+    @Test
+    public void testLoginReturnsATokenForTheUserLoadedOnce() throws Exception {
+        User stored = new User("samuel", "gaamuwa", "sgaamuwa", passwordEncoder.encode("pass123"), "sgaamuwa@gmail.com");
+        stored.setUserId(1);
+        stored.setEnabled(true);
+        Mockito.when(userService.loadUserByUsername("sgaamuwa")).thenReturn(new UserAccountDetails(stored));
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders
+                .post("/v1/account/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\n" +
+                        "\t\"username\" : \"sgaamuwa\",\n" +
+                        "\t\"password\" : \"pass123\"\n" +
+                        "}")
+                .characterEncoding("utf-8"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.user.username").value("sgaamuwa"))
+                .andExpect(jsonPath("$.user.password").doesNotExist())
+                .andExpect(header().exists(SecurityConstants.HEADER_STRING.getConstant()))
+                .andReturn();
+
+        String token = JsonPath.read(result.getResponse().getContentAsString(), "$.token");
+        Assert.assertEquals(SecurityConstants.TOKEN_PREFIX.getConstant() + token,
+                result.getResponse().getHeader(SecurityConstants.HEADER_STRING.getConstant()));
+        Claims claims = Jwts.parser()
+                .setSigningKey(SecurityConstants.SECRETKEY.getConstant())
+                .parseClaimsJws(token)
+                .getBody();
+        Assert.assertEquals("sgaamuwa", claims.getSubject());
+        Assert.assertEquals(1, claims.get(SecurityConstants.USER_ID_CLAIM.getConstant(), Integer.class).intValue());
+        // the user checked against the password is the one written back, it isn't looked up a second time
+        Mockito.verify(userService, Mockito.times(1)).loadUserByUsername("sgaamuwa");
+        Mockito.verify(userService, Mockito.never()).findUserByUsername(ArgumentMatchers.anyString());
+        Mockito.verify(userService, Mockito.never()).getUserById(ArgumentMatchers.anyInt());
+    }
+
+    @Test
+    public void testLoginWithTheWrongPasswordIsUnauthorized() throws Exception {
+        User stored = new User("samuel", "gaamuwa", "sgaamuwa", passwordEncoder.encode("pass123"), "sgaamuwa@gmail.com");
+        stored.setEnabled(true);
+        Mockito.when(userService.loadUserByUsername("sgaamuwa")).thenReturn(new UserAccountDetails(stored));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                .post("/v1/account/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\n" +
+                        "\t\"username\" : \"sgaamuwa\",\n" +
+                        "\t\"password\" : \"wrong\"\n" +
+                        "}")
+                .characterEncoding("utf-8"))
+                .andDo(print())
+                .andExpect(status().isUnauthorized())
+                .andExpect(header().doesNotExist(SecurityConstants.HEADER_STRING.getConstant()));
+    }
+
+    @Test
+    public void testLogoutRevokesTheToken() throws Exception {
+        String token = Jwts.builder()
+                .setSubject("sgaamuwa")
+                .claim(SecurityConstants.USER_ID_CLAIM.getConstant(), 1)
+                .signWith(SignatureAlgorithm.HS512, SecurityConstants.SECRETKEY.getConstant())
+                .compact();
+        mockMvc.perform(MockMvcRequestBuilders
+                .post("/v1/account/logout")
+                .header(SecurityConstants.HEADER_STRING.getConstant(), SecurityConstants.TOKEN_PREFIX.getConstant() + token))
+                .andDo(print())
+                .andExpect(status().isOk());
+        Mockito.verify(tokenRevocationService).revokeToken(token);
+    }
+
+    @Test
+    public void testRevokedTokenIsRejected() throws Exception {
+        String token = Jwts.builder()
+                .setSubject("sgaamuwa")
+                .signWith(SignatureAlgorithm.HS512, SecurityConstants.SECRETKEY.getConstant())
+                .compact();
+        Mockito.when(tokenRevocationService.isRevoked(ArgumentMatchers.aryEq(TokenHashes.hash(token)), ArgumentMatchers.any(), ArgumentMatchers.any())).thenReturn(true);
+        mockMvc.perform(MockMvcRequestBuilders
+                .post("/v1/account/logout")
+                .header(SecurityConstants.HEADER_STRING.getConstant(), SecurityConstants.TOKEN_PREFIX.getConstant() + token))
+                .andDo(print())
+                .andExpect(status().isForbidden());
+        Mockito.verify(tokenRevocationService, Mockito.never()).revokeToken(token);
+    }
 }
@@ -3,7 +3,11 @@ package com.events.events.unit.controller;
 import com.events.events.EventsApplication;
 import com.events.events.config.security.SecurityConfiguration;
 import com.events.events.controllers.UserController;
+import com.events.events.models.FileDownload;
 import com.events.events.models.User;
+import com.events.events.models.UserSuggestion;
+import com.events.events.services.TokenRevocationService;
+import com.events.events.services.TypeaheadService;
 import com.events.events.services.UserService;
 import org.junit.Before;
 import org.junit.Test;
@@ -12,16 +16,21 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
+import java.io.ByteArrayInputStream;
 import java.util.Arrays;
 
 import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.hasSize;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
@@ -40,6 +49,12 @@ public class UserControllerTest {
     @MockBean
     private UserService userService;
 
+    @MockBean
+    private TypeaheadService typeaheadService;
+
+    @MockBean
+    private TokenRevocationService tokenRevocationService;
+
     private User user, user2;
 
 
@@ -83,6 +98,37 @@ public class UserControllerTest {
                 .andExpect(content().string(containsString("sgaamuwa")));
     }
 
+    @Test
+    @WithMockUser
+    public void testReturnsSuggestionsForTypedPrefix() throws Exception{
+        Mockito.when(typeaheadService.suggestUsers("sam", 10)).thenReturn(Arrays.asList(new UserSuggestion(91, "Samuel Gaamuwa")));
+        mockMvc.perform(MockMvcRequestBuilders
+                .get("/v1/users/typeahead?q=sam")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].userId", is(91)))
+                .andExpect(jsonPath("$[0].displayName", is("Samuel Gaamuwa")));
+    }
 
+    @Test
+    @WithMockUser
+    public void testStreamsRequestedRangeOfImage() throws Exception{
+        Mockito.when(userService.downloadUserImage(1, HttpRange.parseRanges("bytes=2-4"))).thenReturn(
+                new FileDownload(new ByteArrayInputStream(new byte[]{3, 4, 5}), 10, "image/jpeg", "\"etag\"", 2L, 4L));
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders
+                .get("/v1/users/1/downloadImage")
+                .header(HttpHeaders.RANGE, "bytes=2-4"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+                .andDo(print())
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 2-4/10"))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"etag\""))
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "image/jpeg"))
+                .andExpect(content().bytes(new byte[]{3, 4, 5}));
+    }
 
 }
@@ -0,0 +1,44 @@
+package com.events.events.unit.security;
+
+import com.events.events.config.security.BloomFilter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+public class BloomFilterTest {
+
+    @Test
+    public void testContainsEveryKeyAdded() throws NoSuchAlgorithmException {
+        BloomFilter filter = new BloomFilter(1000, 0.01);
+        for(int i = 0; i < 1000; i++){
+            filter.put(digest("token " + i));
+        }
+        for(int i = 0; i < 1000; i++){
+            Assert.assertTrue(filter.mightContain(digest("token " + i)));
+        }
+        Assert.assertEquals(1000, filter.getInsertions());
+    }
+
+    @Test
+    public void testFalsePositivesStayCloseToTheRate() throws NoSuchAlgorithmException {
+        BloomFilter filter = new BloomFilter(1000, 0.01);
+        for(int i = 0; i < 1000; i++){
+            filter.put(digest("revoked " + i));
+        }
+        int falsePositives = 0;
+        for(int i = 0; i < 10000; i++){
+            if(filter.mightContain(digest("valid " + i))){
+                falsePositives++;
+            }
+        }
+        // about 100 are expected, leave room for chance
+        Assert.assertTrue("Too many false positives: " + falsePositives, falsePositives < 250);
+    }
+
+    private static byte[] digest(String key) throws NoSuchAlgorithmException {
+        return MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+    }
+}
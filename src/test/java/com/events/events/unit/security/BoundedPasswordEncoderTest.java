@@ -0,0 +1,88 @@
+package com.events.events.unit.security;
+
+import com.events.events.config.security.BoundedPasswordEncoder;
+import com.events.events.error.ServiceUnavailableException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class BoundedPasswordEncoderTest {
+
+    private ExecutorService callers = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown(){
+        callers.shutdownNow();
+    }
+
+    @Test
+    public void testHashesAndChecksPasswordsWithTheDelegate(){
+        BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(new BCryptPasswordEncoder(4), 1, 1, 2);
+        String hash = encoder.encode("password");
+        Assert.assertTrue(encoder.matches("password", hash));
+        Assert.assertFalse(encoder.matches("wrong password", hash));
+        encoder.destroy();
+    }
+
+    @Test
+    public void testRejectsRequestsWhenTheQueueIsFull() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(new BlockingPasswordEncoder(started, release), 1, 1, 5);
+
+        // one password being hashed and one waiting fill the pool and the queue
+        callers.submit(() -> encoder.encode("first"));
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        callers.submit(() -> encoder.encode("second"));
+        while (encoder.getQueueDepth() < 1){
+            Thread.sleep(5);
+        }
+
+        try {
+            encoder.encode("third");
+            Assert.fail("Expected the request to be rejected");
+        } catch (ServiceUnavailableException e) {
+            Assert.assertEquals(5, e.getRetryAfterSeconds());
+        }
+        Assert.assertEquals(1, encoder.getRejectedCount());
+
+        release.countDown();
+        Assert.assertEquals("encoded fourth", encoder.encode("fourth"));
+        encoder.destroy();
+    }
+
+    private static class BlockingPasswordEncoder implements PasswordEncoder {
+
+        private final CountDownLatch started;
+
+        private final CountDownLatch release;
+
+        BlockingPasswordEncoder(CountDownLatch started, CountDownLatch release) {
+            this.started = started;
+            this.release = release;
+        }
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "encoded " + rawPassword;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return encode(rawPassword).equals(encodedPassword);
+        }
+    }
+}
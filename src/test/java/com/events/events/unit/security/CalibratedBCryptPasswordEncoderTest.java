@@ -0,0 +1,31 @@
+package com.events.events.unit.security;
+
+import com.events.events.config.security.CalibratedBCryptPasswordEncoder;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+public class CalibratedBCryptPasswordEncoderTest {
+
+    @Test
+    public void testUpgradesHashesWithAnyOtherStrength(){
+        CalibratedBCryptPasswordEncoder encoder = new CalibratedBCryptPasswordEncoder(5);
+        Assert.assertFalse(encoder.upgradeEncoding(encoder.encode("password")));
+        Assert.assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(4).encode("password")));
+        Assert.assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(6).encode("password")));
+        Assert.assertFalse(encoder.upgradeEncoding("not a bcrypt hash"));
+        Assert.assertFalse(encoder.upgradeEncoding(null));
+    }
+
+    @Test
+    public void testCalibrationStaysWithinTheBounds(){
+        Assert.assertEquals(4, CalibratedBCryptPasswordEncoder.calibrate(0, 4, 6).getStrength());
+        Assert.assertEquals(6, CalibratedBCryptPasswordEncoder.calibrate(60_000, 4, 6).getStrength());
+    }
+
+    @Test
+    public void testChecksPasswordsHashedWithAnotherStrength(){
+        CalibratedBCryptPasswordEncoder encoder = new CalibratedBCryptPasswordEncoder(5);
+        Assert.assertTrue(encoder.matches("password", new BCryptPasswordEncoder(4).encode("password")));
+    }
+}
@@ -0,0 +1,105 @@
+package com.events.events.unit.security;
+
+import com.events.events.config.security.TokenHashes;
+import com.events.events.config.security.VerifiedTokenCache;
+import com.events.events.models.AuthenticatedUser;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Date;
+
+public class VerifiedTokenCacheTest {
+
+    private static final long HOUR = 3_600_000;
+
+    private final SettableClock clock = new SettableClock();
+
+    @Test
+    public void testReturnsUserOfVerifiedToken(){
+        VerifiedTokenCache cache = new VerifiedTokenCache(10, HOUR, clock);
+        cache.put(TokenHashes.hash("token"), new AuthenticatedUser(1, "sgaamuwa"), null, new Date(clock.millis() + HOUR));
+        Assert.assertEquals(new AuthenticatedUser(1, "sgaamuwa"), userOf(cache, "token"));
+        Assert.assertNull(userOf(cache, "another token"));
+    }
+
+    @Test
+    public void testForgetsTokensOnceTheyExpire(){
+        VerifiedTokenCache cache = new VerifiedTokenCache(10, HOUR, clock);
+        cache.put(TokenHashes.hash("expired"), new AuthenticatedUser(1, "sgaamuwa"), null, new Date(clock.millis() - 1));
+        cache.put(TokenHashes.hash("expiring"), new AuthenticatedUser(1, "sgaamuwa"), null, new Date(clock.millis() + 50));
+        Assert.assertNull(userOf(cache, "expired"));
+        Assert.assertEquals(new AuthenticatedUser(1, "sgaamuwa"), userOf(cache, "expiring"));
+
+        clock.advance(50);
+        Assert.assertNull(userOf(cache, "expiring"));
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testKeepsTokensNoLongerThanTheMaximumAge(){
+        VerifiedTokenCache cache = new VerifiedTokenCache(10, 50, clock);
+        cache.put(TokenHashes.hash("token"), new AuthenticatedUser(1, "sgaamuwa"), null, null);
+        clock.advance(49);
+        Assert.assertEquals(new AuthenticatedUser(1, "sgaamuwa"), userOf(cache, "token"));
+
+        clock.advance(1);
+        Assert.assertNull(userOf(cache, "token"));
+    }
+
+    @Test
+    public void testNeverHoldsMoreThanTheMaximumSize(){
+        VerifiedTokenCache cache = new VerifiedTokenCache(100, HOUR, clock);
+        for(int i = 0; i < 1000; i++){
+            cache.put(TokenHashes.hash("token" + i), new AuthenticatedUser(i, "user" + i), null, null);
+            Assert.assertTrue(cache.size() <= 100);
+        }
+        Assert.assertEquals(new AuthenticatedUser(999, "user999"), userOf(cache, "token999"));
+    }
+
+    @Test
+    public void testKeepsWhenTheTokenWasIssued(){
+        VerifiedTokenCache cache = new VerifiedTokenCache(10, HOUR, clock);
+        Date issuedAt = new Date(clock.millis() - HOUR);
+        cache.put(TokenHashes.hash("token"), new AuthenticatedUser(1, "sgaamuwa"), issuedAt, null);
+        Assert.assertEquals(issuedAt, cache.get(TokenHashes.hash("token")).getIssuedAt());
+    }
+
+    private AuthenticatedUser userOf(VerifiedTokenCache cache, String token){
+        VerifiedTokenCache.VerifiedToken verified = cache.get(TokenHashes.hash(token));
+        return verified == null ? null : verified.getUser();
+    }
+
+    // a clock that only moves when the test moves it
+    private static class SettableClock extends Clock {
+
+        private long millis = Instant.parse("2030-06-01T10:00:00Z").toEpochMilli();
+
+        private void advance(long byMillis){
+            millis += byMillis;
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
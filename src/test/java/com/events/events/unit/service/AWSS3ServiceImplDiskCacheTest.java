@@ -0,0 +1,142 @@
+package com.events.events.unit.service;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.events.events.models.FileDownload;
+import com.events.events.services.AWSS3Service;
+import com.events.events.services.AWSS3ServiceImpl;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.HttpRange;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+
+@RunWith(SpringRunner.class)
+@TestPropertySource(properties = {
+        "aws.s3.bucket=events-images",
+        "aws.s3.disk-cache.enabled=true",
+        "aws.s3.disk-cache.directory=${java.io.tmpdir}/events-image-cache-test",
+        "aws.s3.disk-cache.max-bytes=1000",
+        "aws.s3.disk-cache.max-file-bytes=8"
+})
+public class AWSS3ServiceImplDiskCacheTest {
+
+    @TestConfiguration
+    static class AWSS3ServiceImplDiskCacheTestContextConfiguration {
+
+        @Bean
+        public AWSS3Service awss3Service() {
+            return new AWSS3ServiceImpl();
+        }
+    }
+
+    @Autowired
+    private AWSS3Service awss3Service;
+
+    @MockBean
+    private AmazonS3 amazonS3;
+
+    // the cache lives as long as the context, so every test reads files of its own
+    private final String fileName = "userImages/" + UUID.randomUUID() + ".png";
+
+    @Test
+    public void testMissIsSentFromS3AndTheNextReadFromTheDisk() throws IOException {
+        stubObject(new byte[]{1, 2, 3, 4, 5});
+
+        Assert.assertArrayEquals(new byte[]{1, 2, 3, 4, 5}, read(Collections.emptyList()));
+        Assert.assertArrayEquals(new byte[]{1, 2, 3, 4, 5}, read(Collections.emptyList()));
+
+        Mockito.verify(amazonS3, Mockito.times(1)).getObject("events-images", fileName);
+        Mockito.verify(amazonS3, Mockito.never()).getObjectMetadata("events-images", fileName);
+    }
+
+    @Test
+    public void testRangeOfACachedFileIsSentFromTheDisk() throws IOException {
+        stubObject(new byte[]{1, 2, 3, 4, 5});
+        read(Collections.emptyList());
+
+        try (FileDownload download = awss3Service.openFile(fileName, HttpRange.parseRanges("bytes=1-2"))) {
+            Assert.assertTrue(download.isPartial());
+            Assert.assertEquals("bytes 1-2/5", download.getContentRange());
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            download.writeTo(outputStream);
+            Assert.assertArrayEquals(new byte[]{2, 3}, outputStream.toByteArray());
+        }
+        Mockito.verify(amazonS3, Mockito.never()).getObject(any(GetObjectRequest.class));
+        Mockito.verify(amazonS3, Mockito.never()).getObjectMetadata("events-images", fileName);
+    }
+
+    @Test
+    public void testRangeOfAFileNotCachedIsReadFromS3WithoutCopyingTheWholeFile() throws IOException {
+        Mockito.when(amazonS3.getObjectMetadata("events-images", fileName)).thenReturn(metadata(5));
+        Mockito.when(amazonS3.getObject(any(GetObjectRequest.class))).thenAnswer(invocation -> s3Object(new byte[]{4, 5}, 5));
+
+        try (FileDownload download = awss3Service.openFile(fileName, HttpRange.parseRanges("bytes=-2"))) {
+            Assert.assertEquals("bytes 3-4/5", download.getContentRange());
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            download.writeTo(outputStream);
+            Assert.assertArrayEquals(new byte[]{4, 5}, outputStream.toByteArray());
+        }
+        ArgumentCaptor<GetObjectRequest> argument = ArgumentCaptor.forClass(GetObjectRequest.class);
+        Mockito.verify(amazonS3).getObject(argument.capture());
+        Assert.assertArrayEquals(new long[]{3, 4}, argument.getValue().getRange());
+        Mockito.verify(amazonS3, Mockito.times(1)).getObjectMetadata("events-images", fileName);
+        Mockito.verify(amazonS3, Mockito.never()).getObject("events-images", fileName);
+    }
+
+    @Test
+    public void testFilesAboveTheLimitAreAlwaysReadFromS3WithoutLookingUpTheirLength() throws IOException {
+        stubObject(new byte[10]);
+
+        read(Collections.emptyList());
+        read(Collections.emptyList());
+
+        Mockito.verify(amazonS3, Mockito.times(2)).getObject("events-images", fileName);
+        Mockito.verify(amazonS3, Mockito.never()).getObjectMetadata("events-images", fileName);
+    }
+
+    private byte[] read(List<HttpRange> ranges) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (FileDownload download = awss3Service.openFile(fileName, ranges)) {
+            download.writeTo(outputStream);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private void stubObject(byte[] content){
+        Mockito.when(amazonS3.getObject("events-images", fileName)).thenAnswer(invocation -> s3Object(content, content.length));
+    }
+
+    private S3Object s3Object(byte[] content, long length){
+        S3Object s3Object = new S3Object();
+        s3Object.setObjectMetadata(metadata(length));
+        s3Object.setObjectContent(new ByteArrayInputStream(content));
+        return s3Object;
+    }
+
+    private ObjectMetadata metadata(long length){
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(length);
+        metadata.setContentType("image/png");
+        metadata.setHeader("ETag", "etag");
+        return metadata;
+    }
+}
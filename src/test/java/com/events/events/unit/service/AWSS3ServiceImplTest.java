@@ -0,0 +1,219 @@
+package com.events.events.unit.service;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.*;
+import com.events.events.error.RangeNotSatisfiableException;
+import com.events.events.models.FileDownload;
+import com.events.events.services.AWSS3Service;
+import com.events.events.services.AWSS3ServiceImpl;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.HttpRange;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+
+@RunWith(SpringRunner.class)
+@TestPropertySource(properties = {
+        "aws.s3.bucket=events-images",
+        "aws.s3.multipart.threshold-bytes=10",
+        "aws.s3.multipart.part-size-bytes=4",
+        "aws.s3.multipart.min-part-size-bytes=4",
+        "aws.s3.multipart.threads=2",
+        "aws.s3.multipart.queue-capacity=1"
+})
+public class AWSS3ServiceImplTest {
+
+    @TestConfiguration
+    static class AWSS3ServiceImplTestContextConfiguration {
+
+        @Bean
+        public AWSS3Service awss3Service() {
+            return new AWSS3ServiceImpl();
+        }
+    }
+
+    @Autowired
+    private AWSS3Service awss3Service;
+
+    @MockBean
+    private AmazonS3 amazonS3;
+
+    @Test
+    public void testPartsSmallerThanS3AcceptsStopTheStartup(){
+        AWSS3ServiceImpl misconfigured = new AWSS3ServiceImpl();
+        ReflectionTestUtils.setField(misconfigured, "partSize", 1024 * 1024);
+        ReflectionTestUtils.setField(misconfigured, "minPartSize", 5 * 1024 * 1024);
+
+        Throwable exception = assertThrows(IllegalStateException.class, misconfigured::setup);
+        Assert.assertEquals("aws.s3.multipart.part-size-bytes is 1048576 but S3 needs parts of at least 5242880 bytes", exception.getMessage());
+    }
+
+    @Test
+    public void testUploadStreamsFileWithItsLengthAndType(){
+        MockMultipartFile multipartFile = new MockMultipartFile("image", "profile.png", "image/png", new byte[]{1, 2, 3, 4});
+        String fileName = awss3Service.uploadFile(multipartFile, "userImages");
+
+        ArgumentCaptor<PutObjectRequest> argument = ArgumentCaptor.forClass(PutObjectRequest.class);
+        Mockito.verify(amazonS3).putObject(argument.capture());
+        PutObjectRequest request = argument.getValue();
+        Assert.assertEquals("events-images", request.getBucketName());
+        Assert.assertEquals(fileName, request.getKey());
+        Assert.assertNull(request.getFile());
+        Assert.assertNotNull(request.getInputStream());
+        Assert.assertEquals(4, request.getMetadata().getContentLength());
+        Assert.assertEquals("image/png", request.getMetadata().getContentType());
+        Assert.assertFalse(new File("profile.png").exists());
+    }
+
+    @Test
+    public void testUploadsOfTheSameFileGetDifferentNames(){
+        MockMultipartFile multipartFile = new MockMultipartFile("image", "C:\\Users\\sam\\profile.png", "image/png", new byte[]{1});
+        String first = awss3Service.uploadFile(multipartFile, "userImages");
+        String second = awss3Service.uploadFile(multipartFile, "userImages");
+        Assert.assertNotEquals(first, second);
+        Assert.assertTrue(first.startsWith("userImages/"));
+        Assert.assertTrue(first.endsWith("_profile.png"));
+    }
+
+    @Test
+    public void testLargeFilesAreUploadedInParts(){
+        mockMultipartUpload();
+        MockMultipartFile multipartFile = new MockMultipartFile("image", "banner.png", "image/png", new byte[10]);
+        String fileName = awss3Service.uploadFile(multipartFile, "eventImages");
+
+        ArgumentCaptor<UploadPartRequest> parts = ArgumentCaptor.forClass(UploadPartRequest.class);
+        Mockito.verify(amazonS3, Mockito.times(3)).uploadPart(parts.capture());
+        Assert.assertEquals(Arrays.asList(4L, 4L, 2L), parts.getAllValues().stream()
+                .sorted((a, b) -> Integer.compare(a.getPartNumber(), b.getPartNumber()))
+                .map(UploadPartRequest::getPartSize).collect(Collectors.toList()));
+
+        ArgumentCaptor<CompleteMultipartUploadRequest> complete = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        Mockito.verify(amazonS3).completeMultipartUpload(complete.capture());
+        Assert.assertEquals(fileName, complete.getValue().getKey());
+        Assert.assertEquals("upload-id", complete.getValue().getUploadId());
+        List<String> eTags = complete.getValue().getPartETags().stream()
+                .sorted((a, b) -> Integer.compare(a.getPartNumber(), b.getPartNumber()))
+                .map(PartETag::getETag).collect(Collectors.toList());
+        Assert.assertEquals(Arrays.asList("etag-1", "etag-2", "etag-3"), eTags);
+        Mockito.verify(amazonS3, Mockito.never()).putObject(any(PutObjectRequest.class));
+        Mockito.verify(amazonS3, Mockito.never()).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+    }
+
+    @Test
+    public void testFailedPartAbortsTheUpload(){
+        mockMultipartUpload();
+        Mockito.doThrow(new AmazonServiceException("part failed"))
+                .when(amazonS3).uploadPart(ArgumentMatchers.argThat(request -> request.getPartNumber() == 2));
+        MockMultipartFile multipartFile = new MockMultipartFile("image", "banner.png", "image/png", new byte[10]);
+
+        Assert.assertNull(awss3Service.uploadFile(multipartFile, "eventImages"));
+        Mockito.verify(amazonS3).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        Mockito.verify(amazonS3, Mockito.never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    private void mockMultipartUpload(){
+        InitiateMultipartUploadResult initiated = new InitiateMultipartUploadResult();
+        initiated.setUploadId("upload-id");
+        Mockito.when(amazonS3.initiateMultipartUpload(any(InitiateMultipartUploadRequest.class))).thenReturn(initiated);
+        Mockito.when(amazonS3.uploadPart(any(UploadPartRequest.class))).thenAnswer(invocation -> {
+            UploadPartRequest request = invocation.getArgument(0);
+            UploadPartResult result = new UploadPartResult();
+            result.setPartNumber(request.getPartNumber());
+            result.setETag("etag-" + request.getPartNumber());
+            return result;
+        });
+    }
+
+    @Test
+    public void testOpensWholeFileWithoutRange() throws IOException {
+        Mockito.when(amazonS3.getObject("events-images", "userImages/profile.png")).thenReturn(s3Object(new byte[]{1, 2, 3, 4, 5}, 5));
+        try (FileDownload download = awss3Service.openFile("userImages/profile.png", Collections.emptyList())) {
+            Assert.assertFalse(download.isPartial());
+            Assert.assertEquals(5, download.getContentLength());
+            Assert.assertEquals("image/png", download.getContentType());
+            Assert.assertEquals("etag", download.getETag());
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            download.writeTo(outputStream);
+            Assert.assertArrayEquals(new byte[]{1, 2, 3, 4, 5}, outputStream.toByteArray());
+        }
+    }
+
+    @Test
+    public void testOpensOnlyTheRequestedRange() throws IOException {
+        ObjectMetadata metadata = metadata(1000);
+        Mockito.when(amazonS3.getObjectMetadata("events-images", "userImages/profile.png")).thenReturn(metadata);
+        Mockito.when(amazonS3.getObject(any(GetObjectRequest.class))).thenReturn(s3Object(new byte[100], 100));
+
+        try (FileDownload download = awss3Service.openFile("userImages/profile.png", HttpRange.parseRanges("bytes=-100"))) {
+            Assert.assertTrue(download.isPartial());
+            Assert.assertEquals(100, download.getContentLength());
+            Assert.assertEquals("bytes 900-999/1000", download.getContentRange());
+        }
+        ArgumentCaptor<GetObjectRequest> argument = ArgumentCaptor.forClass(GetObjectRequest.class);
+        Mockito.verify(amazonS3).getObject(argument.capture());
+        Assert.assertArrayEquals(new long[]{900, 999}, argument.getValue().getRange());
+    }
+
+    @Test
+    public void testRangePastTheEndOfTheFileIsNotSatisfiable(){
+        Mockito.when(amazonS3.getObjectMetadata("events-images", "userImages/profile.png")).thenReturn(metadata(1000));
+        RangeNotSatisfiableException exception = assertThrows(RangeNotSatisfiableException.class, () -> {
+            awss3Service.openFile("userImages/profile.png", HttpRange.parseRanges("bytes=1000-"));
+        });
+        Assert.assertEquals(1000, exception.getFileLength());
+        Mockito.verify(amazonS3, Mockito.never()).getObject(any(GetObjectRequest.class));
+    }
+
+    @Test
+    public void testPreSignedUrlIsReusedUntilTheFileIsDeleted() throws Exception {
+        Mockito.when(amazonS3.generatePresignedUrl(any(GeneratePresignedUrlRequest.class)))
+                .thenReturn(new URL("https://events-images.s3.amazonaws.com/userImages/profile.png?signature=1"))
+                .thenReturn(new URL("https://events-images.s3.amazonaws.com/userImages/profile.png?signature=2"));
+        URL first = awss3Service.getPreSignedUrl("userImages/profile.png");
+        Assert.assertSame(first, awss3Service.getPreSignedUrl("userImages/profile.png"));
+        Mockito.verify(amazonS3, Mockito.times(1)).generatePresignedUrl(any(GeneratePresignedUrlRequest.class));
+
+        awss3Service.deleteFile("userImages/profile.png");
+        Assert.assertNotEquals(first.toString(), awss3Service.getPreSignedUrl("userImages/profile.png").toString());
+        Mockito.verify(amazonS3, Mockito.times(2)).generatePresignedUrl(any(GeneratePresignedUrlRequest.class));
+    }
+
+    private S3Object s3Object(byte[] content, long length){
+        S3Object s3Object = new S3Object();
+        s3Object.setObjectMetadata(metadata(length));
+        s3Object.setObjectContent(new ByteArrayInputStream(content));
+        return s3Object;
+    }
+
+    private ObjectMetadata metadata(long length){
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(length);
+        metadata.setContentType("image/png");
+        metadata.setHeader("ETag", "etag");
+        return metadata;
+    }
+}
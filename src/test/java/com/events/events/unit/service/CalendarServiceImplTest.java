@@ -0,0 +1,160 @@
+package com.events.events.unit.service;
+
+import com.events.events.models.CalendarEntry;
+import com.events.events.models.Event;
+import com.events.events.models.EventStatus;
+import com.events.events.models.User;
+import com.events.events.repository.EventRepository;
+import com.events.events.services.CalendarService;
+import com.events.events.services.CalendarServiceImpl;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collections;
+
+@RunWith(SpringRunner.class)
+@TestPropertySource(properties = "events.calendar.max-calendars=2")
+public class CalendarServiceImplTest {
+
+    @TestConfiguration
+    static class CalendarServiceImplTestContextConfiguration {
+
+        @Bean
+        public CalendarService calendarService() {
+            return new CalendarServiceImpl();
+        }
+
+    }
+
+    @Autowired
+    private CalendarService calendarService;
+
+    @MockBean
+    private EventRepository eventRepository;
+
+    private final User samuel = new User("samuel", "gaamuwa", "sgaamuwa", "pass123", "sgaamuwa@email.com");
+    private final LocalDateTime start = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(3);
+
+    private static int lastUserId = 100;
+
+    private int userId;
+
+    @Before
+    public void setup(){
+        // every test uses a user without a cached calendar
+        userId = ++lastUserId;
+        Mockito.when(eventRepository.findCalendarEntriesCreatedBy(userId, EventStatus.CANCELLED))
+                .thenReturn(Collections.singletonList(new CalendarEntry(1, start, start.plusHours(2))));
+        Mockito.when(eventRepository.findCalendarEntriesAttendedBy(userId, EventStatus.CANCELLED))
+                .thenReturn(Arrays.asList(new CalendarEntry(2, start.plusDays(1), start.plusDays(1).plusHours(1)), new CalendarEntry(3, start.plusDays(2), null)));
+    }
+
+    @Test
+    public void testOverlappingEventsConflict(){
+        CalendarEntry conflict = calendarService.findConflict(userId, event(10, start.plusHours(1), start.plusHours(3))).get();
+        Assert.assertEquals(1, conflict.getEventId());
+        Assert.assertTrue(conflict.isCreated());
+
+        conflict = calendarService.findConflict(userId, event(10, start.plusDays(1).minusMinutes(30), start.plusDays(1).plusMinutes(30))).get();
+        Assert.assertEquals(2, conflict.getEventId());
+        Assert.assertFalse(conflict.isCreated());
+
+        // an event without an end time still conflicts with events starting at the same time
+        Assert.assertEquals(3, calendarService.findConflict(userId, event(10, start.plusDays(2), start.plusDays(2).plusHours(1))).get().getEventId());
+    }
+
+    @Test
+    public void testBackToBackEventsDoNotConflict(){
+        Assert.assertFalse(calendarService.findConflict(userId, event(10, start.plusHours(2), start.plusHours(4))).isPresent());
+        Assert.assertFalse(calendarService.findConflict(userId, event(10, start.minusHours(2), start)).isPresent());
+        // an event does not conflict with itself
+        Assert.assertFalse(calendarService.findConflict(userId, event(1, start, start.plusHours(2))).isPresent());
+    }
+
+    @Test
+    public void testEventEndingLastIsOnlyCheckedAgainstTheOtherEvents(){
+        calendarService.findConflict(userId, event(11, start.minusDays(1), start.minusDays(1).plusHours(1)));
+        calendarService.addEvent(userId, event(10, start.minusHours(1), start.plusHours(6)), false);
+
+        // the rescheduled event itself ends last, only the events under it are checked
+        Assert.assertFalse(calendarService.findConflict(userId, event(10, start.plusHours(3), start.plusHours(4))).isPresent());
+        Assert.assertEquals(1, calendarService.findConflict(userId, event(10, start.plusHours(1), start.plusHours(4))).get().getEventId());
+        Assert.assertEquals(10, calendarService.findConflict(userId, event(11, start.plusHours(3), start.plusHours(4))).get().getEventId());
+    }
+
+    @Test
+    public void testChangesMadeWhileTheCalendarIsReadAreKept(){
+        Event later = event(10, start.plusHours(5), start.plusHours(6));
+        Event moved = event(1, start.plusHours(8), start.plusHours(9));
+        Mockito.when(eventRepository.findCalendarEntriesAttendedBy(userId, EventStatus.CANCELLED)).thenAnswer(invocation -> {
+            // made by other requests after the events were read but before the calendar is cached
+            calendarService.addEvent(userId, later, false);
+            calendarService.updateEvent(moved);
+            return Collections.emptyList();
+        });
+
+        Assert.assertEquals(10, calendarService.findConflict(userId, event(11, start.plusHours(5), start.plusHours(7))).get().getEventId());
+        Assert.assertFalse(calendarService.findConflict(userId, event(11, start, start.plusHours(1))).isPresent());
+        Assert.assertEquals(1, calendarService.findConflict(userId, event(11, start.plusHours(8), start.plusHours(10))).get().getEventId());
+
+        // the calendar is cached with the changes and still picks up later ones
+        calendarService.removeEvent(10);
+        Assert.assertFalse(calendarService.findConflict(userId, event(11, start.plusHours(5), start.plusHours(7))).isPresent());
+        Mockito.verify(eventRepository, Mockito.times(1)).findCalendarEntriesAttendedBy(userId, EventStatus.CANCELLED);
+    }
+
+    @Test
+    public void testCalendarIsLoadedOnceAndKeptUpToDate(){
+        Event later = event(10, start.plusHours(5), start.plusHours(6));
+        Event probe = event(11, start.plusHours(5), start.plusHours(7));
+        Assert.assertFalse(calendarService.findConflict(userId, probe).isPresent());
+
+        calendarService.addEvent(userId, later, false);
+        Assert.assertEquals(10, calendarService.findConflict(userId, probe).get().getEventId());
+
+        later.setStartTime(start.plusHours(8));
+        later.setEndTime(start.plusHours(9));
+        calendarService.updateEvent(later);
+        Assert.assertFalse(calendarService.findConflict(userId, probe).isPresent());
+
+        calendarService.removeEvent(1);
+        Assert.assertFalse(calendarService.findConflict(userId, event(12, start, start.plusHours(1))).isPresent());
+
+        Mockito.verify(eventRepository, Mockito.times(1)).findCalendarEntriesCreatedBy(userId, EventStatus.CANCELLED);
+        Mockito.verify(eventRepository, Mockito.times(1)).findCalendarEntriesAttendedBy(userId, EventStatus.CANCELLED);
+    }
+
+    @Test
+    public void testCalendarsLoadedFirstAreDroppedOverTheLimit(){
+        Event probe = event(10, start.plusHours(1), start.plusHours(3));
+        Assert.assertTrue(calendarService.findConflict(userId, probe).isPresent());
+        calendarService.findConflict(userId + 1000, probe);
+        calendarService.findConflict(userId + 2000, probe);
+
+        // only two calendars are kept, so the first one is loaded again
+        Assert.assertTrue(calendarService.findConflict(userId, probe).isPresent());
+        Mockito.verify(eventRepository, Mockito.times(2)).findCalendarEntriesCreatedBy(userId, EventStatus.CANCELLED);
+
+        // the calendar loaded again still picks up changes to its events
+        calendarService.removeEvent(1);
+        Assert.assertFalse(calendarService.findConflict(userId, probe).isPresent());
+    }
+
+    private Event event(int eventId, LocalDateTime startTime, LocalDateTime endTime){
+        Event event = new Event("event", "Kampala", startTime, endTime, samuel);
+        event.setEventId(eventId);
+        return event;
+    }
+}
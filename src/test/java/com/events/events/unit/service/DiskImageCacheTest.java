@@ -0,0 +1,188 @@
+package com.events.events.unit.service;
+
+import com.events.events.models.FileDownload;
+import com.events.events.services.DiskImageCache;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class DiskImageCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private DiskImageCache cache;
+
+    @Before
+    public void setUp() throws IOException {
+        cache = new DiskImageCache(folder.getRoot().toPath(), 10);
+    }
+
+    @After
+    public void tearDown(){
+        cache.close();
+    }
+
+    @Test
+    public void testCachedFileIsServedFromTheDisk() throws IOException {
+        DiskImageCache.CachedFile cachedFile = fill("userImages/profile.png", "etag", 1, 2, 3, 4);
+        Assert.assertNotNull(cachedFile);
+        Assert.assertEquals(4, cachedFile.getLength());
+        Assert.assertEquals("image/png", cachedFile.getContentType());
+        Assert.assertEquals("etag", cachedFile.getETag());
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (FileDownload download = new FileDownload(cachedFile.open(), cachedFile.getLength(), cachedFile.getContentType(), cachedFile.getETag(), null, null)) {
+            download.writeTo(outputStream);
+        }
+        Assert.assertArrayEquals(new byte[]{1, 2, 3, 4}, outputStream.toByteArray());
+    }
+
+    @Test
+    public void testRangeIsServedFromTheDisk() throws IOException {
+        DiskImageCache.CachedFile cachedFile = fill("userImages/profile.png", "etag", 1, 2, 3, 4, 5, 6);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (FileDownload download = new FileDownload(cachedFile.open(), cachedFile.getLength(), cachedFile.getContentType(), cachedFile.getETag(), 2L, 4L)) {
+            Assert.assertEquals(3, download.getContentLength());
+            Assert.assertEquals("bytes 2-4/6", download.getContentRange());
+            download.writeTo(outputStream);
+        }
+        Assert.assertArrayEquals(new byte[]{3, 4, 5}, outputStream.toByteArray());
+    }
+
+    @Test
+    public void testLeastRecentlyReadFilesAreDroppedWhenFull() throws IOException {
+        fill("first", "first", 1, 2, 3, 4);
+        fill("second", "second", 1, 2, 3, 4);
+        // reading the first file makes the second one the least recently read
+        cache.get("first");
+        fill("third", "third", 1, 2, 3, 4);
+
+        Assert.assertNotNull(cache.get("first"));
+        Assert.assertNull(cache.get("second"));
+        Assert.assertNotNull(cache.get("third"));
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals(8, cache.getSizeBytes());
+    }
+
+    @Test
+    public void testInvalidatedFileIsNoLongerServedAndIsDeleted() throws Exception {
+        fill("userImages/profile.png", "etag", 1, 2, 3, 4);
+
+        cache.invalidate("userImages/profile.png");
+
+        Assert.assertNull(cache.get("userImages/profile.png"));
+        Assert.assertEquals(0, cache.getSizeBytes());
+        waitUntilEmpty(folder.getRoot().toPath());
+    }
+
+    @Test
+    public void testFileIsCachedOnceItHasBeenReadToTheEnd() throws IOException {
+        InputStream content = cache.fillWhileReading("userImages/profile.png", content(1, 2, 3, 4), 4, "image/png", "etag");
+        Assert.assertNull(cache.get("userImages/profile.png"));
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (FileDownload download = new FileDownload(content, 4, "image/png", "etag")) {
+            download.writeTo(outputStream);
+        }
+        Assert.assertArrayEquals(new byte[]{1, 2, 3, 4}, outputStream.toByteArray());
+        DiskImageCache.CachedFile cachedFile = cache.get("userImages/profile.png");
+        Assert.assertNotNull(cachedFile);
+        Assert.assertEquals(4, cachedFile.getLength());
+        Assert.assertEquals("etag", cachedFile.getETag());
+    }
+
+    @Test
+    public void testFileClosedBeforeTheEndIsNotCached() throws Exception {
+        InputStream content = cache.fillWhileReading("userImages/profile.png", content(1, 2, 3, 4), 4, "image/png", "etag");
+        content.read(new byte[2]);
+        content.close();
+
+        Assert.assertNull(cache.get("userImages/profile.png"));
+        waitUntilEmpty(folder.getRoot().toPath());
+    }
+
+    @Test
+    public void testFileInvalidatedWhileItIsReadIsNotCached() throws IOException {
+        InputStream content = cache.fillWhileReading("userImages/profile.png", content(1, 2, 3, 4), 4, "image/png", "etag");
+        cache.invalidate("userImages/profile.png");
+        while (content.read() != -1){
+            // read to the end
+        }
+        content.close();
+
+        Assert.assertNull(cache.get("userImages/profile.png"));
+    }
+
+    @Test
+    public void testOnlyOneReaderCopiesAFileAtATime() throws IOException {
+        ByteArrayInputStream first = content(1, 2, 3, 4);
+        ByteArrayInputStream second = content(1, 2, 3, 4);
+        Assert.assertNotSame(first, cache.fillWhileReading("userImages/profile.png", first, 4, "image/png", "etag"));
+        Assert.assertSame(second, cache.fillWhileReading("userImages/profile.png", second, 4, "image/png", "etag"));
+    }
+
+    @Test
+    public void testInvalidatingAnOldCopyKeepsTheNewOne() throws IOException {
+        DiskImageCache.CachedFile old = fill("userImages/profile.png", "old", 1, 2, 3, 4);
+        DiskImageCache.CachedFile current = fill("userImages/profile.png", "new", 1, 2, 3, 4);
+        Assert.assertNotSame(old, current);
+
+        cache.invalidate("userImages/profile.png", old);
+
+        Assert.assertSame(current, cache.get("userImages/profile.png"));
+        Assert.assertEquals(4, cache.getSizeBytes());
+    }
+
+    @Test
+    public void testOnlyLeftoverCopiesAreDeletedOnStartup() throws IOException {
+        Path directory = folder.newFolder("leftovers").toPath();
+        Files.write(directory.resolve("image1.cache"), new byte[]{1, 2, 3});
+        Files.write(directory.resolve("notes.txt"), new byte[]{1, 2, 3});
+        Files.createDirectories(directory.resolve("other").resolve("nested"));
+
+        DiskImageCache restarted = new DiskImageCache(directory, 10);
+
+        Assert.assertFalse(Files.exists(directory.resolve("image1.cache")));
+        Assert.assertTrue(Files.exists(directory.resolve("notes.txt")));
+        Assert.assertTrue(Files.exists(directory.resolve("other").resolve("nested")));
+        restarted.close();
+    }
+
+    // caches the file the way serving it does, by reading it to the end through the cache
+    private DiskImageCache.CachedFile fill(String fileName, String eTag, int... values) throws IOException {
+        try (InputStream content = cache.fillWhileReading(fileName, content(values), values.length, "image/png", eTag)) {
+            while (content.read(new byte[2]) != -1){
+                // read to the end
+            }
+        }
+        return cache.get(fileName);
+    }
+
+    private static ByteArrayInputStream content(int... values){
+        byte[] bytes = new byte[values.length];
+        for(int i = 0; i < values.length; i++){
+            bytes[i] = (byte) values[i];
+        }
+        return new ByteArrayInputStream(bytes);
+    }
+
+    private static void waitUntilEmpty(Path directory) throws Exception {
+        // the files are deleted on a background thread
+        for(int i = 0; i < 200 && Files.list(directory).findAny().isPresent(); i++){
+            Thread.sleep(5);
+        }
+        Assert.assertFalse(Files.list(directory).findAny().isPresent());
+    }
+}
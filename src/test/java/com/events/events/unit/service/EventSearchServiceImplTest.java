@@ -0,0 +1,148 @@
+package com.events.events.unit.service;
+
+import com.events.events.models.Event;
+import com.events.events.models.EventSearchDocument;
+import com.events.events.models.EventSearchPage;
+import com.events.events.models.EventStatus;
+import com.events.events.models.SearchCursor;
+import com.events.events.repository.EventRepository;
+import com.events.events.services.EventSearchService;
+import com.events.events.services.EventSearchServiceImpl;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.any;
+
+@RunWith(SpringRunner.class)
+public class EventSearchServiceImplTest {
+
+    @TestConfiguration
+    static class EventSearchServiceImplTestContextConfiguration {
+
+        @Bean
+        public EventSearchService eventSearchService() {
+            return new EventSearchServiceImpl();
+        }
+
+    }
+
+    @Autowired
+    private EventSearchService eventSearchService;
+
+    @MockBean
+    private EventRepository eventRepository;
+
+    private final LocalDateTime start = LocalDateTime.of(2030, 6, 1, 10, 0);
+
+    private Map<Integer, Event> events = new HashMap<>();
+
+    @Before
+    public void setup(){
+        events.clear();
+        addEvent(1, "Bungee Jumping", "Jinja", "Jump off the bridge over the Nile", 0, EventStatus.OPEN);
+        addEvent(2, "Rafting on the Nile", "Jinja", "Grade five rapids", 2, EventStatus.OPEN);
+        addEvent(3, "Sunset cruise", "Entebbe", "A boat ride, the Nile is far from here", 4, EventStatus.OPEN);
+        addEvent(4, "Night Dancing", "Mukono", "Dancing all night", 6, EventStatus.CANCELLED);
+        Mockito.when(eventRepository.findSearchDocuments()).thenReturn(events.values().stream().map(EventSearchDocument::of).collect(Collectors.toList()));
+        Mockito.when(eventRepository.findAllById(any())).thenAnswer(invocation -> {
+            List<Event> found = new ArrayList<>();
+            for(Object id : (Iterable<?>) invocation.getArgument(0)){
+                if(events.containsKey(id)){
+                    found.add(events.get(id));
+                }
+            }
+            return found;
+        });
+        eventSearchService.rebuildIndex();
+    }
+
+    @Test
+    public void testRanksMatchesInTheTitleAboveMatchesInTheDescription(){
+        EventSearchPage page = eventSearchService.searchEvents("nile", null, null, null, null, 10);
+        Assert.assertEquals(Arrays.asList(2, 1, 3), idsOf(page));
+        Assert.assertFalse(page.hasNext());
+    }
+
+    @Test
+    public void testMatchesAnyWordOfTheQueryIgnoringCase(){
+        Assert.assertEquals(Arrays.asList(1, 2), idsOf(eventSearchService.searchEvents("JINJA", null, null, null, null, 10)));
+        Assert.assertTrue(eventSearchService.searchEvents("skydiving", null, null, null, null, 10).getEvents().isEmpty());
+    }
+
+    @Test
+    public void testFiltersByStatusAndDateRange(){
+        Assert.assertTrue(eventSearchService.searchEvents("dancing", null, null, EventStatus.OPEN, null, 10).getEvents().isEmpty());
+        // cancelled events are only found when they are asked for
+        Assert.assertTrue(eventSearchService.searchEvents("dancing", null, null, null, null, 10).getEvents().isEmpty());
+        Assert.assertEquals(Collections.singletonList(4), idsOf(eventSearchService.searchEvents("dancing", null, null, EventStatus.CANCELLED, null, 10)));
+        Assert.assertEquals(Collections.singletonList(2), idsOf(eventSearchService.searchEvents("nile", start.plusDays(1), start.plusDays(3), null, null, 10)));
+    }
+
+    @Test
+    public void testPagesFollowOnFromTheCursor(){
+        EventSearchPage first = eventSearchService.searchEvents("nile", null, null, null, null, 2);
+        Assert.assertEquals(Arrays.asList(2, 1), idsOf(first));
+        Assert.assertTrue(first.hasNext());
+
+        EventSearchPage second = eventSearchService.searchEvents("nile", null, null, null, first.getNext(), 2);
+        Assert.assertEquals(Collections.singletonList(3), idsOf(second));
+        Assert.assertFalse(second.hasNext());
+    }
+
+    @Test
+    public void testPagesComeFromTheRankingOfTheFirstPage(){
+        EventSearchPage first = eventSearchService.searchEvents("nile", null, null, null, null, 2);
+        Assert.assertEquals(Arrays.asList(2, 1), idsOf(first));
+
+        // a better match saved after the first page does not push a result seen already onto the next page
+        eventSearchService.indexEvent(addEvent(5, "Nile Nile Nile", "Jinja", "Nile", 8, EventStatus.OPEN));
+
+        EventSearchPage second = eventSearchService.searchEvents("nile", null, null, null, first.getNext(), 2);
+        Assert.assertEquals(Collections.singletonList(3), idsOf(second));
+        Assert.assertFalse(second.hasNext());
+    }
+
+    @Test
+    public void testCursorOfAnUnknownRankingCarriesOnAfterItsScore(){
+        SearchCursor next = eventSearchService.searchEvents("nile", null, null, null, null, 2).getNext();
+        SearchCursor elsewhere = new SearchCursor(next.getSnapshotId() + 1, next.getRank(), next.getScore(), next.getEventId());
+
+        Assert.assertEquals(Collections.singletonList(3), idsOf(eventSearchService.searchEvents("nile", null, null, null, elsewhere, 2)));
+        // a cursor is not used for the ranking of another search
+        Assert.assertEquals(Arrays.asList(2, 1), idsOf(eventSearchService.searchEvents("nile jinja", null, null, null, new SearchCursor(next.getSnapshotId(), 0, Double.MAX_VALUE, 0), 2)));
+    }
+
+    @Test
+    public void testIndexFollowsSavedAndDeletedEvents(){
+        Event kayaking = addEvent(5, "Kayaking", "Jinja", null, 8, EventStatus.OPEN);
+        eventSearchService.indexEvent(kayaking);
+        Assert.assertEquals(Collections.singletonList(5), idsOf(eventSearchService.searchEvents("kayaking", null, null, null, null, 10)));
+
+        eventSearchService.removeEvent(5);
+        Assert.assertTrue(eventSearchService.searchEvents("kayaking", null, null, null, null, 10).getEvents().isEmpty());
+    }
+
+    private Event addEvent(int eventId, String title, String location, String description, int daysFromStart, EventStatus status){
+        Event event = new Event(title, location, description, start.plusDays(daysFromStart), start.plusDays(daysFromStart).plusHours(2), null);
+        event.setEventId(eventId);
+        event.setEventStatus(status);
+        events.put(eventId, event);
+        return event;
+    }
+
+    private List<Integer> idsOf(EventSearchPage page){
+        return page.getEvents().stream().map(Event::getEventId).collect(Collectors.toList());
+    }
+}
@@ -1,15 +1,24 @@
 package com.events.events.unit.service;
 
 import com.events.events.error.*;
+import com.events.events.models.AuthenticatedUser;
+import com.events.events.models.CalendarEntry;
 import com.events.events.models.Event;
+import com.events.events.models.EventCursor;
+import com.events.events.models.EventSearchPage;
 import com.events.events.models.EventStatus;
 import com.events.events.models.Friend;
+import com.events.events.models.ParticipationResult;
 import com.events.events.models.User;
 import com.events.events.repository.EventRepository;
 import com.events.events.repository.UserRepository;
 import com.events.events.services.AWSS3Service;
+import com.events.events.services.CalendarService;
 import com.events.events.services.EventService;
+import com.events.events.services.EventSearchService;
 import com.events.events.services.EventServiceImpl;
+import com.events.events.services.EventTimeIndexService;
+import com.events.events.services.FeedService;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -20,12 +29,16 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import javax.persistence.EntityManager;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
@@ -58,6 +71,21 @@ public class EventServiceImplTest {
     @MockBean
     private UserRepository userRepository;
 
+    @MockBean
+    private FeedService feedService;
+
+    @MockBean
+    private EntityManager entityManager;
+
+    @MockBean
+    private CalendarService calendarService;
+
+    @MockBean
+    private EventSearchService eventSearchService;
+
+    @MockBean
+    private EventTimeIndexService eventTimeIndexService;
+
     final private User samuel = new User("samuel", "gaamuwa", "sgaamuwa", "pass123", "sgaamuwa@email.com");
     final private User male = new User("michael", "male", "mmale", "pass123", "mmale@email.com");
     final private Event cinemaMovie = new Event("Movie", "Acacia Mall", LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(3), LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(3).plusHours(2), samuel);
@@ -87,6 +115,7 @@ public class EventServiceImplTest {
         Assert.assertEquals(savedEvent.getCreator().getFirstName(), "samuel");
         Assert.assertEquals(savedEvent.getParticipants().size(), 1);
         Assert.assertTrue(savedEvent.getParticipants().contains(male));
+        Mockito.verify(calendarService).addEvent(1, savedEvent, false);
     }
 
     @Test
@@ -184,41 +213,46 @@ public class EventServiceImplTest {
 
     @Test
     public void testAddMultipleParticipantsAllValidUserIds(){
-        User user1 = Mockito.mock(User.class);
-        User user2 = Mockito.mock(User.class);
-        User user3 = Mockito.mock(User.class);
-        User user4 = Mockito.mock(User.class);
-        List<User> users = new ArrayList<>(Arrays.asList(user1, user2, user3, user4));
-
         int[] participants = new int[] {1, 2, 3, 4};
-        Integer[] userIds = Arrays.stream(participants).boxed().toArray(Integer[]::new);
-        Mockito.when(userRepository.findAllById(Arrays.asList(userIds))).thenReturn(users);
-        Mockito.when(eventRepository.save(cinemaMovie)).thenReturn(cinemaMovie);
-
-        Event returnedEvent = eventService.addMultipleParticipantsToEvent(1, participants);
+        Mockito.when(userRepository.findExistingIds(any())).thenReturn(Arrays.asList(1, 2, 3, 4));
+        Mockito.when(eventRepository.findParticipantIds(Mockito.anyInt(), any())).thenReturn(Collections.emptyList());
+        Mockito.when(eventRepository.findUsersWithEventsOverlapping(any(), Mockito.anyInt(), Mockito.anyInt(), any(), any())).thenReturn(Collections.emptyList());
 
-        Assert.assertEquals(returnedEvent.getParticipants().size(), 4);
+        Map<Integer, ParticipationResult> results = eventService.addMultipleParticipantsToEvent(1, participants);
 
+        Assert.assertEquals(4, results.size());
+        Assert.assertTrue(results.values().stream().allMatch(result -> result == ParticipationResult.ADDED));
+        // the participants are added in one statement instead of loading and saving every user
+        Mockito.verify(eventRepository).addParticipants(cinemaMovie.getEventId(), Arrays.asList(1, 2, 3, 4));
+        Mockito.verify(userRepository, Mockito.never()).findAllById(any());
+        Mockito.verify(eventRepository, Mockito.never()).save(any(Event.class));
     }
 
     @Test
-    public void testAddMultipleParticipantsWithOneAlreadyAttending(){
-        beach.setParticipants(new HashSet<>(Arrays.asList(male)));
-        User user1 = Mockito.mock(User.class);
-        List<User> users = new ArrayList<>(Arrays.asList(male, user1));
-
-        int[] participants = new int[]{1, 2};
-        Integer[] userIds = Arrays.stream(participants).boxed().toArray(Integer[]::new);
-
-        Mockito.when(userRepository.findAllById(Arrays.asList(userIds))).thenReturn(users);
-        Mockito.when(eventRepository.save(beach)).thenReturn(beach);
-
-        Assert.assertEquals(beach.getParticipants().size(), 1);
+    public void testAddMultipleParticipantsReturnsResultForEachUser(){
+        int[] participants = new int[]{1, 2, 3, 5};
+        Mockito.when(userRepository.findExistingIds(any())).thenReturn(Arrays.asList(1, 2, 3));
+        Mockito.when(eventRepository.findParticipantIds(Mockito.anyInt(), any())).thenReturn(Collections.singletonList(1));
+        Mockito.when(eventRepository.findUsersWithEventsOverlapping(any(), Mockito.anyInt(), Mockito.eq(EventStatus.CANCELLED.ordinal()), Mockito.eq(beach.getStartTime()), Mockito.eq(beach.getEndTime())))
+                .thenReturn(Collections.singletonList(2));
+
+        Map<Integer, ParticipationResult> results = eventService.addMultipleParticipantsToEvent(2, participants);
+
+        Assert.assertEquals(ParticipationResult.ALREADY_PARTICIPANT, results.get(1));
+        Assert.assertEquals(ParticipationResult.SCHEDULE_CONFLICT, results.get(2));
+        Assert.assertEquals(ParticipationResult.ADDED, results.get(3));
+        Assert.assertEquals(ParticipationResult.USER_NOT_FOUND, results.get(5));
+        Mockito.verify(eventRepository).addParticipants(beach.getEventId(), Collections.singletonList(3));
+        Mockito.verify(calendarService).addEvent(3, beach, false);
+    }
 
-        Event returnedEvent = eventService.addMultipleParticipantsToEvent(2, participants);
+    @Test
+    public void testAddMultipleParticipantsWithNoValidUserIds(){
+        Mockito.when(userRepository.findExistingIds(any())).thenReturn(Collections.emptyList());
 
-        Assert.assertEquals(returnedEvent, beach);
-        Assert.assertEquals(returnedEvent.getParticipants().size(), 2);
+        Throwable exception = assertThrows(NotFoundException.class, () -> eventService.addMultipleParticipantsToEvent(1, new int[]{7, 8}));
+        Assert.assertEquals("No users with the provided ids", exception.getMessage());
+        Mockito.verify(eventRepository, Mockito.never()).addParticipants(Mockito.anyInt(), any());
     }
 
     @Test
@@ -233,9 +267,9 @@ public class EventServiceImplTest {
 
     @Test
     public void testCantAddUserToEventOnSameDayWithCreatedEvent(){
-        male.setCreatedEvents(new ArrayList<>(Arrays.asList(cinemaMovie)));
         Event newEvent = new Event("event", "Mityana", LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(3), LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(3).plusHours(2), samuel);
         Mockito.when(eventRepository.findById(56)).thenReturn(Optional.of(newEvent));
+        Mockito.when(calendarService.findConflict(male.getUserId(), newEvent)).thenReturn(Optional.of(CalendarEntry.created(cinemaMovie)));
         Throwable exception = assertThrows(InvalidDateException.class, () -> {
             eventService.addSingleParticipantToEvent(56,1);
         });
@@ -244,9 +278,9 @@ public class EventServiceImplTest {
 
     @Test
     public void testCantAddUserToEventOnSameDayWithAttendingEvent(){
-        male.setAttending(new ArrayList<>(Arrays.asList(cinemaMovie)));
         Event newEvent = new Event("event", "Mityana", LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(3), LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(3).plusHours(2), samuel);
         Mockito.when(eventRepository.findById(56)).thenReturn(Optional.of(newEvent));
+        Mockito.when(calendarService.findConflict(male.getUserId(), newEvent)).thenReturn(Optional.of(CalendarEntry.attending(cinemaMovie)));
         Throwable exception = assertThrows(InvalidDateException.class, () -> {
             eventService.addSingleParticipantToEvent(56,1);
         });
@@ -276,34 +310,80 @@ public class EventServiceImplTest {
     }
 
     @Test
-    public void testCanGetAllEventsByUsersFriends(){
-        samuel.setUserId(1);
-        male.setUserId(2);
+    public void testStreamAllEventsDetachesEachEventAfterItIsConsumed(){
+        cinemaMovie.setEventId(1);
+        beach.setEventId(2);
+        Mockito.when(eventRepository.streamAll()).thenReturn(Stream.of(cinemaMovie, beach));
+        List<Event> consumed = new ArrayList<>();
+
+        eventService.streamAllEvents(event -> {
+            // the event is still attached while it is being written
+            Mockito.verify(entityManager, Mockito.never()).detach(event);
+            consumed.add(event);
+        });
 
-        Event newEvent = new Event("event", "Mityana", LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(3), LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(3).plusHours(2), samuel);
-        Event newEvent2 = new Event("event", "Mityana", LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(3), LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(3).plusHours(2), male);
-        User user1 = Mockito.mock(User.class);
+        Assert.assertEquals(Arrays.asList(cinemaMovie, beach), consumed);
+        Mockito.verify(entityManager).detach(cinemaMovie);
+        Mockito.verify(entityManager).detach(beach);
+        Mockito.verify(eventRepository, Mockito.never()).findAll();
+    }
 
-        Friend friend1 = new Friend(user1, samuel);
-        Friend friend2 = new Friend(user1, male);
+    @Test
+    public void testEventsBetweenDatesAreReadFromTheStartOfTheRange(){
+        LocalDateTime dateFrom = LocalDateTime.now().truncatedTo(ChronoUnit.DAYS).minusDays(7);
+        LocalDateTime dateTo = dateFrom.plusDays(7);
+        Mockito.when(eventRepository.findPageAfterAndStartTimeLessThanEqual(dateFrom, -1, dateTo, PageRequest.of(0, 50))).thenReturn(Collections.singletonList(cinemaMovie));
 
-        friend1.setActive(true);
-        friend2.setActive(true);
+        Assert.assertEquals(Collections.singletonList(cinemaMovie), eventService.getEventsBetweenDates(dateFrom, dateTo, null, 50).getEvents());
+    }
 
-        Set<Friend> set = new HashSet<>();
-        set.add(friend1);
-        set.add(friend2);
+    @Test
+    public void testCursorFromBeforeTheRequestedRangeStartsAtTheRange(){
+        LocalDateTime dateFrom = LocalDateTime.now().truncatedTo(ChronoUnit.DAYS).plusDays(1);
+        LocalDateTime dateTo = dateFrom.plusDays(7);
+        EventCursor outOfRange = new EventCursor(dateFrom.minusYears(1), 3);
 
-        Mockito.when(eventRepository.findAllEventsByFriends(any(List.class))).thenReturn(Arrays.asList(newEvent, newEvent2));
-        Mockito.when(userRepository.findByUsername("username")).thenReturn(Optional.of(user1));
+        eventService.getEventsBetweenDates(dateFrom, dateTo, outOfRange, 50);
+        eventService.getEventsAfterDate(dateFrom, outOfRange, 50);
+
+        Mockito.verify(eventRepository).findPageAfterAndStartTimeLessThanEqual(dateFrom, -1, dateTo, PageRequest.of(0, 50));
+        Mockito.verify(eventRepository).findPageAfter(dateFrom, Integer.MAX_VALUE, PageRequest.of(0, 50));
+    }
+
+    @Test
+    public void testCursorInsideTheRequestedRangeIsKept(){
+        LocalDateTime date = LocalDateTime.now().truncatedTo(ChronoUnit.DAYS).plusDays(1);
+        EventCursor inRange = new EventCursor(date.plusDays(2), 3);
+
+        eventService.getEventsAfterDate(date, inRange, 50);
+
+        Mockito.verify(eventRepository).findPageAfter(date.plusDays(2), 3, PageRequest.of(0, 50));
+    }
+
+    @Test
+    public void testEventsBetweenDatesAreReadFromTheIndexWhenItCoversTheRange(){
+        LocalDateTime dateFrom = LocalDateTime.now().truncatedTo(ChronoUnit.DAYS).plusDays(1);
+        LocalDateTime dateTo = dateFrom.plusDays(7);
+        Mockito.when(eventTimeIndexService.findPage(EventCursor.startingAt(dateFrom), EventCursor.after(dateTo), 50)).thenReturn(Optional.of(Arrays.asList(cinemaMovie, beach)));
 
-        Mockito.when(user1.getFriends()).thenReturn(set);
+        Assert.assertEquals(Arrays.asList(cinemaMovie, beach), eventService.getEventsBetweenDates(dateFrom, dateTo, null, 50).getEvents());
+        Mockito.verify(eventRepository, Mockito.never()).findPageAfterAndStartTimeLessThanEqual(any(LocalDateTime.class), Mockito.anyInt(), any(LocalDateTime.class), any(Pageable.class));
+    }
+
+    @Test
+    public void testCancelledAndDeletedEventsAreUpdatedInTheIndex(){
+        Mockito.when(userRepository.findById(3)).thenReturn(Optional.of(samuel));
 
-        Assert.assertEquals(eventService.getAllEventsForUser("username").size(), 2);
+        eventService.cancelEvent(2);
+        eventService.deleteEvent(1, 3);
+
+        Mockito.verify(eventTimeIndexService).putEvent(beach);
+        Assert.assertEquals(EventStatus.CANCELLED, beach.getEventStatus());
+        Mockito.verify(eventTimeIndexService).removeEvent(1);
     }
 
     @Test
-    public void testCantGetEventsIfFollowRequestWasNotAccepted(){
+    public void testCanGetAllEventsFromUsersFeed(){
         samuel.setUserId(1);
         male.setUserId(2);
 
@@ -311,23 +391,43 @@ public class EventServiceImplTest {
         Event newEvent2 = new Event("event", "Mityana", LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(3), LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusDays(3).plusHours(2), male);
         User user1 = Mockito.mock(User.class);
 
-        Friend friend1 = new Friend(user1, samuel);
-        Friend friend2 = new Friend(user1, male);
+        Mockito.when(user1.getUserId()).thenReturn(5);
+        Mockito.when(userRepository.findByUsername("username")).thenReturn(Optional.of(user1));
+        Mockito.when(feedService.getFeedForUser(Mockito.eq(5), any(EventCursor.class), Mockito.anyInt())).thenReturn(Arrays.asList(newEvent, newEvent2));
 
-        friend1.setActive(true);
-        friend2.setActive(false);
+        Assert.assertEquals(eventService.getAllEventsForUser("username", null, 50).getEvents().size(), 2);
+        // the feed is read from the materialized entries rather than rebuilt from the user's friends
+        Mockito.verify(user1, Mockito.never()).getFriends();
+        Mockito.verify(eventRepository, Mockito.never()).findAllEventsByFriends(any(List.class));
+    }
 
-        Set<Friend> set = new HashSet<>();
-        set.add(friend1);
-        set.add(friend2);
+    @Test
+    public void testGetAllEventsForUserThrowsWhenTheFirstPageOfTheFeedIsEmpty(){
+        User user1 = Mockito.mock(User.class);
 
-        Mockito.when(eventRepository.findAllEventsByFriends(Arrays.asList(new Integer(1), new Integer(0)))).thenReturn(Arrays.asList(newEvent));
+        Mockito.when(user1.getUserId()).thenReturn(5);
         Mockito.when(userRepository.findByUsername("username")).thenReturn(Optional.of(user1));
+        Mockito.when(feedService.getFeedForUser(Mockito.eq(5), any(EventCursor.class), Mockito.anyInt())).thenReturn(Collections.emptyList());
 
-        Mockito.when(user1.getFriends()).thenReturn(set);
+        Throwable exception = assertThrows(EmptyListException.class, () -> eventService.getAllEventsForUser("username", null, 50));
+        Assert.assertEquals("There are no available events", exception.getMessage());
+        Mockito.verify(feedService).getFeedForUser(5, EventCursor.first(), 50);
+    }
 
-        Assert.assertEquals(eventService.getAllEventsForUser("username").size(), 1);
-        Mockito.verify(eventRepository).findAllEventsByFriends(Arrays.asList(new Integer(1), new Integer(0)));
+    @Test
+    public void testCanSearchForEvents(){
+        Mockito.when(eventSearchService.searchEvents("beach", null, null, EventStatus.OPEN, null, 50))
+                .thenReturn(new EventSearchPage(Collections.singletonList(beach), null));
+        EventSearchPage page = eventService.searchEvents("beach", null, null, EventStatus.OPEN, null, 50);
+        Assert.assertEquals(Collections.singletonList(beach), page.getEvents());
+        Assert.assertFalse(page.hasNext());
+    }
+
+    @Test
+    public void testThrowsExceptionIfNoEventsFitSearchTerm(){
+        Mockito.when(eventSearchService.searchEvents("rafting", null, null, null, null, 200)).thenReturn(EventSearchPage.empty());
+        Throwable exception = assertThrows(EmptyListException.class, () -> eventService.searchEvents("rafting", null, null, null, null, 1000));
+        Assert.assertEquals("There are no events that fit the search term: rafting", exception.getMessage());
     }
 
     @Test
@@ -343,7 +443,8 @@ public class EventServiceImplTest {
         Mockito.when(eventRepository.save(beach)).thenReturn(beach);
         Mockito.when(userRepository.save(male)).thenReturn(male);
 
-        Event event = eventService.deleteInviteeFromEvent(3, 2, 1, "sgaamuwa");
+        samuel.setUserId(3);
+        Event event = eventService.deleteInviteeFromEvent(3, 2, 1, new AuthenticatedUser(3, "sgaamuwa"));
 
         Assert.assertEquals(1, event.getInvitees().size());
         Assert.assertTrue(event.getInvitees().contains(user));
@@ -363,8 +464,9 @@ public class EventServiceImplTest {
         Mockito.when(eventRepository.save(beach)).thenReturn(beach);
         Mockito.when(userRepository.save(male)).thenReturn(male);
 
+        samuel.setUserId(3);
         Throwable exception = assertThrows(BadRequestException.class, () -> {
-            eventService.deleteInviteeFromEvent(3, 2, 2, "sgaamuwa");
+            eventService.deleteInviteeFromEvent(3, 2, 2, new AuthenticatedUser(null, "sgaamuwa"));
         });
 
         Assert.assertEquals("User with id :2 is not invited to the event id: 2", exception.getMessage());
@@ -385,7 +487,7 @@ public class EventServiceImplTest {
         Mockito.when(userRepository.save(male)).thenReturn(male);
 
         Throwable exception = assertThrows(AuthorisationException.class, () -> {
-            eventService.deleteInviteeFromEvent(2, 2, 1, "sgaamuwa");
+            eventService.deleteInviteeFromEvent(2, 2, 1, new AuthenticatedUser(3, "sgaamuwa"));
         });
 
         Assert.assertEquals("You do not have the required permission to complete this operation", exception.getMessage());
@@ -0,0 +1,158 @@
+package com.events.events.unit.service;
+
+import com.events.events.models.Event;
+import com.events.events.models.EventCursor;
+import com.events.events.models.EventStatus;
+import com.events.events.models.User;
+import com.events.events.repository.EventRepository;
+import com.events.events.services.EventTimeIndexService;
+import com.events.events.services.EventTimeIndexServiceImpl;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.any;
+
+@RunWith(SpringRunner.class)
+public class EventTimeIndexServiceImplTest {
+
+    @TestConfiguration
+    static class EventTimeIndexServiceImplTestContextConfiguration {
+
+        @Bean
+        public EventTimeIndexService eventTimeIndexService() {
+            return new EventTimeIndexServiceImpl();
+        }
+
+    }
+
+    @Autowired
+    private EventTimeIndexService eventTimeIndexService;
+
+    @MockBean
+    private EventRepository eventRepository;
+
+    private final User samuel = new User("samuel", "gaamuwa", "sgaamuwa", "pass123", "sgaamuwa@email.com");
+    private final User bruce = new User("bruce", "bigirwenkya", "bbigirwenkya", "pass123", "bbigirwenkya@email.com");
+    private final LocalDateTime tomorrow = LocalDate.now().atStartOfDay().plusDays(1).plusHours(10);
+
+    @Before
+    public void setup(){
+        samuel.setUserId(1);
+        bruce.setUserId(2);
+        Mockito.when(eventRepository.findStartingBetween(any(), any())).thenReturn(Collections.emptyList());
+        Mockito.when(eventRepository.findParticipantsOfEventsStartingBetween(any(), any())).thenReturn(Collections.emptyList());
+        Mockito.when(eventRepository.findInviteesOfEventsStartingBetween(any(), any())).thenReturn(Collections.emptyList());
+        eventTimeIndexService.rebuildIndex();
+    }
+
+    @Test
+    public void testIndexReturnsEventsOrderedByStartTime(){
+        Event beach = event(1, "beach", tomorrow.plusDays(2));
+        Event movie = event(2, "movie", tomorrow);
+        Event jumping = event(3, "jumping", tomorrow.plusDays(1));
+        eventTimeIndexService.putEvent(beach);
+        eventTimeIndexService.putEvent(movie);
+        eventTimeIndexService.putEvent(jumping);
+
+        // a full page is known to be complete even without an upper bound
+        List<Event> page = eventTimeIndexService.findPage(EventCursor.startingAt(tomorrow), null, 2).get();
+        Assert.assertEquals(Arrays.asList(movie, jumping), page);
+
+        List<Event> nextPage = eventTimeIndexService.findPage(EventCursor.of(jumping), EventCursor.after(tomorrow.plusDays(5)), 2).get();
+        Assert.assertEquals(Collections.singletonList(beach), nextPage);
+    }
+
+    @Test
+    public void testIndexReturnsCopiesOfTheEventsAsTheyWereIndexed(){
+        Event movie = event(1, "movie", tomorrow);
+        movie.setParticipants(new HashSet<>(Collections.singletonList(bruce)));
+        eventTimeIndexService.putEvent(movie);
+        movie.setTitle("changed without being indexed");
+
+        Event found = eventTimeIndexService.findPage(EventCursor.startingAt(tomorrow), EventCursor.after(tomorrow), 10).get().get(0);
+        Assert.assertNotSame(movie, found);
+        Assert.assertEquals("movie", found.getTitle());
+        Assert.assertEquals(samuel, found.getCreator());
+        Assert.assertEquals(Collections.singleton(bruce), found.getParticipants());
+
+        // changing what was returned leaves the index as it was
+        found.setTitle("changed by a request");
+        Assert.assertEquals("movie", eventTimeIndexService.findPage(EventCursor.startingAt(tomorrow), EventCursor.after(tomorrow), 10).get().get(0).getTitle());
+    }
+
+    @Test
+    public void testIndexKeepsUpWithUpdatesCancellationsAndDeletes(){
+        Event beach = event(1, "beach", tomorrow);
+        Event movie = event(2, "movie", tomorrow.plusDays(1));
+        eventTimeIndexService.putEvent(beach);
+        eventTimeIndexService.putEvent(movie);
+
+        beach.setStartTime(tomorrow.plusDays(2));
+        eventTimeIndexService.putEvent(beach);
+        movie.setEventStatus(EventStatus.CANCELLED);
+        eventTimeIndexService.putEvent(movie);
+        List<Event> page = eventTimeIndexService.findPage(EventCursor.startingAt(tomorrow), EventCursor.after(tomorrow.plusDays(5)), 10).get();
+        Assert.assertEquals(Arrays.asList(movie, beach), page);
+        Assert.assertEquals(EventStatus.CANCELLED, page.get(0).getEventStatus());
+
+        eventTimeIndexService.removeEvent(movie.getEventId());
+        Assert.assertEquals(Collections.singletonList(beach), eventTimeIndexService.findPage(EventCursor.startingAt(tomorrow), EventCursor.after(tomorrow.plusDays(5)), 10).get());
+    }
+
+    @Test
+    public void testIndexOnlyAnswersRangesInsideTheWindow(){
+        Event movie = event(1, "movie", tomorrow);
+        eventTimeIndexService.putEvent(movie);
+
+        // ranges starting before today or running past the horizon have to go to the database
+        Assert.assertFalse(eventTimeIndexService.findPage(EventCursor.first(), EventCursor.after(tomorrow), 10).isPresent());
+        Assert.assertFalse(eventTimeIndexService.findPage(EventCursor.startingAt(tomorrow), null, 10).isPresent());
+        Assert.assertFalse(eventTimeIndexService.findPage(EventCursor.startingAt(tomorrow), EventCursor.after(tomorrow.plusYears(1)), 10).isPresent());
+
+        Assert.assertEquals(Collections.singletonList(movie), eventTimeIndexService.findPage(EventCursor.startingAt(tomorrow), EventCursor.after(tomorrow), 10).get());
+        Assert.assertTrue(eventTimeIndexService.findPage(EventCursor.startingAt(tomorrow.plusDays(1)), EventCursor.after(tomorrow.plusDays(1)), 10).get().isEmpty());
+
+        // events moved past the horizon are dropped
+        movie.setStartTime(tomorrow.plusYears(1));
+        eventTimeIndexService.putEvent(movie);
+        Assert.assertTrue(eventTimeIndexService.findPage(EventCursor.startingAt(tomorrow), EventCursor.after(tomorrow), 10).get().isEmpty());
+    }
+
+    @Test
+    public void testIndexIsLoadedWithTheParticipantsAndInviteesOfEachEvent(){
+        Event movie = event(1, "movie", tomorrow);
+        Event beach = event(2, "beach", tomorrow.plusDays(1));
+        Mockito.when(eventRepository.findStartingBetween(any(), any())).thenReturn(Arrays.asList(beach, movie));
+        Mockito.when(eventRepository.findParticipantsOfEventsStartingBetween(any(), any())).thenReturn(Arrays.asList(
+                new Object[]{1, bruce}, new Object[]{2, bruce}, new Object[]{2, samuel}));
+        Mockito.when(eventRepository.findInviteesOfEventsStartingBetween(any(), any())).thenReturn(Collections.singletonList(new Object[]{1, samuel}));
+        eventTimeIndexService.rebuildIndex();
+
+        List<Event> page = eventTimeIndexService.findPage(EventCursor.startingAt(tomorrow), EventCursor.after(tomorrow.plusDays(1)), 10).get();
+        Assert.assertEquals(Arrays.asList(movie, beach), page);
+        Assert.assertEquals(Collections.singleton(bruce), page.get(0).getParticipants());
+        Assert.assertEquals(Collections.singleton(samuel), page.get(0).getInvitees());
+        Assert.assertEquals(new HashSet<>(Arrays.asList(bruce, samuel)), page.get(1).getParticipants());
+        Assert.assertTrue(page.get(1).getInvitees().isEmpty());
+        Assert.assertEquals(Arrays.asList(1, 2), page.stream().map(Event::getEventId).collect(Collectors.toList()));
+    }
+
+    private Event event(int eventId, String title, LocalDateTime startTime){
+        Event event = new Event(title, "Kampala", startTime, startTime.plusHours(2), samuel);
+        event.setEventId(eventId);
+        return event;
+    }
+}
@@ -0,0 +1,87 @@
+package com.events.events.unit.service;
+
+import com.events.events.services.ExpiringCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+public class ExpiringCacheTest {
+
+    private final SettableClock clock = new SettableClock();
+
+    @Test
+    public void testReturnsValuesUntilTheyExpire(){
+        ExpiringCache<String, Integer> cache = new ExpiringCache<>(10, clock);
+        cache.put("one", 1, clock.millis() + 50);
+        cache.put("expired", 2, clock.millis());
+
+        Assert.assertEquals(Integer.valueOf(1), cache.get("one"));
+        Assert.assertNull(cache.get("expired"));
+        Assert.assertNull(cache.get("missing"));
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(2, cache.getMisses());
+
+        clock.advance(50);
+        Assert.assertNull(cache.get("one"));
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testExpiredValuesAreDroppedFirstWhenFull(){
+        ExpiringCache<String, Integer> cache = new ExpiringCache<>(3, clock);
+        cache.put("expiring", 1, clock.millis() + 10);
+        cache.put("two", 2, clock.millis() + 1000);
+        cache.put("three", 3, clock.millis() + 1000);
+        clock.advance(10);
+
+        cache.put("four", 4, clock.millis() + 1000);
+
+        Assert.assertEquals(Integer.valueOf(2), cache.get("two"));
+        Assert.assertEquals(Integer.valueOf(3), cache.get("three"));
+        Assert.assertEquals(Integer.valueOf(4), cache.get("four"));
+    }
+
+    @Test
+    public void testNeverHoldsMoreThanTheMaximumSize(){
+        ExpiringCache<Integer, Integer> cache = new ExpiringCache<>(100, clock);
+        for(int i = 0; i < 1000; i++){
+            cache.put(i, i, clock.millis() + 1000);
+            Assert.assertTrue(cache.size() <= 100);
+        }
+        Assert.assertEquals(Integer.valueOf(999), cache.get(999));
+    }
+
+    // a clock that only moves when the test moves it
+    private static class SettableClock extends Clock {
+
+        private long millis = Instant.parse("2030-06-01T10:00:00Z").toEpochMilli();
+
+        private void advance(long byMillis){
+            millis += byMillis;
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.events.events.unit.service;
+
+import com.events.events.repository.FriendRepository;
+import com.events.events.services.FollowGraphService;
+import com.events.events.services.FollowGraphServiceImpl;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.Arrays;
+
+@RunWith(SpringRunner.class)
+public class FollowGraphServiceImplTest {
+
+    @TestConfiguration
+    static class FollowGraphServiceImplTestContextConfiguration {
+
+        @Bean
+        public FollowGraphService followGraphService() {
+            return new FollowGraphServiceImpl();
+        }
+
+    }
+
+    @Autowired
+    private FollowGraphService followGraphService;
+
+    @MockBean
+    private FriendRepository friendRepository;
+
+    @Before
+    public void setup(){
+        // 1 and 2 follow each other, 3 follows 1 and 1 has asked to follow 3
+        Mockito.when(friendRepository.findAllFollows()).thenReturn(Arrays.asList(
+                new Object[]{1, 2, true},
+                new Object[]{2, 1, true},
+                new Object[]{3, 1, true},
+                new Object[]{1, 3, false}));
+        followGraphService.rebuildGraph();
+    }
+
+    @Test
+    public void testGraphIsLoadedFromTheFriendsTable(){
+        Assert.assertArrayEquals(new int[]{2}, followGraphService.getFollowing(1));
+        Assert.assertArrayEquals(new int[]{2, 3}, followGraphService.getFollowers(1));
+        Assert.assertEquals(2, followGraphService.countFollowers(1));
+        Assert.assertTrue(followGraphService.isFollowing(3, 1));
+        Assert.assertFalse(followGraphService.isFollowing(1, 3));
+        Assert.assertTrue(followGraphService.hasRequestedToFollow(1, 3));
+        Assert.assertEquals(0, followGraphService.getFollowers(4).length);
+        // users without a follow or request when the graph was loaded have no follows yet
+        Assert.assertEquals(0, followGraphService.getFollowing(1000).length);
+    }
+
+    @Test
+    public void testGraphFollowsRequestsAcceptsAndUnfollows(){
+        followGraphService.acceptFollowRequest(1, 3);
+        Assert.assertFalse(followGraphService.hasRequestedToFollow(1, 3));
+        Assert.assertArrayEquals(new int[]{2, 3}, followGraphService.getFollowing(1));
+        Assert.assertArrayEquals(new int[]{1}, followGraphService.getFollowers(3));
+
+        followGraphService.addFollowRequest(4, 1);
+        Assert.assertTrue(followGraphService.hasRequestedToFollow(4, 1));
+        followGraphService.removeFollow(4, 1);
+        Assert.assertFalse(followGraphService.hasRequestedToFollow(4, 1));
+
+        followGraphService.removeFollow(2, 1);
+        Assert.assertArrayEquals(new int[]{3}, followGraphService.getFollowers(1));
+        Assert.assertEquals(0, followGraphService.getFollowing(2).length);
+
+        // a user without a row gets the next one when they first follow
+        followGraphService.acceptFollowRequest(1000, 1);
+        Assert.assertArrayEquals(new int[]{1}, followGraphService.getFollowing(1000));
+        Assert.assertArrayEquals(new int[]{3, 1000}, followGraphService.getFollowers(1));
+        // reading the graph does not go back to the database
+        Mockito.verify(friendRepository, Mockito.times(1)).findAllFollows();
+    }
+
+    @Test
+    public void testGraphIsIndexedByRowsRatherThanByUserIds(){
+        // ids are handed out by a sequence shared with the events and tokens, so they are far apart
+        Mockito.when(friendRepository.findAllFollows()).thenReturn(Arrays.asList(
+                new Object[]{2000000, 7, true},
+                new Object[]{7, 2000000, false}));
+        followGraphService.rebuildGraph();
+
+        Assert.assertArrayEquals(new int[]{7}, followGraphService.getFollowing(2000000));
+        Assert.assertArrayEquals(new int[]{2000000}, followGraphService.getFollowers(7));
+        Assert.assertTrue(followGraphService.hasRequestedToFollow(7, 2000000));
+        Assert.assertEquals(0, followGraphService.getFollowing(1).length);
+
+        followGraphService.acceptFollowRequest(7, 2000000);
+        followGraphService.acceptFollowRequest(3000000, 7);
+        Assert.assertArrayEquals(new int[]{2000000}, followGraphService.getFollowing(7));
+        Assert.assertArrayEquals(new int[]{2000000, 3000000}, followGraphService.getFollowers(7));
+        Assert.assertArrayEquals(new int[]{7}, followGraphService.getFollowing(3000000));
+    }
+}
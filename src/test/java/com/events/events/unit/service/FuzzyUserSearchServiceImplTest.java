@@ -0,0 +1,119 @@
+package com.events.events.unit.service;
+
+import com.events.events.models.User;
+import com.events.events.repository.UserRepository;
+import com.events.events.services.FuzzyUserSearchService;
+import com.events.events.services.FuzzyUserSearchServiceImpl;
+import com.events.events.services.UserNameIndex;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.any;
+
+@RunWith(SpringRunner.class)
+public class FuzzyUserSearchServiceImplTest {
+
+    @TestConfiguration
+    static class FuzzyUserSearchServiceImplTestContextConfiguration {
+
+        @Bean
+        public FuzzyUserSearchService fuzzyUserSearchService() {
+            return new FuzzyUserSearchServiceImpl();
+        }
+
+        @Bean
+        public UserNameIndex userNameIndex() {
+            return new UserNameIndex();
+        }
+
+    }
+
+    @Autowired
+    private FuzzyUserSearchService fuzzyUserSearchService;
+
+    @Autowired
+    private UserNameIndex userNameIndex;
+
+    @MockBean
+    private UserRepository userRepository;
+
+    private Map<Integer, User> users = new HashMap<>();
+
+    @Before
+    public void setup(){
+        users.clear();
+        addUser(91, "Samuel", "Gaamuwa", "samuelgaamuwa");
+        addUser(92, "Joy", "Bawaya", "jbawaya");
+        addUser(93, "Sandra", "Nazziwa", "snazziwa");
+        addUser(94, "Merab", "Gaamuwa", "mgaamuwa");
+        Mockito.when(userRepository.findNames()).thenReturn(users.values().stream()
+                .map(user -> new Object[]{user.getUserId(), user.getUsername(), user.getFirstName(), user.getLastName()})
+                .collect(Collectors.toList()));
+        Mockito.when(userRepository.findAllById(any())).thenAnswer(invocation -> {
+            List<User> found = new ArrayList<>();
+            for(Object id : (Iterable<?>) invocation.getArgument(0)){
+                if(users.containsKey(id)){
+                    found.add(users.get(id));
+                }
+            }
+            return found;
+        });
+        userNameIndex.rebuildIndex();
+    }
+
+    @Test
+    public void testFindsNamesWithTypos(){
+        Assert.assertEquals(Arrays.asList(91, 94), idsOf(fuzzyUserSearchService.searchUsers("Gamuwa", 20)));
+        Assert.assertEquals(Arrays.asList(91, 94), idsOf(fuzzyUserSearchService.searchUsers("gaamuaw", 20)));
+        Assert.assertEquals(Collections.singletonList(93), idsOf(fuzzyUserSearchService.searchUsers("sandar", 20)));
+    }
+
+    @Test
+    public void testShortWordsAllowFewerTypos(){
+        Assert.assertTrue(fuzzyUserSearchService.searchUsers("jy", 20).isEmpty());
+        Assert.assertEquals(Collections.singletonList(92), idsOf(fuzzyUserSearchService.searchUsers("joi", 20)));
+    }
+
+    @Test
+    public void testAllWordsHaveToMatchAndClosestComesFirst(){
+        Assert.assertEquals(Collections.singletonList(94), idsOf(fuzzyUserSearchService.searchUsers("merab gamuwa", 20)));
+        Assert.assertEquals(Arrays.asList(94, 91), idsOf(fuzzyUserSearchService.searchUsers("mgaamuwa", 20)));
+        Assert.assertEquals(Collections.singletonList(94), idsOf(fuzzyUserSearchService.searchUsers("mgaamuwa", 1)));
+    }
+
+    @Test
+    public void testIndexFollowsSavedAndDeletedUsers(){
+        User edward = addUser(95, "Edward", "Gaamuwa", "egaamuwa");
+        userNameIndex.addUser(edward);
+        Assert.assertEquals(Collections.singletonList(95), idsOf(fuzzyUserSearchService.searchUsers("edwrd", 20)));
+
+        userNameIndex.removeUser(95);
+        Assert.assertTrue(fuzzyUserSearchService.searchUsers("edwrd", 20).isEmpty());
+    }
+
+    private User addUser(int userId, String firstName, String lastName, String username){
+        User user = new User(firstName, lastName, username, "pass123", username + "@email.com");
+        user.setUserId(userId);
+        users.put(userId, user);
+        return user;
+    }
+
+    private List<Integer> idsOf(List<User> found){
+        List<Integer> ids = new ArrayList<>();
+        for(User user : found){
+            ids.add(user.getUserId());
+        }
+        return ids;
+    }
+}
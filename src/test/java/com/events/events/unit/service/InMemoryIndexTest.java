@@ -0,0 +1,87 @@
+package com.events.events.unit.service;
+
+import com.events.events.services.InMemoryIndex;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class InMemoryIndexTest {
+
+    @Test
+    public void testIndexIsBuiltOnFirstReadOnly(){
+        NamesIndex names = new NamesIndex("samuel", "joy");
+
+        Assert.assertEquals(Arrays.asList("samuel", "joy"), names.all());
+        Assert.assertEquals(Arrays.asList("samuel", "joy"), names.all());
+        Assert.assertEquals(1, names.loads);
+    }
+
+    @Test
+    public void testChangesBeforeTheIndexIsBuiltAreLeftToTheLoad(){
+        NamesIndex names = new NamesIndex("samuel");
+
+        names.add("joy");
+
+        // the change is only in the database until the index is built
+        Assert.assertEquals(0, names.loads);
+        Assert.assertEquals(Arrays.asList("samuel"), names.all());
+        names.add("joy");
+        Assert.assertEquals(Arrays.asList("samuel", "joy"), names.all());
+    }
+
+    @Test
+    public void testRebuildReplacesTheIndex(){
+        NamesIndex names = new NamesIndex("samuel");
+        names.all();
+        names.add("joy");
+
+        names.rebuildIndex();
+
+        Assert.assertEquals(Arrays.asList("samuel"), names.all());
+        Assert.assertEquals(2, names.loads);
+    }
+
+    @Test
+    public void testChangesCommittedWhileRebuildingAreReplayedOntoTheNewIndex(){
+        NamesIndex names = new NamesIndex("samuel");
+        names.all();
+        // joy is saved after the rebuild read the database but before it replaced the index
+        names.duringLoad = () -> names.add("joy");
+
+        names.rebuildIndex();
+
+        Assert.assertEquals(Arrays.asList("samuel", "joy"), names.all());
+    }
+
+    private static class NamesIndex extends InMemoryIndex<List<String>> {
+
+        private final List<String> stored;
+
+        private int loads;
+
+        private Runnable duringLoad = () -> {};
+
+        private NamesIndex(String... stored) {
+            this.stored = Arrays.asList(stored);
+        }
+
+        @Override
+        protected List<String> load() {
+            loads++;
+            List<String> loaded = new ArrayList<>(stored);
+            duringLoad.run();
+            return loaded;
+        }
+
+        private List<String> all(){
+            return read(ArrayList::new);
+        }
+
+        private void add(String name){
+            update(index -> index.add(name));
+        }
+    }
+}
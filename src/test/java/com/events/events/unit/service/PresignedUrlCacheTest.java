@@ -0,0 +1,50 @@
+package com.events.events.unit.service;
+
+import com.events.events.services.PresignedUrlCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Date;
+
+public class PresignedUrlCacheTest {
+
+    private static final long HOUR = 3_600_000;
+
+    private static final long MARGIN = 600_000;
+
+    @Test
+    public void testReturnsUrlUntilTheMarginBeforeItExpires() throws MalformedURLException {
+        PresignedUrlCache cache = new PresignedUrlCache(10, MARGIN);
+        URL url = new URL("https://events.s3.amazonaws.com/userImages/profile.png?signature=1");
+        cache.put("userImages/profile.png", url, new Date(System.currentTimeMillis() + HOUR));
+        cache.put("userImages/expiring.png", url, new Date(System.currentTimeMillis() + MARGIN - 1000));
+
+        Assert.assertSame(url, cache.get("userImages/profile.png"));
+        Assert.assertNull(cache.get("userImages/expiring.png"));
+        Assert.assertNull(cache.get("userImages/other.png"));
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(2, cache.getMisses());
+        Assert.assertEquals(1.0 / 3, cache.getHitRate(), 0.0001);
+    }
+
+    @Test
+    public void testInvalidatedUrlIsSignedAgain() throws MalformedURLException {
+        PresignedUrlCache cache = new PresignedUrlCache(10, MARGIN);
+        cache.put("userImages/profile.png", new URL("https://events.s3.amazonaws.com/userImages/profile.png"), new Date(System.currentTimeMillis() + HOUR));
+        cache.invalidate("userImages/profile.png");
+        Assert.assertNull(cache.get("userImages/profile.png"));
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testKeepsNoMoreThanTheMaximumSize() throws MalformedURLException {
+        PresignedUrlCache cache = new PresignedUrlCache(10, MARGIN);
+        for(int i = 0; i < 100; i++){
+            cache.put("userImages/" + i + ".png", new URL("https://events.s3.amazonaws.com/userImages/" + i + ".png"), new Date(System.currentTimeMillis() + HOUR));
+            Assert.assertTrue(cache.size() <= 10);
+        }
+        Assert.assertNotNull(cache.get("userImages/99.png"));
+    }
+}
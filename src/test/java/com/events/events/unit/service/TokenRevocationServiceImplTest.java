@@ -0,0 +1,167 @@
+package com.events.events.unit.service;
+
+import com.events.events.config.security.SecurityConstants;
+import com.events.events.config.security.TokenHashes;
+import com.events.events.models.AuthenticatedUser;
+import com.events.events.models.RevokedToken;
+import com.events.events.repository.RevokedTokenRepository;
+import com.events.events.services.TokenRevocationService;
+import com.events.events.services.TokenRevocationServiceImpl;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+
+@RunWith(SpringRunner.class)
+public class TokenRevocationServiceImplTest {
+
+    @TestConfiguration
+    static class TokenRevocationServiceImplTestContextConfiguration {
+
+        @Bean
+        public TokenRevocationService tokenRevocationService() {
+            return new TokenRevocationServiceImpl();
+        }
+    }
+
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
+    @MockBean
+    private RevokedTokenRepository revokedTokenRepository;
+
+    private AuthenticatedUser samuel = new AuthenticatedUser(1, "sgaamuwa");
+
+    private AuthenticatedUser joy = new AuthenticatedUser(2, "jbawaya");
+
+    // the revocations in the database, read back by when they were revoked like the real query does
+    private List<RevokedToken> committed = new ArrayList<>();
+
+    @Before
+    public void setup(){
+        Mockito.when(revokedTokenRepository.findKeysRevokedSince(any(LocalDateTime.class), any(LocalDateTime.class))).thenAnswer(invocation -> {
+            LocalDateTime since = invocation.getArgument(0);
+            List<Object[]> keys = new ArrayList<>();
+            for(RevokedToken revokedToken : committed){
+                if(!revokedToken.getRevokedAt().isBefore(since)){
+                    keys.add(new Object[]{revokedToken.getRevocationKey(), revokedToken.getRevokedAt()});
+                }
+            }
+            return keys;
+        });
+        // the repository is empty, so this starts every test from an empty filter
+        tokenRevocationService.deleteExpiredRevocations();
+    }
+
+    @Test
+    public void testTokensNeverRevokedAreNotLookedUp(){
+        Assert.assertFalse(tokenRevocationService.isRevoked(hash(token("sgaamuwa")), samuel, new Date()));
+        Mockito.verify(revokedTokenRepository, Mockito.never()).findFirstByRevocationKeyOrderByRevokedAtDesc(anyString());
+    }
+
+    @Test
+    public void testRevokedTokenIsRevoked(){
+        String token = token("sgaamuwa");
+        tokenRevocationService.revokeToken(token);
+        RevokedToken revokedToken = savedRevocation();
+        Assert.assertEquals(TokenHashes.toHex(hash(token)), revokedToken.getRevocationKey());
+        Mockito.when(revokedTokenRepository.findFirstByRevocationKeyOrderByRevokedAtDesc(revokedToken.getRevocationKey())).thenReturn(Optional.of(revokedToken));
+
+        Assert.assertTrue(tokenRevocationService.isRevoked(hash(token), samuel, new Date()));
+        Assert.assertFalse(tokenRevocationService.isRevoked(hash(token("jbawaya")), joy, new Date()));
+    }
+
+    @Test
+    public void testRevokingUserRevokesTokensIssuedBeforeWithoutLookingThemUp(){
+        tokenRevocationService.revokeTokensOfUser(1);
+        RevokedToken revokedToken = savedRevocation();
+        Assert.assertEquals(RevokedToken.userKey(1), revokedToken.getRevocationKey());
+
+        long revokedAt = revokedToken.getRevokedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        Assert.assertTrue(tokenRevocationService.isRevoked(hash(token("sgaamuwa")), samuel, new Date(revokedAt - 60_000)));
+        Assert.assertTrue(tokenRevocationService.isRevoked(hash(token("sgaamuwa")), samuel, null));
+        Assert.assertFalse(tokenRevocationService.isRevoked(hash(token("sgaamuwa")), samuel, new Date(revokedAt + 1000)));
+        Assert.assertFalse(tokenRevocationService.isRevoked(hash(token("jbawaya")), joy, new Date(revokedAt - 60_000)));
+        Mockito.verify(revokedTokenRepository, Mockito.never()).findFirstByRevocationKeyOrderByRevokedAtDesc(RevokedToken.userKey(1));
+    }
+
+    @Test
+    public void testTokensWithoutUserIdAreRevoked(){
+        // they could otherwise be used for their whole lifetime after their user changed the password
+        Assert.assertTrue(tokenRevocationService.isRevoked(hash(token("sgaamuwa")), new AuthenticatedUser(null, "sgaamuwa"), new Date()));
+        tokenRevocationService.revokeTokensOfUser(1);
+        Assert.assertTrue(tokenRevocationService.isRevoked(hash(token("sgaamuwa")), new AuthenticatedUser(null, "sgaamuwa"), new Date()));
+    }
+
+    @Test
+    public void testLoadsRevocationsMadeElsewhere(){
+        LocalDateTime now = LocalDateTime.now();
+        String token = token("sgaamuwa");
+        RevokedToken revokedToken = new RevokedToken(TokenHashes.toHex(hash(token)), now, now.plusDays(10));
+        committed.add(revokedToken);
+        committed.add(new RevokedToken(RevokedToken.userKey(2), now, now.plusDays(10)));
+        Mockito.when(revokedTokenRepository.findFirstByRevocationKeyOrderByRevokedAtDesc(revokedToken.getRevocationKey())).thenReturn(Optional.of(revokedToken));
+        Date issuedBefore = new Date(System.currentTimeMillis() - 60_000);
+        Assert.assertFalse(tokenRevocationService.isRevoked(hash(token), samuel, new Date()));
+        Assert.assertFalse(tokenRevocationService.isRevoked(hash(token("jbawaya")), joy, issuedBefore));
+
+        tokenRevocationService.loadNewRevocations();
+        Assert.assertTrue(tokenRevocationService.isRevoked(hash(token), samuel, new Date()));
+        Assert.assertTrue(tokenRevocationService.isRevoked(hash(token("jbawaya")), joy, issuedBefore));
+    }
+
+    @Test
+    public void testLoadsRevocationsThatCommitAfterNewerOnes(){
+        LocalDateTime now = LocalDateTime.now();
+        Date issuedBefore = new Date(System.currentTimeMillis() - 60_000);
+        // joy's revocation is made first but its transaction commits after samuel's was already loaded
+        RevokedToken joys = new RevokedToken(RevokedToken.userKey(2), now.minusSeconds(10), now.plusDays(10));
+        RevokedToken samuels = new RevokedToken(RevokedToken.userKey(1), now.minusSeconds(5), now.plusDays(10));
+        committed.add(samuels);
+        tokenRevocationService.loadNewRevocations();
+        Assert.assertTrue(tokenRevocationService.isRevoked(hash(token("sgaamuwa")), samuel, issuedBefore));
+        Assert.assertFalse(tokenRevocationService.isRevoked(hash(token("jbawaya")), joy, issuedBefore));
+
+        committed.add(joys);
+        tokenRevocationService.loadNewRevocations();
+        Assert.assertTrue(tokenRevocationService.isRevoked(hash(token("jbawaya")), joy, issuedBefore));
+        Assert.assertTrue(tokenRevocationService.isRevoked(hash(token("sgaamuwa")), samuel, issuedBefore));
+    }
+
+    private RevokedToken savedRevocation(){
+        ArgumentCaptor<RevokedToken> argument = ArgumentCaptor.forClass(RevokedToken.class);
+        Mockito.verify(revokedTokenRepository).save(argument.capture());
+        return argument.getValue();
+    }
+
+    private static byte[] hash(String token){
+        return TokenHashes.hash(token);
+    }
+
+    private String token(String username){
+        return Jwts.builder()
+                .setSubject(username)
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(SignatureAlgorithm.HS512, SecurityConstants.SECRETKEY.getConstant())
+                .compact();
+    }
+}
@@ -0,0 +1,109 @@
+package com.events.events.unit.service;
+
+import com.events.events.models.User;
+import com.events.events.models.UserSuggestion;
+import com.events.events.repository.UserRepository;
+import com.events.events.services.TypeaheadService;
+import com.events.events.services.TypeaheadServiceImpl;
+import com.events.events.services.UserNameIndex;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.*;
+
+@RunWith(SpringRunner.class)
+public class TypeaheadServiceImplTest {
+
+    @TestConfiguration
+    static class TypeaheadServiceImplTestContextConfiguration {
+
+        @Bean
+        public TypeaheadService typeaheadService() {
+            return new TypeaheadServiceImpl();
+        }
+
+        @Bean
+        public UserNameIndex userNameIndex() {
+            return new UserNameIndex();
+        }
+
+    }
+
+    @Autowired
+    private TypeaheadService typeaheadService;
+
+    @Autowired
+    private UserNameIndex userNameIndex;
+
+    @MockBean
+    private UserRepository userRepository;
+
+    @Before
+    public void setup(){
+        Mockito.when(userRepository.findNames()).thenReturn(Arrays.asList(
+                names(91, "Samuel", "Gaamuwa", "samuelgaamuwa"),
+                names(92, "Joy", "Bawaya", "jbawaya"),
+                names(94, "Merab", "Gaamuwa", "mgaamuwa"),
+                names(97, "Zo\u00eb", "Samson", "zsamson")));
+        userNameIndex.rebuildIndex();
+    }
+
+    @Test
+    public void testSuggestsUsersByAnyNamePrefix(){
+        Assert.assertEquals(Arrays.asList(97, 91), idsOf(typeaheadService.suggestUsers("sam", 10)));
+        Assert.assertEquals(Arrays.asList(91, 94), idsOf(typeaheadService.suggestUsers("Gaam", 10)));
+        Assert.assertEquals(Collections.singletonList(91), idsOf(typeaheadService.suggestUsers("samuel g", 10)));
+        Assert.assertEquals(Collections.singletonList(97), idsOf(typeaheadService.suggestUsers("zoe", 10)));
+        Assert.assertEquals("Joy Bawaya", typeaheadService.suggestUsers("jb", 10).get(0).getDisplayName());
+    }
+
+    @Test
+    public void testReturnsEmptyListWhenNothingMatches(){
+        Assert.assertTrue(typeaheadService.suggestUsers("warrit", 10).isEmpty());
+        Assert.assertTrue(typeaheadService.suggestUsers("  ", 10).isEmpty());
+    }
+
+    @Test
+    public void testLimitsTheNumberOfSuggestions(){
+        Assert.assertEquals(1, typeaheadService.suggestUsers("s", 1).size());
+    }
+
+    @Test
+    public void testSuggestionsFollowSavedAndDeletedUsers(){
+        userNameIndex.addUser(user(93, "Sandra", "Nazziwa", "snazziwa"));
+        Assert.assertEquals(Collections.singletonList(93), idsOf(typeaheadService.suggestUsers("naz", 10)));
+
+        userNameIndex.addUser(user(93, "Sandra", "Kato", "snazziwa"));
+        Assert.assertTrue(typeaheadService.suggestUsers("nazz", 10).isEmpty());
+        Assert.assertEquals(Collections.singletonList(93), idsOf(typeaheadService.suggestUsers("kat", 10)));
+
+        userNameIndex.removeUser(93);
+        Assert.assertTrue(typeaheadService.suggestUsers("sandra", 10).isEmpty());
+    }
+
+    private Object[] names(int userId, String firstName, String lastName, String username){
+        return new Object[]{userId, username, firstName, lastName};
+    }
+
+    private User user(int userId, String firstName, String lastName, String username){
+        User user = new User(firstName, lastName, username, "pass123", username + "@email.com");
+        user.setUserId(userId);
+        return user;
+    }
+
+    private List<Integer> idsOf(List<UserSuggestion> suggestions){
+        List<Integer> ids = new ArrayList<>();
+        for(UserSuggestion suggestion : suggestions){
+            ids.add(suggestion.getUserId());
+        }
+        return ids;
+    }
+}
@@ -1,13 +1,21 @@
 package com.events.events.unit.service;
 
 import com.events.events.error.*;
+import com.events.events.models.AuthenticatedUser;
 import com.events.events.models.Friend;
 import com.events.events.models.User;
+import com.events.events.models.UserAccountDetails;
 import com.events.events.repository.ConfirmationTokenRepository;
 import com.events.events.repository.FriendRepository;
 import com.events.events.repository.UserRepository;
 import com.events.events.services.AWSS3Service;
 import com.events.events.services.EmailService;
+import com.events.events.services.FeedService;
+import com.events.events.services.FollowGraphService;
+import com.events.events.services.FuzzyUserSearchService;
+import com.events.events.services.TokenRevocationService;
+import com.events.events.services.UserNameIndex;
+import com.events.events.services.UserSearchService;
 import com.events.events.services.UserService;
 import com.events.events.services.UserServiceImpl;
 import org.junit.Assert;
@@ -20,7 +28,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Bean;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.web.multipart.MultipartFile;
@@ -71,8 +81,27 @@ public class UserServiceImplTest {
     @MockBean
     private JavaMailSender javaMailSender;
 
+    @MockBean
+    private FeedService feedService;
+
+    @MockBean
+    private FollowGraphService followGraphService;
+
+    @MockBean
+    private UserSearchService userSearchService;
+
+    @MockBean
+    private UserNameIndex userNameIndex;
+
+    @MockBean
+    private FuzzyUserSearchService fuzzyUserSearchService;
+
+    @MockBean
+    private TokenRevocationService tokenRevocationService;
+
     private User samuel = new User("samuel", "gaamuwa", "sgaamuwa", "pass123", "sgaamuwa@email.com");
     private User joy = new User("joy", "bawaya", "jbawaya", "pass123", "jbawaya@email.com");
+    private AuthenticatedUser currentUser = new AuthenticatedUser(2, "jbawaya");
 
     @Before
     public void setup(){
@@ -81,6 +110,7 @@ public class UserServiceImplTest {
         Mockito.when(userRepository.findAll()).thenReturn(new ArrayList<>(Arrays.asList(samuel, joy)));
         Mockito.when(userRepository.findById(33)).thenReturn(Optional.empty());
         Mockito.when(userRepository.save(samuel)).thenReturn(samuel);
+        Mockito.when(userRepository.getOne(2)).thenReturn(joy);
     }
 
     @Test
@@ -164,6 +194,23 @@ public class UserServiceImplTest {
         Assert.assertTrue(bCryptPasswordEncoder.matches("newPassword", argument.getValue().getPassword()));
     }
 
+    @Test
+    public void changeUserPasswordRevokesTokensOfUser(){
+        samuel.setUserId(1);
+        samuel.setPassword(bCryptPasswordEncoder.encode(samuel.getPassword()));
+        userService.changePassword("pass123", "newPassword", "sgaamuwa");
+        Mockito.verify(tokenRevocationService).revokeTokensOfUser(1);
+    }
+
+    @Test
+    public void changeUserPasswordWithFalsePasswordKeepsTokens(){
+        samuel.setPassword(bCryptPasswordEncoder.encode(samuel.getPassword()));
+        assertThrows(AuthenticationException.class, () -> {
+            userService.changePassword("pass1234", "newPassword", "sgaamuwa");
+        });
+        Mockito.verify(tokenRevocationService, Mockito.never()).revokeTokensOfUser(Mockito.anyInt());
+    }
+
     @Test
     public void changeUserPasswordWithFalsePassword(){
         samuel.setPassword(bCryptPasswordEncoder.encode(samuel.getPassword()));
@@ -204,30 +251,112 @@ public class UserServiceImplTest {
         Mockito.verify(userRepository, Mockito.never()).save(any(User.class));
     }
 
+    @Test
+    public void testLoadUserByUsernameKeepsTheUserItRead(){
+        UserDetails userDetails = userService.loadUserByUsername("sgaamuwa");
+        Assert.assertEquals("sgaamuwa", userDetails.getUsername());
+        Assert.assertEquals(samuel.getPassword(), userDetails.getPassword());
+        Assert.assertSame(samuel, ((UserAccountDetails) userDetails).getUser());
+        Mockito.verify(userRepository, Mockito.times(1)).findByUsername("sgaamuwa");
+    }
+
+    @Test
+    public void testUpdatePasswordSavesRehashedPasswordOfLoggedInUser(){
+        samuel.setUserId(1);
+        UserDetails userDetails = userService.loadUserByUsername("sgaamuwa");
+        // the user was changed by another request after logging in
+        User current = new User("sam", "gaamuwa", "sgaamuwa", samuel.getPassword(), "sgaamuwa@email.com");
+        current.setUserId(1);
+        Mockito.when(userRepository.findById(1)).thenReturn(Optional.of(current));
+        Mockito.when(userRepository.save(current)).thenReturn(current);
+
+        String rehashed = bCryptPasswordEncoder.encode("pass123");
+        UserDetails updated = userService.updatePassword(userDetails, rehashed);
+        Mockito.verify(userRepository).save(current);
+        Mockito.verify(userRepository, Mockito.never()).save(samuel);
+        Assert.assertEquals(rehashed, current.getPassword());
+        Assert.assertEquals("sam", current.getFirstName());
+        Assert.assertEquals(rehashed, updated.getPassword());
+        Assert.assertSame(current, ((UserAccountDetails) updated).getUser());
+    }
+
     @Test
     public void testAddsFriendWithValidId(){
         Mockito.when(userRepository.findById(2)).thenReturn(Optional.of(joy));
-        userService.addFriend(2,1,"jbawaya");
-        Mockito.verify(friendRepository, Mockito.atMost(1)).save(new Friend(samuel, joy));
+        userService.addFriend(2,1,currentUser);
+        Mockito.verify(friendRepository).saveAndFlush(any(Friend.class));
+        Mockito.verify(userRepository, Mockito.never()).existsById(2);
+    }
+
+    @Test
+    public void testAddFriendThrowsNotFoundWhenTheUserNoLongerExists(){
+        // the friend row references a user that is gone
+        Mockito.when(friendRepository.saveAndFlush(any(Friend.class))).thenThrow(new DataIntegrityViolationException("violates foreign key constraint"));
+        Throwable exception = assertThrows(NotFoundException.class, () -> {
+            userService.addFriend(2, 1, currentUser);
+        });
+        Assert.assertEquals("User with id: 2 not found", exception.getMessage());
+    }
+
+    @Test
+    public void testAddFriendComparesTokenUserIdWithoutLoadingUser(){
+        Throwable exception = assertThrows(AuthorisationException.class, () -> {
+            userService.addFriend(1, 2, currentUser);
+        });
+        Assert.assertEquals("You do not have the required permission to complete this operation", exception.getMessage());
+        Mockito.verify(userRepository, Mockito.never()).findById(1);
+        Mockito.verify(friendRepository, Mockito.never()).saveAndFlush(any(Friend.class));
+    }
+
+    @Test
+    public void testAddFriendChecksUsernameForTokensWithoutUserId(){
+        Mockito.when(userRepository.findById(2)).thenReturn(Optional.of(joy));
+        Throwable exception = assertThrows(AuthorisationException.class, () -> {
+            userService.addFriend(2, 1, new AuthenticatedUser(null, "sgaamuwa"));
+        });
+        Assert.assertEquals("You do not have the required permission to complete this operation", exception.getMessage());
+        userService.addFriend(2, 1, new AuthenticatedUser(null, "jbawaya"));
+        Mockito.verify(friendRepository).saveAndFlush(any(Friend.class));
     }
 
     @Test
     public void testThrowsIllegalFriendActionExceptionIfUserAndFriendTheSame(){
         Mockito.when(userRepository.findById(2)).thenReturn(Optional.of(joy));
         Throwable exception = assertThrows(IllegalFriendActionException.class, () -> {
-            userService.addFriend(2,2, "jbawaya");
+            userService.addFriend(2,2, currentUser);
         });
         Assert.assertEquals("Can't add self as a friend", exception.getMessage());
     }
 
+    @Test
+    public void testThrowsIllegalFriendActionExceptionIfAlreadyRequested(){
+        Mockito.when(userRepository.findById(2)).thenReturn(Optional.of(joy));
+        Mockito.when(friendRepository.existsFollowOrRequest(2, 1)).thenReturn(true);
+        Throwable exception = assertThrows(IllegalFriendActionException.class, () -> {
+            userService.addFriend(2,1, currentUser);
+        });
+        Assert.assertEquals("User is already following or requested to follow user with Id: 1", exception.getMessage());
+        Mockito.verify(friendRepository, Mockito.never()).save(any(Friend.class));
+    }
+
     @Test
     public void testCanGetFollowersForUser(){
         User peace = new User("peace", "nakiyemba", "pnakiyemba", "pass123", "pnakiyemba@email.com");
-        samuel.setUserId(1);
-        List<Friend> friends = Arrays.asList(new Friend(joy, samuel), new Friend(peace, samuel));
-        Mockito.when(friendRepository.getAllFollowers(1)).thenReturn(friends);
+        joy.setUserId(2);
+        peace.setUserId(3);
+        Mockito.when(followGraphService.getFollowers(1)).thenReturn(new int[]{2, 3});
+        Mockito.when(userRepository.findAllById(Arrays.asList(2, 3))).thenReturn(Arrays.asList(peace, joy));
         List<User> friendsList = userService.getAllFollowers(1);
-        Assert.assertEquals(friendsList.size(), 2);
+        // the followers come back in the order of the graph, not the order the database returned them in
+        Assert.assertEquals(Arrays.asList(joy, peace), friendsList);
+        Mockito.verify(friendRepository, Mockito.never()).getAllFollowers(Mockito.anyInt());
+    }
+
+    @Test
+    public void testThrowsExceptionIfUserHasNoFollowers(){
+        Mockito.when(followGraphService.getFollowers(1)).thenReturn(new int[0]);
+        Throwable exception = assertThrows(EmptyListException.class, () -> userService.getAllFollowers(1));
+        Assert.assertEquals("There are no followers for the user: 1", exception.getMessage());
     }
 
     @Test
@@ -237,8 +366,10 @@ public class UserServiceImplTest {
 
         Mockito.when(userRepository.findById(2)).thenReturn(Optional.of(joy));
         Mockito.when(friendRepository.findById(new Friend.Key(samuel, joy))).thenReturn(Optional.of(friend));
-        userService.acceptFollowRequest(2,1, "jbawaya");
+        userService.acceptFollowRequest(2,1, currentUser);
         Mockito.verify(friendRepository, Mockito.atMost(1)).save(friend);
+        Mockito.verify(followGraphService).acceptFollowRequest(1, 2);
+        Mockito.verify(feedService).addFollowee(1, 2);
     }
 
     @Test
@@ -246,7 +377,7 @@ public class UserServiceImplTest {
         Mockito.when(userRepository.findById(2)).thenReturn(Optional.of(joy));
         Mockito.when(friendRepository.findById(new Friend.Key(samuel, joy))).thenReturn(Optional.empty());
         Throwable exception = assertThrows(IllegalFriendActionException.class, () -> {
-            userService.acceptFollowRequest(2,1, "jbawaya");
+            userService.acceptFollowRequest(2,1, currentUser);
         });
         Assert.assertEquals("There is no request from:1", exception.getMessage());
     }
@@ -260,7 +391,7 @@ public class UserServiceImplTest {
         Mockito.when(friendRepository.findById(new Friend.Key(samuel, joy))).thenReturn(Optional.of(friend));
 
         Throwable exception = assertThrows(IllegalFriendActionException.class, () -> {
-            userService.acceptFollowRequest(2,1, "jbawaya");
+            userService.acceptFollowRequest(2,1, currentUser);
         });
 
         Assert.assertEquals("You are already friends with user:1", exception.getMessage());
@@ -273,7 +404,7 @@ public class UserServiceImplTest {
 
         Mockito.when(userRepository.findById(2)).thenReturn(Optional.of(joy));
         Mockito.when(friendRepository.findById(new Friend.Key(samuel, joy))).thenReturn(Optional.of(friend));
-        userService.rejectFollowRequest(2,1, "jbawaya");
+        userService.rejectFollowRequest(2,1, currentUser);
         Mockito.verify(friendRepository, Mockito.atMost(1)).delete(friend);
     }
 
@@ -282,7 +413,7 @@ public class UserServiceImplTest {
         Mockito.when(userRepository.findById(2)).thenReturn(Optional.of(joy));
         Mockito.when(friendRepository.findById(new Friend.Key(samuel, joy))).thenReturn(Optional.empty());
         Throwable exception = assertThrows(IllegalFriendActionException.class, () -> {
-            userService.rejectFollowRequest(2,1, "jbawaya");
+            userService.rejectFollowRequest(2,1, currentUser);
         });
         Assert.assertEquals("There is no request from:1", exception.getMessage());
     }
@@ -295,7 +426,7 @@ public class UserServiceImplTest {
 
         Mockito.when(userRepository.findById(2)).thenReturn(Optional.of(joy));
         Mockito.when(friendRepository.findById(new Friend.Key(joy, samuel))).thenReturn(Optional.of(friend));
-        userService.unFollowUser(2,1, "jbawaya");
+        userService.unFollowUser(2,1, currentUser);
         Mockito.verify(friendRepository, Mockito.atMost(1)).delete(friend);
     }
 
@@ -306,7 +437,7 @@ public class UserServiceImplTest {
 
         Mockito.when(userRepository.findById(2)).thenReturn(Optional.of(joy));
         Mockito.when(friendRepository.findById(new Friend.Key(joy, samuel))).thenReturn(Optional.of(friend));
-        userService.unFollowUser(2,1, "jbawaya");
+        userService.unFollowUser(2,1, currentUser);
         Mockito.verify(friendRepository, Mockito.atMost(1)).delete(friend);
     }
 
@@ -321,82 +452,78 @@ public class UserServiceImplTest {
 
     @Test
     public void testCanSearchForUser(){
-        Mockito.when(userRepository.findBySearchTerm("aamu")).thenReturn(Arrays.asList(samuel, joy));
-        List<User> users = userService.searchUsers("aamu");
-        Assert.assertEquals(2, users.size());
-        Assert.assertTrue(users.containsAll(Arrays.asList(samuel, joy)));
+        Mockito.when(userSearchService.searchUsers("aamu", 20)).thenReturn(Arrays.asList(samuel, joy));
+        List<User> users = userService.searchUsers("aamu", 20);
+        Assert.assertEquals(Arrays.asList(samuel, joy), users);
+    }
+
+    @Test
+    public void testSearchForUserLimitsThePageSize(){
+        Mockito.when(userSearchService.searchUsers("aamu", 100)).thenReturn(Collections.singletonList(samuel));
+        List<User> users = userService.searchUsers("aamu", 5000);
+        Assert.assertEquals(Collections.singletonList(samuel), users);
+        Mockito.verify(userSearchService).searchUsers("aamu", 100);
+    }
+
+    @Test
+    public void testCanFuzzySearchForUser(){
+        Mockito.when(fuzzyUserSearchService.searchUsers("gamuwa", 20)).thenReturn(Arrays.asList(samuel));
+        List<User> users = userService.fuzzySearchUsers("gamuwa", 20);
+        Assert.assertEquals(Collections.singletonList(samuel), users);
+    }
+
+    @Test
+    public void testThrowsExceptionIfNoUsersWithinTyposOfSearchTerm(){
+        Mockito.when(fuzzyUserSearchService.searchUsers("warrit", 20)).thenReturn(Collections.emptyList());
+        Throwable exception = assertThrows(EmptyListException.class, () -> {
+            userService.fuzzySearchUsers("warrit", 20);
+        });
+        Assert.assertEquals("There are no users who fit the search term: warrit", exception.getMessage());
     }
 
     @Test
     public void testThrowsExceptionIfNoUsersWithSearchTerm(){
-        Mockito.when(userRepository.findBySearchTerm("aamu")).thenReturn(Collections.emptyList());
+        Mockito.when(userSearchService.searchUsers("aamu", 20)).thenReturn(Collections.emptyList());
         Throwable exception = assertThrows(EmptyListException.class, () -> {
-            userService.searchUsers("aamu");
+            userService.searchUsers("aamu", 20);
         });
         Assert.assertEquals("There are no users who fit the search term: aamu", exception.getMessage());
     }
 
     @Test
     public void testCanGetConnectionsForUser(){
-        List<Integer> users = new ArrayList<>(Arrays.asList(1, 2, 3, 4));
-        User user1 = Mockito.mock(User.class);
-        User user2 = Mockito.mock(User.class);
-        User user3 = Mockito.mock(User.class);
-        User user4 = Mockito.mock(User.class);
-        Friend friend1 = new Friend(samuel, user1);
-        friend1.setActive(true);
-        Friend friend2 = new Friend(user1, samuel);
-        friend2.setActive(true);
-        Friend friend3 = new Friend(user2, samuel);
-        friend3.setActive(true);
-        Friend friend4 = new Friend(user3, samuel);
-        Friend friend5 = new Friend(samuel, user4);
-
-        Mockito.when(user1.getUserId()).thenReturn(6);
-        Mockito.when(user2.getUserId()).thenReturn(7);
-        Mockito.when(user3.getUserId()).thenReturn(8);
-        Mockito.when(user4.getUserId()).thenReturn(9);
-
-        samuel.setFriends(new HashSet<>(Arrays.asList(friend1, friend5)));
-        Mockito.when(user1.getFriends()).thenReturn(new HashSet<>(Arrays.asList(friend2)));
-        Mockito.when(user2.getFriends()).thenReturn(new HashSet<>(Arrays.asList(friend3)));
-        Mockito.when(user3.getFriends()).thenReturn(new HashSet<>(Arrays.asList(friend4)));
-        Mockito.when(user4.getFriends()).thenReturn(new HashSet<>());
-
-        Mockito.when(userRepository.findAllById(users)).thenReturn(Arrays.asList(user1, user2, user3, user4));
-        Mockito.when(friendRepository.findById(new Friend.Key(samuel, user1))).thenReturn(Optional.of(friend1));
-        Mockito.when(friendRepository.findById(new Friend.Key(user1, samuel))).thenReturn(Optional.of(friend2));
-        Mockito.when(friendRepository.findById(new Friend.Key(samuel, user2))).thenReturn(Optional.empty());
-        Mockito.when(friendRepository.findById(new Friend.Key(user2, samuel))).thenReturn(Optional.of(friend3));
-        Mockito.when(friendRepository.findById(new Friend.Key(samuel, user3))).thenReturn(Optional.empty());
-        Mockito.when(friendRepository.findById(new Friend.Key(user3, samuel))).thenReturn(Optional.of(friend4));
-        Mockito.when(friendRepository.findById(new Friend.Key(samuel, user4))).thenReturn(Optional.of(friend5));
-        Mockito.when(friendRepository.findById(new Friend.Key(user4, samuel))).thenReturn(Optional.empty());
-
-        List<Map<String, Object>> returnedList = userService.userConnections(new int[]{1,2,3,4}, 1, "sgaamuwa");
+        Mockito.when(friendRepository.findConnections(Mockito.eq(1), any())).thenReturn(Arrays.asList(
+                new Object[]{6, true, true},
+                new Object[]{7, null, true},
+                new Object[]{8, null, false},
+                new Object[]{9, false, null}));
+
+        List<Map<String, Object>> returnedList = userService.userConnections(new int[]{6, 7, 8, 9}, 1, new AuthenticatedUser(1, "sgaamuwa"));
 
         Assert.assertTrue(returnedList.size() == 4);
         Assert.assertTrue(((Integer) returnedList.get(0).get("id")).equals(6));
         Assert.assertTrue(((Integer) returnedList.get(1).get("id")).equals(7));
         Assert.assertTrue(((Integer) returnedList.get(2).get("id")).equals(8));
         Assert.assertTrue(((Integer) returnedList.get(3).get("id")).equals(9));
-        Assert.assertTrue(((List<String>)returnedList.get(0).get("connections")).containsAll(Arrays.asList("following", "followedBy")));
-        Assert.assertTrue(((List<String>)returnedList.get(1).get("connections")).containsAll(Arrays.asList("followedBy")));
-        Assert.assertTrue(((List<String>)returnedList.get(2).get("connections")).containsAll(Arrays.asList("pendingRequest")));
-        Assert.assertTrue(((List<String>)returnedList.get(3).get("connections")).containsAll(Arrays.asList("requestedFollow")));
+        Assert.assertEquals(Arrays.asList("following", "followedBy"), returnedList.get(0).get("connections"));
+        Assert.assertEquals(Arrays.asList("followedBy"), returnedList.get(1).get("connections"));
+        Assert.assertEquals(Arrays.asList("pendingRequest"), returnedList.get(2).get("connections"));
+        Assert.assertEquals(Arrays.asList("requestedFollow"), returnedList.get(3).get("connections"));
+        // the users and friendships are read with one query instead of once per user
+        Mockito.verify(friendRepository, Mockito.times(1)).findConnections(Mockito.eq(1), any());
+        Mockito.verify(friendRepository, Mockito.never()).findById(any());
+        Mockito.verify(userRepository, Mockito.never()).findExistingIds(any());
     }
 
     @Test
     public void testReturnsExceptionIfUserIdsDoNotExist(){
-        List<Integer> users = new ArrayList<>(Arrays.asList(1, 2, 3, 4));
-        Mockito.when(userRepository.findAllById(users)).thenReturn(Collections.emptyList());
+        Mockito.when(friendRepository.findConnections(Mockito.eq(1), any())).thenReturn(Collections.emptyList());
 
         Throwable exception = assertThrows(BadRequestException.class, () -> {
-            userService.userConnections(new int[]{1,2,3,4}, 1,"sgaamuwa");;
+            userService.userConnections(new int[]{1,2,3,4}, 1, new AuthenticatedUser(1, "sgaamuwa"));
         });
 
         Assert.assertTrue(exception.getMessage().equals("UserIDs provided do not match any in the system"));
     }
 
-
 }